@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.change;
+
+import lombok.Value;
+
+/**
+ * Публикуется после изменения или удаления режиссёра.
+ */
+@Value
+public class DirectorChangedEvent {
+    Long directorId;
+}
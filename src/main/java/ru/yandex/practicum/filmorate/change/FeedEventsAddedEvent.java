@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.change;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.List;
+
+/**
+ * Публикуется после записи событий ленты в EVENTS, когда событиям уже присвоены id.
+ */
+@Value
+public class FeedEventsAddedEvent {
+    List<Event> events;
+}
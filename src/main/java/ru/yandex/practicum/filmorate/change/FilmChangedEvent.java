@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.change;
+
+import lombok.Value;
+
+/**
+ * Публикуется после добавления, обновления или удаления фильма.
+ */
+@Value
+public class FilmChangedEvent {
+    Long filmId;
+    boolean deleted;
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.change;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Публикуется после пакетного добавления фильмов вместо отдельного {@link FilmChangedEvent} на каждый фильм,
+ * чтобы индексы подгрузили новые фильмы несколькими запросами на весь пакет.
+ */
+@Value
+public class FilmsImportedEvent {
+    List<Long> filmIds;
+}
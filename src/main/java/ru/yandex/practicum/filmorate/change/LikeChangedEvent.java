@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.change;
+
+import lombok.Value;
+
+/**
+ * Публикуется после того, как пользователь поставил или убрал лайк фильму.
+ */
+@Value
+public class LikeChangedEvent {
+    Long filmId;
+    Long userId;
+    boolean added;
+}
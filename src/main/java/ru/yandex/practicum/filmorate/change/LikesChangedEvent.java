@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.change;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Публикуется после пакетной записи лайков вместо отдельного {@link LikeChangedEvent} на каждый лайк,
+ * чтобы кэши и индексы обновились один раз на весь пакет.
+ */
+@Value
+public class LikesChangedEvent {
+    List<LikeChangedEvent> changes;
+}
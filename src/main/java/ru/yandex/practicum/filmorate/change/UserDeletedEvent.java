@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.change;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Публикуется после удаления пользователя вместе с его лайками, друзьями и отзывами.
+ * likedFilmIds - фильмы, чьи лайки удалены вместе с пользователем.
+ */
+@Value
+public class UserDeletedEvent {
+    Long userId;
+    List<Long> likedFilmIds;
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.service.ExportService;
+
+@RestController
+@Slf4j
+@RequiredArgsConstructor
+@RequestMapping("/export")
+public class ExportController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ExportService exportService;
+
+    @GetMapping("/films.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        log.info("Request export of films");
+        return ResponseEntity.ok().contentType(NDJSON).body(exportService::exportFilms);
+    }
+
+    @GetMapping("/users.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        log.info("Request export of users");
+        return ResponseEntity.ok().contentType(NDJSON).body(exportService::exportUsers);
+    }
+
+    @GetMapping("/likes.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportLikes() {
+        log.info("Request export of likes");
+        return ResponseEntity.ok().contentType(NDJSON).body(exportService::exportLikes);
+    }
+}
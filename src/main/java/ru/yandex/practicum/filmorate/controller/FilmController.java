@@ -3,9 +3,13 @@ package ru.yandex.practicum.filmorate.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeResult;
 import ru.yandex.practicum.filmorate.service.DirectorService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
@@ -26,9 +30,19 @@ public class FilmController {
     private final DirectorService directorService;
 
     @GetMapping
-    public Collection<Film> findAll() {
-        log.info("Request all films");
-        return filmService.getFilms();
+    public ResponseEntity<Collection<Film>> findAll(@RequestParam(required = false) Long after,
+                                                    @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Request all films");
+            return ResponseEntity.ok(filmService.getFilms());
+        }
+        log.info("Request films page after id = {}, limit = {}", after, limit);
+        CursorPage<Film> page = filmService.getFilmsPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(page.getItems());
     }
 
     @GetMapping("/{id}")
@@ -43,6 +57,12 @@ public class FilmController {
         return filmService.addFilm(film);
     }
 
+    @PostMapping("/batch")
+    public List<Long> createBatch(@RequestBody List<Film> films) {
+        log.info("Request to add {} films in a batch", films.size());
+        return filmService.addFilms(films);
+    }
+
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film film) {
         log.info("Request to change film {}", film);
@@ -67,6 +87,12 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    @PostMapping("/likes/batch")
+    public List<LikeResult> applyLikes(@RequestBody List<LikeOperation> operations) {
+        log.info("Request to apply {} like operations in a batch", operations.size());
+        return filmService.applyLikes(operations);
+    }
+
     @GetMapping("/popular")
     public Collection<Film> popularFilms(@RequestParam(defaultValue = "10") Integer count,
                                          @RequestParam(defaultValue = "-1") Integer genreId,
@@ -91,8 +117,9 @@ public class FilmController {
 
     @GetMapping("/search")
     public List<Film> search(
-            @RequestParam(required = false) String query, String by) {
-        log.info("Request search films, query = {}, by = {}", query, by);
-        return filmService.search(query, by);
+            @RequestParam(required = false) String query, String by,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Request search films, query = {}, by = {}, limit = {}", query, by, limit);
+        return filmService.search(query, by, limit);
     }
 }
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -10,6 +11,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 
@@ -29,10 +31,17 @@ public class ReviewController {
     }
 
     @GetMapping
-    public Collection<Review> findAll(@RequestParam(required = false) Long filmId,
-                                      @RequestParam(defaultValue = "10", required = false) Long count) {
-        log.info("Request to get reviews, filmId = {}, count = {}", filmId == null ? "all" : filmId, count);
-        return reviewService.getAllReviews(filmId, count);
+    public ResponseEntity<Collection<Review>> findAll(@RequestParam(required = false) Long filmId,
+                                                     @RequestParam(defaultValue = "10", required = false) Long count,
+                                                     @RequestParam(required = false) Long after) {
+        log.info("Request to get reviews, filmId = {}, count = {}, after review id = {}",
+                filmId == null ? "all" : filmId, count, after);
+        CursorPage<Review> page = reviewService.getReviewsPage(filmId, count, after);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(page.getItems());
     }
 
     @GetMapping("/{id}")
@@ -2,10 +2,15 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendPath;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
@@ -25,9 +30,19 @@ public class UserController {
     }
 
     @GetMapping
-    public Collection<User> findAll() {
-        log.info("Request all users");
-        return userService.getUsers();
+    public ResponseEntity<Collection<User>> findAll(@RequestParam(required = false) Long after,
+                                                    @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Request all users");
+            return ResponseEntity.ok(userService.getUsers());
+        }
+        log.info("Request users page after id = {}, limit = {}", after, limit);
+        CursorPage<User> page = userService.getUsersPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(page.getItems());
     }
 
     @GetMapping("/{id}")
@@ -78,10 +93,42 @@ public class UserController {
         return userService.findSharedFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public Collection<User> friendSuggestions(@PathVariable Long id,
+                                              @RequestParam(required = false) Integer limit) {
+        log.info("Request friend suggestions for user id = {}, limit = {}", id, limit);
+        return userService.findFriendSuggestions(id, limit);
+    }
+
+    @GetMapping("/{id}/distance/{otherId}")
+    public FriendPath distance(@PathVariable Long id, @PathVariable Long otherId) {
+        log.info("Request friend path from user id = {} to user id = {}", id, otherId);
+        return userService.findDistance(id, otherId);
+    }
+
     @GetMapping("{id}/feed")
-    public Collection<Event> getFeed(@PathVariable Long id) {
-        log.info("Request feed user id = {}", id);
-        return userService.getFeed(id);
+    public ResponseEntity<Collection<Event>> getFeed(@PathVariable Long id,
+                                                     @RequestParam(required = false) Long before,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestParam(required = false) String types) {
+        if (before == null && limit == null && types == null) {
+            log.info("Request feed user id = {}", id);
+            return ResponseEntity.ok(userService.getFeed(id));
+        }
+        log.info("Request feed user id = {} before event id = {}, limit = {}, types = {}", id, before, limit, types);
+        CursorPage<Event> page = userService.getFeedPage(id, before, limit, types);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping(path = "{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFeed(@PathVariable Long id,
+                                 @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        log.info("Request feed stream user id = {} after event id = {}", id, lastEventId);
+        return userService.streamFeed(id, lastEventId);
     }
 
     @GetMapping("/{id}/recommendations")
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+    // заголовок ответа с курсором следующей страницы
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private List<T> items;
+    // id последнего элемента страницы, null - если страница последняя
+    private Long nextCursor;
+
+    /**
+     * Собирает страницу из выборки, запрошенной с лимитом limit + 1:
+     * лишний элемент лишь показывает, что за страницей есть продолжение.
+     */
+    public static <T> CursorPage<T> of(List<T> fetched, int limit, Function<T, Long> idGetter) {
+        if (fetched.size() <= limit) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new CursorPage<>(items, idGetter.apply(items.get(limit - 1)));
+    }
+}
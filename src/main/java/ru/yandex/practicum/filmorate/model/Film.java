@@ -67,8 +67,21 @@ public class Film {
         this.directors = directors;
     }
 
-    public int getRating(){
-        return likes.size();
+    public Film(Film film) {
+        this.id = film.id;
+        this.name = film.name;
+        this.description = film.description;
+        this.releaseDate = film.releaseDate;
+        this.duration = film.duration;
+        this.likes = new TreeSet<>(film.likes);
+        this.genres = film.genres == null ? null : new TreeSet<>(film.genres);
+        this.mpa = film.mpa;
+        this.rating = film.rating;
+        this.directors = film.directors == null ? null : new TreeSet<>(film.directors);
+    }
+
+    public long getRating() {
+        return rating != null ? rating : likes.size();
     }
 
     public boolean hasLikeFromUser(Long userId) {
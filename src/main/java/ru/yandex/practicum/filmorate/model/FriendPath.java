@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class FriendPath {
+    // id пользователей от начального до конечного, пустой список - если путь не найден
+    private List<Long> path;
+    // число шагов, null - если путь не найден
+    private Integer distance;
+    // поиск остановлен по глубине или времени, поэтому отсутствие пути не окончательно
+    private boolean truncated;
+
+    public static FriendPath of(List<Long> path) {
+        return new FriendPath(path, path.size() - 1, false);
+    }
+
+    public static FriendPath notFound(boolean truncated) {
+        return new FriendPath(List.of(), null, truncated);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeOperation {
+    private Long userId;
+    private Long filmId;
+    // ADD - поставить лайк, REMOVE - убрать
+    private OperationType operation;
+}
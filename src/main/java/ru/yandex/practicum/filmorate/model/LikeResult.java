@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeResult {
+    private Long userId;
+    private Long filmId;
+    private OperationType operation;
+    private Status status;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    public enum Status {
+        // лайк поставлен или убран
+        APPLIED,
+        // лайк уже стоял или уже отсутствовал
+        UNCHANGED,
+        // в пакете есть более поздняя операция с той же парой пользователь - фильм
+        DUPLICATE,
+        FILM_NOT_FOUND,
+        USER_NOT_FOUND
+    }
+}
@@ -27,6 +27,10 @@ public class User {
         this.birthday = birthday;
     }
 
+    public User(User user) {
+        this(user.id, user.email, user.login, user.name, user.birthday, new HashSet<>(user.friends));
+    }
+
     public String getName() {
         if (name == null || name.isBlank()) return login;
         else return name;
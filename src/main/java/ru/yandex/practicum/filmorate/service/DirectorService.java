@@ -2,7 +2,9 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.change.DirectorChangedEvent;
 import ru.yandex.practicum.filmorate.exception.DirectorNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Director;
@@ -17,6 +19,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class DirectorService {
     private final DirectorStorage directorDao;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<Director> getAllDirectors() {
         return directorDao.getAllDirectorsFromDb();
@@ -29,39 +32,44 @@ public class DirectorService {
     }
 
     public Director createDirector(Director director) {
-        return directorDao.createDirectorAndReturnDirectorWithId(director);
+        Director created = directorDao.createDirectorAndReturnDirectorWithId(director);
+        eventPublisher.publishEvent(new DirectorChangedEvent(created.getId()));
+        return created;
     }
 
     public Director updateDirector(Director director) {
-        return directorDao.updateDirectorInDb(director);
+        Director updated = directorDao.updateDirectorInDb(director);
+        eventPublisher.publishEvent(new DirectorChangedEvent(director.getId()));
+        return updated;
     }
 
     public void removeDirectorById(Long id) {
         directorDao.removeDirectorByIdFromStorage(id);
+        eventPublisher.publishEvent(new DirectorChangedEvent(id));
     }
 
     public List<Film> getSortedFilmsByDirectorId(Long directorId, Optional<String> param) {
         if (param.isEmpty()) throw new ValidationException("Attempt to get sorted films with " +
                 "empty parameter");
-        if (!directorDao.isDirectorExists(directorId)) throw new DirectorNotFoundException(
-                String.format("Attempt to get sorted films with absent director id = %d", directorId));
 
         String sortParameter = param.get().trim().toLowerCase();
+        List<Film> films;
         switch (sortParameter) {
-            case "year": {
-                List<Film> films = directorDao.getAllFilmsByDirectorOnYear(directorId);
-                filmConvertedGenres(films);
-                return films;
-            }
-            case "likes": {
-                List<Film> films = directorDao.getAllFilmsByDirectorOnLikes(directorId);
-                filmConvertedGenres(films);
-                return films;
-            }
+            case "year":
+                films = directorDao.getAllFilmsByDirectorOnYear(directorId);
+                break;
+            case "likes":
+                films = directorDao.getAllFilmsByDirectorOnLikes(directorId);
+                break;
             default:
                 throw new DirectorNotFoundException(String.format("Attempt to get sorted films with " +
                         "unknown parameter = %s", sortParameter));
         }
+        // существование режиссёра проверяем, только если фильмов не нашлось
+        if (films.isEmpty() && !directorDao.isDirectorExists(directorId)) throw new DirectorNotFoundException(
+                String.format("Attempt to get sorted films with absent director id = %d", directorId));
+        filmConvertedGenres(films);
+        return films;
     }
 
     private void filmConvertedGenres(List<Film> films) {
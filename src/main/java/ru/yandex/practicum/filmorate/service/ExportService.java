@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.export.ExportStorage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class ExportService {
+    private final ExportStorage exportStorage;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter rowWriter;
+
+    public ExportService(ExportStorage exportStorage, ObjectMapper objectMapper) {
+        this.exportStorage = exportStorage;
+        this.objectMapper = objectMapper;
+        this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void exportFilms(OutputStream out) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            AtomicLong rows = new AtomicLong();
+            exportStorage.forEachFilm(film -> writeRow(generator, film, rows));
+            log.info("Exported {} films", rows.get());
+        }
+    }
+
+    public void exportUsers(OutputStream out) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            AtomicLong rows = new AtomicLong();
+            exportStorage.forEachUser(user -> writeRow(generator, user, rows));
+            log.info("Exported {} users", rows.get());
+        }
+    }
+
+    public void exportLikes(OutputStream out) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            AtomicLong rows = new AtomicLong();
+            exportStorage.forEachLike((userId, filmId) -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("userId", userId);
+                    generator.writeNumberField("filmId", filmId);
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    rows.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Exported {} likes", rows.get());
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private void writeRow(JsonGenerator generator, Object row, AtomicLong rows) {
+        try {
+            rowWriter.writeValue(generator, row);
+            generator.writeRaw('\n');
+            rows.incrementAndGet();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
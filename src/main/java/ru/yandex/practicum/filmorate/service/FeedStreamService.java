@@ -0,0 +1,249 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.change.FeedEventsAddedEvent;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.event.EventStorage;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Живая лента пользователя по Server-Sent Events.
+ * Подписка - это асинхронный SseEmitter без собственного потока. Записанные в EVENTS события
+ * приходят от {@link ru.yandex.practicum.filmorate.storage.event.EventDbStorage} и раскладываются
+ * по очередям подписок пользователя; отправку выполняет небольшой общий пул, причём одну подписку
+ * в каждый момент обслуживает не больше одного потока, поэтому порядок событий сохраняется.
+ * Клиент, который переподключается с Last-Event-ID, сначала получает пропущенные события из БД, но
+ * не больше max-pending за одно подключение: после них поток закрывается, и клиент продолжает
+ * с последнего полученного события.
+ * Подписка, у которой накопилось больше max-pending неотправленных событий, закрывается:
+ * клиент переподключится и дочитает ленту из БД.
+ */
+@Slf4j
+@Service
+public class FeedStreamService {
+    // служебное значение очереди подписки: отправить комментарий, чтобы соединение не простаивало
+    private static final Event HEARTBEAT = new Event();
+
+    private final EventStorage eventStorage;
+    private final Duration timeout;
+    private final int replayLimit;
+    private final int maxPending;
+    private final ExecutorService sender;
+    private final Map<Long, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    public FeedStreamService(EventStorage eventStorage,
+                             @Value("${filmorate.feed-stream.timeout:30m}") Duration timeout,
+                             @Value("${filmorate.feed-stream.replay-limit:1000}") int replayLimit,
+                             @Value("${filmorate.feed-stream.max-pending:1000}") int maxPending,
+                             @Value("${filmorate.feed-stream.send-threads:2}") int sendThreads,
+                             MeterRegistry meterRegistry) {
+        this.eventStorage = eventStorage;
+        this.timeout = timeout;
+        this.replayLimit = replayLimit;
+        this.maxPending = maxPending;
+        this.sender = Executors.newFixedThreadPool(sendThreads, runnable -> {
+            Thread thread = new Thread(runnable, "feed-stream-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("feed.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Подписывает на новые события ленты пользователя. Если передан lastEventId,
+     * сначала отправляются события после него, читаемые из БД страницами по replay-limit.
+     * До возврата эмиттера отправленное копится в его буфере, поэтому пропущенных событий
+     * отправляется не больше max-pending.
+     */
+    public SseEmitter subscribe(Long userId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscription subscription = new Subscription(userId, emitter, lastEventId != null);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+        // подписка регистрируется до чтения пропущенных событий, чтобы не потерять события между ними;
+        // пришедшие за это время события ждут в очереди подписки
+        subscriptions.compute(userId, (id, userSubscriptions) -> {
+            Set<Subscription> set = userSubscriptions != null ? userSubscriptions : ConcurrentHashMap.newKeySet();
+            set.add(subscription);
+            return set;
+        });
+        subscriberCount.incrementAndGet();
+        if (lastEventId != null) {
+            long afterId = lastEventId;
+            int replayed = 0;
+            boolean more;
+            do {
+                int limit = Math.min(replayLimit, maxPending - replayed);
+                List<Event> missed = eventStorage.getEventsAfter(userId, afterId, limit);
+                subscription.replay(missed);
+                replayed += missed.size();
+                if (!missed.isEmpty()) {
+                    afterId = missed.get(missed.size() - 1).getEventId();
+                }
+                more = missed.size() == limit;
+            } while (more && replayed < maxPending && !subscription.closed.get());
+            if (more) {
+                log.info("Feed stream of user id = {} is closed after {} replayed events, resume from event id = {}",
+                        userId, replayed, afterId);
+                subscription.complete();
+            } else {
+                subscription.endReplay();
+            }
+        }
+        log.debug("User id = {} subscribed to the feed stream after event id = {}", userId, lastEventId);
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeedEventsAdded(FeedEventsAddedEvent event) {
+        Map<Long, List<Event>> byUser = event.getEvents().stream()
+                .collect(Collectors.groupingBy(Event::getUserId));
+        byUser.forEach((userId, events) -> {
+            Set<Subscription> userSubscriptions = subscriptions.get(userId);
+            if (userSubscriptions != null) {
+                userSubscriptions.forEach(subscription -> subscription.offer(events));
+            }
+        });
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.feed-stream.heartbeat-interval:PT30S}",
+            fixedDelayString = "${filmorate.feed-stream.heartbeat-interval:PT30S}")
+    public void sendHeartbeats() {
+        subscriptions.values().forEach(userSubscriptions ->
+                userSubscriptions.forEach(subscription -> subscription.offer(List.of(HEARTBEAT))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.values().forEach(userSubscriptions -> userSubscriptions.forEach(Subscription::complete));
+        sender.shutdownNow();
+    }
+
+    private final class Subscription {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Queue<Event> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // пока отправляются пропущенные события, живые копятся в очереди
+        private volatile boolean replaying;
+        // события с id не больше этого уже отправлены из БД при переподключении
+        private volatile long replayedUpTo;
+
+        private Subscription(Long userId, SseEmitter emitter, boolean replaying) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.replaying = replaying;
+        }
+
+        private synchronized void replay(List<Event> events) {
+            events.forEach(this::send);
+            if (!events.isEmpty()) {
+                replayedUpTo = events.get(events.size() - 1).getEventId();
+            }
+        }
+
+        private void endReplay() {
+            replaying = false;
+            schedule();
+        }
+
+        private void offer(List<Event> events) {
+            if (closed.get()) {
+                return;
+            }
+            if (pendingCount.addAndGet(events.size()) > maxPending) {
+                log.info("Feed stream of user id = {} is closed: client does not keep up", userId);
+                complete();
+                return;
+            }
+            pending.addAll(events);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            synchronized (this) {
+                Event event;
+                while (!closed.get() && !replaying && (event = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    if (event == HEARTBEAT || event.getEventId() > replayedUpTo) {
+                        send(event);
+                    }
+                }
+            }
+            scheduled.set(false);
+            if (!replaying && !pending.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void send(Event event) {
+            try {
+                if (event == HEARTBEAT) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.getEventId()))
+                            .name("feed")
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // клиент отключился или подписка уже завершена
+                close();
+            }
+        }
+
+        private void complete() {
+            close();
+            emitter.complete();
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.computeIfPresent(userId, (id, userSubscriptions) -> {
+                    userSubscriptions.remove(this);
+                    return userSubscriptions.isEmpty() ? null : userSubscriptions;
+                });
+                subscriberCount.decrementAndGet();
+                pending.clear();
+            }
+        }
+    }
+}
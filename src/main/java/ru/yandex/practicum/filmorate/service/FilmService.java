@@ -4,44 +4,144 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.change.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.change.FilmsImportedEvent;
+import ru.yandex.practicum.filmorate.change.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikesChangedEvent;
+import ru.yandex.practicum.filmorate.exception.DirectorNotFoundException;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.GenreNotFoundException;
+import ru.yandex.practicum.filmorate.exception.MPANotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeResult;
 import ru.yandex.practicum.filmorate.model.OperationType;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.event.EventStorage;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class FilmService {
 
-    @Qualifier("filmDbStorage") private final FilmStorage filmStorage;
+    @Qualifier("filmStorage") private final FilmStorage filmStorage;
     private final LikesStorage likesStorage;
     private final EventStorage eventStorage;
+    private final DirectorStorage directorStorage;
+    private final ReferenceDataRegistry referenceData;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
     private static final LocalDate releaseDate = LocalDate.of(1895, 12, 28);
+    private static final int MAX_BATCH_SIZE = 100_000;
+    private static final int IMPORTED_EVENT_SIZE = 10_000;
+    // ограничено длиной массива-параметра, которым хранилище проверяет id пакета
+    private static final int MAX_LIKES_BATCH_SIZE = 10_000;
 
     public Film addFilm(Film film) {
         if (film.getReleaseDate().isBefore(releaseDate))
             throw new ValidationException("Attempt to add film " +
                     "with releaseDate before 28-12-1895");
         filmStorage.add(film);
+        eventPublisher.publishEvent(new FilmChangedEvent(film.getId(), false));
         return film;
     }
 
+    /**
+     * Проверяет все фильмы пакета, включая id рейтингов, жанров и режиссёров, до вставки
+     * и возвращает присвоенные им id в порядке списка. Пакет вставляется одной транзакцией: клиент получает
+     * либо все id, либо ошибку без частично вставленного пакета, а индексы узнают о фильмах только после коммита.
+     */
+    public List<Long> addFilms(List<Film> films) {
+        if (films.isEmpty() || films.size() > MAX_BATCH_SIZE)
+            throw new ValidationException(String.format("Incorrect batch size = %d " +
+                    "(batch must contain from 1 to %d films)", films.size(), MAX_BATCH_SIZE));
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            if (film == null)
+                throw new ValidationException(String.format("Film #%d of the batch is null", i));
+            Set<ConstraintViolation<Film>> violations = validator.validate(film);
+            if (!violations.isEmpty())
+                throw new ValidationException(String.format("Film #%d of the batch is invalid: %s", i,
+                        violations.stream()
+                                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                                .sorted()
+                                .collect(Collectors.joining(", "))));
+            if (film.getReleaseDate().isBefore(releaseDate))
+                throw new ValidationException(String.format("Film #%d of the batch " +
+                        "has releaseDate before 28-12-1895", i));
+        }
+        checkReferences(films);
+        filmStorage.addAll(films);
+        List<Long> ids = films.stream().map(Film::getId).collect(Collectors.toList());
+        // индексы подгружают фильмы события одним массивом-параметром, длина которого в H2 ограничена
+        for (int from = 0; from < ids.size(); from += IMPORTED_EVENT_SIZE) {
+            eventPublisher.publishEvent(new FilmsImportedEvent(
+                    ids.subList(from, Math.min(ids.size(), from + IMPORTED_EVENT_SIZE))));
+        }
+        return ids;
+    }
+
+    // неизвестный id иначе обнаружится только нарушением внешнего ключа посреди вставки
+    private void checkReferences(List<Film> films) {
+        Set<Long> directorIds = new HashSet<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            if (referenceData.getMpa(film.getMpa().getId()) == null)
+                throw new MPANotFoundException(String.format("Film #%d of the batch has absent mpa id = %d", i,
+                        film.getMpa().getId()));
+            if (film.getGenres() != null) {
+                for (Genre genre : film.getGenres()) {
+                    if (referenceData.getGenre(genre.getId()) == null)
+                        throw new GenreNotFoundException(String.format("Film #%d of the batch " +
+                                "has absent genre id = %d", i, genre.getId()));
+                }
+            }
+            if (film.getDirectors() != null) {
+                for (Director director : film.getDirectors()) {
+                    if (director.getId() == null)
+                        throw new ValidationException(String.format("Film #%d of the batch " +
+                                "has director without id", i));
+                    directorIds.add(director.getId());
+                }
+            }
+        }
+        if (directorIds.isEmpty()) {
+            return;
+        }
+        directorIds.removeAll(directorStorage.getExistingDirectorIds(directorIds));
+        if (!directorIds.isEmpty())
+            throw new DirectorNotFoundException(String.format("Attempt to create films with absent director ids %s",
+                    directorIds.stream().sorted().collect(Collectors.toList())));
+    }
+
     public Film updateFilm(Film film) {
         filmStorage.update(film);
+        eventPublisher.publishEvent(new FilmChangedEvent(film.getId(), false));
         Film filmReturn = filmStorage.getById(film.getId()).orElseThrow(
                 () -> new FilmNotFoundException(String.format("Request film with absent id = %d", film.getId())));
         if (film.getGenres() == null) filmReturn.setGenres(null);
@@ -56,6 +156,15 @@ public class FilmService {
         return filmStorage.getAll();
     }
 
+    public CursorPage<Film> getFilmsPage(Long after, Integer limit) {
+        long afterId = after == null ? 0 : after;
+        int pageSize = limit == null ? CursorPage.DEFAULT_PAGE_SIZE : limit;
+        if (afterId < 0 || pageSize <= 0 || pageSize > CursorPage.MAX_PAGE_SIZE)
+            throw new ValidationException(String.format("Incorrect page parameters after = %d, limit = %d " +
+                    "(limit must be from 1 to %d)", afterId, pageSize, CursorPage.MAX_PAGE_SIZE));
+        return CursorPage.of(filmStorage.getPage(afterId, pageSize + 1), pageSize, Film::getId);
+    }
+
     public Film getFilmById(Long id) {
         return filmStorage.getById(id)
                 .orElseThrow(() -> new FilmNotFoundException(String.format("Request film with absent id = %d", id)));
@@ -63,10 +172,12 @@ public class FilmService {
 
     public void deleteFilmById(Long id) {
         filmStorage.deleteById(id);
+        eventPublisher.publishEvent(new FilmChangedEvent(id, true));
     }
 
     public void addLike(Long id, Long userId) {
         likesStorage.addLike(id, userId);
+        eventPublisher.publishEvent(new LikeChangedEvent(id, userId, true));
         eventStorage.addNewEvent(new Event.Builder()
                 .setCurrentTimestamp()
                 .setUserId(userId)
@@ -79,6 +190,7 @@ public class FilmService {
 
     public void removeLike(Long id, Long userId) {
         likesStorage.removeLike(id, userId);
+        eventPublisher.publishEvent(new LikeChangedEvent(id, userId, false));
         eventStorage.addNewEvent(new Event.Builder()
                 .setCurrentTimestamp()
                 .setUserId(userId)
@@ -89,50 +201,92 @@ public class FilmService {
         log.info("User id = {} deleted like to film id = {}", userId, id);
     }
 
+    /**
+     * Применяет пакет операций с лайками. Из нескольких операций с одной парой пользователь - фильм
+     * выполняется последняя, остальные получают статус DUPLICATE. События ленты и событие для кэшей
+     * публикуются одним пакетом только для операций, которые изменили лайки.
+     */
+    public List<LikeResult> applyLikes(List<LikeOperation> operations) {
+        if (operations.isEmpty() || operations.size() > MAX_LIKES_BATCH_SIZE)
+            throw new ValidationException(String.format("Incorrect batch size = %d " +
+                    "(batch must contain from 1 to %d like operations)", operations.size(), MAX_LIKES_BATCH_SIZE));
+        Map<List<Long>, Integer> lastByPair = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            LikeOperation operation = operations.get(i);
+            if (operation == null || operation.getUserId() == null || operation.getFilmId() == null)
+                throw new ValidationException(String.format("Like operation #%d of the batch " +
+                        "must have userId and filmId", i));
+            if (operation.getOperation() != OperationType.ADD && operation.getOperation() != OperationType.REMOVE)
+                throw new ValidationException(String.format("Like operation #%d of the batch " +
+                        "must have operation ADD or REMOVE", i));
+            lastByPair.put(List.of(operation.getUserId(), operation.getFilmId()), i);
+        }
+        List<LikeOperation> unique = lastByPair.values().stream()
+                .map(operations::get)
+                .collect(Collectors.toList());
+        List<LikeResult.Status> statuses = likesStorage.applyLikes(unique);
+
+        LikeResult.Status[] results = new LikeResult.Status[operations.size()];
+        Arrays.fill(results, LikeResult.Status.DUPLICATE);
+        List<LikeChangedEvent> changes = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        int k = 0;
+        for (int i : lastByPair.values()) {
+            LikeOperation operation = operations.get(i);
+            results[i] = statuses.get(k++);
+            if (results[i] == LikeResult.Status.APPLIED) {
+                changes.add(new LikeChangedEvent(operation.getFilmId(), operation.getUserId(),
+                        operation.getOperation() == OperationType.ADD));
+                events.add(new Event.Builder()
+                        .setCurrentTimestamp()
+                        .setUserId(operation.getUserId())
+                        .setEventType(EventType.LIKE)
+                        .setOperationType(operation.getOperation())
+                        .setEntityId(operation.getFilmId())
+                        .build());
+            }
+        }
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new LikesChangedEvent(changes));
+            eventStorage.addNewEvents(events);
+        }
+        log.info("Batch of {} like operations applied, {} likes changed", operations.size(), changes.size());
+        return IntStream.range(0, operations.size())
+                .mapToObj(i -> new LikeResult(operations.get(i).getUserId(), operations.get(i).getFilmId(),
+                        operations.get(i).getOperation(), results[i]))
+                .collect(Collectors.toList());
+    }
+
     public List<Film> getFilmsByRating(int count, int genreId, int year) {
 
         return likesStorage.getPopular(count, genreId, year);
     }
 
 
-    public List<Film> search(String query, String by) {
-        int count = 10;
-        int genreId = -1;
-        int year = -1;
+    /**
+     * Фильмы, у которых query входит в название и/или в имя режиссёра, по убыванию лайков, при равенстве по id.
+     * Без limit возвращаются все найденные фильмы.
+     */
+    public List<Film> search(String query, String by, Integer limit) {
+        if (limit != null && (limit <= 0 || limit > CursorPage.MAX_PAGE_SIZE))
+            throw new ValidationException(String.format("Incorrect search limit = %d (must be from 1 to %d)",
+                    limit, CursorPage.MAX_PAGE_SIZE));
         if (query == null) {
-            return getFilmsByRating(count, genreId, year);
-        } else {
-            if (by != null) {
-                String[] words = by.toLowerCase().replaceAll(" ", "").split(",");
-                if (words.length == 1 && words[0].equals("title")) {
-                    List<Film> films = filmStorage.searchByTitle(query);
-                    return replaceGenresByNull(films);
-                }
-
-                if (words.length == 1 && words[0].equals("director")) {
-                    List<Film> films = filmStorage.searchByDirector(query);
-                    return replaceGenresByNull(films);
-                } else if (words.length > 1) {
-                    if ((words[0].equals("director") && words[1].equals("title"))) {
-                        List<Film> all = new ArrayList<>(filmStorage.searchByTitle(query));
-                        all.addAll(replaceGenresByNull(filmStorage.searchByDirector(query)));
-                        return all;
-                    }
-
-                    if ((words[0].equals("title") && words[1].equals("director"))) {
-                        List<Film> all = new ArrayList<>(filmStorage.searchByDirector(query));
-                        all.addAll(replaceGenresByNull(filmStorage.searchByTitle(query)));
-                        return all;
-                    }
-
-                } else {
-                    log.info("Not enough parameters to search for");
-                    throw new FilmNotFoundException("Not enough parameters to search for");
-                }
-            }
+            return getFilmsByRating(limit == null ? 10 : limit, -1, -1);
+        }
+        if (by == null) {
+            log.info("Not enough parameters to search for");
+            throw new FilmNotFoundException("Not enough parameters to search for");
+        }
+        Set<String> criteria = new HashSet<>(Arrays.asList(by.toLowerCase().replaceAll(" ", "").split(",")));
+        boolean byTitle = criteria.remove("title");
+        boolean byDirector = criteria.remove("director");
+        if (!criteria.isEmpty() || (!byTitle && !byDirector)) {
             log.info("Not enough parameters to search for");
             throw new FilmNotFoundException("Not enough parameters to search for");
         }
+        int count = limit == null ? Integer.MAX_VALUE : limit;
+        return replaceGenresByNull(filmStorage.search(query, byTitle, byDirector, count));
     }
 
     private List<Film> replaceGenresByNull(List<Film> films) {
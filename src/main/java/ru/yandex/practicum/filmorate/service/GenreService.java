@@ -1,40 +1,31 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 
 import java.util.Collection;
 
 @Component
 @Slf4j
 public class GenreService {
-    private final JdbcTemplate jdbcTemplate;
+    private final GenreStorage genreStorage;
 
-    public GenreService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public GenreService(GenreStorage genreStorage) {
+        this.genreStorage = genreStorage;
     }
 
     public Collection<Genre> getGenres () {
-        return jdbcTemplate.query("SELECT * FROM GENRES",
-                ((rs, rowNum) -> new Genre(
-                        rs.getInt("genre_id"),
-                        rs.getString("genre"))
-                ));
+        return genreStorage.getAll();
     }
 
     public Genre getGenre(int id) {
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet("SELECT GENRE FROM GENRES WHERE GENRE_ID = ?", id);
-        if (userRows.next()) {
-            Genre genre = new Genre(
-                    id,
-                    userRows.getString("genre")
-            );
+        Genre genre = genreStorage.getGenre(id);
+        if (genre != null) {
             log.info("Response genre = {} ", genre);
             return genre;
         } else throw new GenreNotFoundException("Attempt to get genre with absent id");
     }
-}
\ No newline at end of file
+}
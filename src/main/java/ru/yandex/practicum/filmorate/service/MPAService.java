@@ -1,41 +1,31 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.MPANotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 
 import java.util.Collection;
 
 @Component
 @Slf4j
 public class MPAService {
-    private final JdbcTemplate jdbcTemplate;
+    private final MpaStorage mpaStorage;
 
-    public MPAService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public MPAService(MpaStorage mpaStorage) {
+        this.mpaStorage = mpaStorage;
     }
 
     public Collection<Mpa> getMpa () {
-        return jdbcTemplate.query("SELECT * FROM RATES_MPA",
-                ((rs, rowNum) -> new Mpa(
-                        rs.getInt("mpa_id"),
-                        rs.getString("mpa_name"))
-                ));
+        return mpaStorage.getAll();
     }
 
     public Mpa getMpa(int id) {
-        SqlRowSet userRows =
-                jdbcTemplate.queryForRowSet("SELECT MPA_NAME FROM RATES_MPA WHERE MPA_ID = ?", id);
-        if (userRows.next()) {
-            Mpa mpa = new Mpa(
-                    id,
-                    userRows.getString("mpa_name")
-            );
+        Mpa mpa = mpaStorage.getMpa(id);
+        if (mpa != null) {
             log.info("Response mpa = {} ", mpa);
             return mpa;
         } else throw new MPANotFoundException("Attempt to get mpa with absent id");
     }
-}
\ No newline at end of file
+}
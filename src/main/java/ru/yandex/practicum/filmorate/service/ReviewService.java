@@ -4,13 +4,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ReviewNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.*;
 import ru.yandex.practicum.filmorate.storage.event.EventStorage;
 import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
 
-import java.util.Collection;
-import java.util.NoSuchElementException;
-
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -19,8 +17,28 @@ public class ReviewService {
     private final ReviewStorage reviewStorage;
     private final EventStorage eventStorage;
 
-    public Collection<Review> getAllReviews(Long filmId, Long count) {
-        return reviewStorage.getAll(filmId, count);
+    /**
+     * Страница самых полезных отзывов. Курсор after - id последнего отзыва предыдущей страницы:
+     * следующая страница начинается после его полезности, записанной в БД, поэтому если она
+     * изменилась между запросами, на границе страниц отзывы могут повториться или пропуститься.
+     */
+    public CursorPage<Review> getReviewsPage(Long filmId, Long count, Long after) {
+        if (count <= 0 || count > CursorPage.MAX_PAGE_SIZE)
+            throw new ValidationException(String.format("Incorrect reviews count = %d " +
+                    "(count must be from 1 to %d)", count, CursorPage.MAX_PAGE_SIZE));
+        int pageSize = count.intValue();
+        Long afterUseful = null;
+        if (after != null) {
+            // страницы упорядочены по записанной в БД полезности, курсор сравнивается с ней же
+            Review cursor = reviewStorage.getStoredById(after).orElseThrow(() ->
+                    new ReviewNotFoundException(String.format("Review id = %d used as cursor is absent", after)));
+            if (filmId != null && !filmId.equals(cursor.getFilmId()))
+                throw new ValidationException(String.format("Review id = %d used as cursor is not a review " +
+                        "of film id = %d", after, filmId));
+            afterUseful = cursor.getUseful();
+        }
+        return CursorPage.of(reviewStorage.getPage(filmId, afterUseful, after, pageSize + 1), pageSize,
+                Review::getReviewId);
     }
 
     public Review getReviewById(final Long id) {
@@ -42,27 +60,19 @@ public class ReviewService {
     }
 
     public Review updateReview(Review review) {
-        if (reviewStorage.isReviewExists(review.getReviewId())) {
-            Review rev = reviewStorage.getById(review.getReviewId()).get();
-            eventStorage.addNewEvent(new Event.Builder()
-                    .setCurrentTimestamp()
-                    .setUserId(rev.getUserId())
-                    .setEventType(EventType.REVIEW)
-                    .setOperationType(OperationType.UPDATE)
-                    .setEntityId(rev.getReviewId())
-                    .build());
-        }
-        return reviewStorage.update(review);
+        Review rev = reviewStorage.update(review);
+        eventStorage.addNewEvent(new Event.Builder()
+                .setCurrentTimestamp()
+                .setUserId(rev.getUserId())
+                .setEventType(EventType.REVIEW)
+                .setOperationType(OperationType.UPDATE)
+                .setEntityId(rev.getReviewId())
+                .build());
+        return rev;
     }
 
     public void deleteReviewById(Long id) {
-        Review review = null;
-        try {
-            review = reviewStorage.getById(id).get();
-        } catch (NoSuchElementException e) {
-            // ignore
-        }
-        reviewStorage.deleteById(id);
+        Review review = reviewStorage.deleteById(id);
         eventStorage.addNewEvent(new Event.Builder()
                 .setCurrentTimestamp()
                 .setUserId(review.getUserId())
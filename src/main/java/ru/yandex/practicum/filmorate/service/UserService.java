@@ -4,29 +4,41 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.change.UserDeletedEvent;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.OperationType;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendPath;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.event.EventStorage;
 import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
 import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class UserService {
-    @Qualifier("userDbStorage") private final UserStorage userStorage;
+    @Qualifier("userStorage") private final UserStorage userStorage;
     private final FriendsStorage friendsStorage;
     private final EventStorage eventStorage;
+    private final FeedStreamService feedStreamService;
     private final LikesStorage likesStorage;
+    private final ApplicationEventPublisher eventPublisher;
+    private static final int DEFAULT_SUGGESTIONS = 10;
 
     public User addUser(User user) {
         return userStorage.add(user);
@@ -37,12 +49,21 @@ public class UserService {
     }
 
     public Collection<User> getUsers() {
-        System.out.println(userStorage.getAll());
         return userStorage.getAll();
     }
 
+    public CursorPage<User> getUsersPage(Long after, Integer limit) {
+        long afterId = after == null ? 0 : after;
+        int pageSize = limit == null ? CursorPage.DEFAULT_PAGE_SIZE : limit;
+        if (afterId < 0 || pageSize <= 0 || pageSize > CursorPage.MAX_PAGE_SIZE)
+            throw new ValidationException(String.format("Incorrect page parameters after = %d, limit = %d " +
+                    "(limit must be from 1 to %d)", afterId, pageSize, CursorPage.MAX_PAGE_SIZE));
+        return CursorPage.of(userStorage.getPage(afterId, pageSize + 1), pageSize, User::getId);
+    }
+
     public void deleteUserById(Long id){
-        userStorage.deleteById(id);
+        List<Long> likedFilmIds = userStorage.deleteById(id);
+        eventPublisher.publishEvent(new UserDeletedEvent(id, likedFilmIds));
     }
 
     public User getUserById(Long id) {
@@ -79,15 +100,55 @@ public class UserService {
     }
 
     public Collection<User> findSharedFriends(Long id, Long otherId) {
-        return findFriends(id).stream()
-                .filter(x -> findFriends(otherId).contains(x))
-                .collect(Collectors.toList());
+        return friendsStorage.findSharedFriends(id, otherId);
+    }
+
+    public List<User> findFriendSuggestions(Long id, Integer limit) {
+        int count = limit == null ? DEFAULT_SUGGESTIONS : limit;
+        if (count <= 0 || count > CursorPage.MAX_PAGE_SIZE)
+            throw new ValidationException(String.format("Incorrect suggestions limit = %d " +
+                    "(limit must be from 1 to %d)", count, CursorPage.MAX_PAGE_SIZE));
+        return friendsStorage.findSuggestions(id, count);
+    }
+
+    public FriendPath findDistance(Long id, Long otherId) {
+        return friendsStorage.findPath(id, otherId);
     }
 
     public Collection<Event> getFeed(Long id) {
         return eventStorage.getEventsByUserId(id);
     }
 
+    /**
+     * Страница ленты от новых событий к старым. before - id события, с которого продолжить,
+     * types - типы событий через запятую.
+     */
+    public CursorPage<Event> getFeedPage(Long id, Long before, Integer limit, String types) {
+        long beforeId = before == null ? Long.MAX_VALUE : before;
+        int pageSize = limit == null ? CursorPage.DEFAULT_PAGE_SIZE : limit;
+        if (beforeId <= 0 || pageSize <= 0 || pageSize > CursorPage.MAX_PAGE_SIZE)
+            throw new ValidationException(String.format("Incorrect feed parameters before = %d, limit = %d " +
+                    "(limit must be from 1 to %d)", beforeId, pageSize, CursorPage.MAX_PAGE_SIZE));
+        Set<EventType> eventTypes = EnumSet.noneOf(EventType.class);
+        if (types != null) {
+            for (String type : types.toUpperCase().replaceAll(" ", "").split(",")) {
+                try {
+                    eventTypes.add(EventType.valueOf(type));
+                } catch (IllegalArgumentException e) {
+                    throw new ValidationException(String.format("Unknown event type '%s' (expected one of %s)",
+                            type, Arrays.toString(EventType.values())));
+                }
+            }
+        }
+        return CursorPage.of(eventStorage.getEventsPage(id, beforeId, pageSize + 1, eventTypes), pageSize,
+                Event::getEventId);
+    }
+
+    public SseEmitter streamFeed(Long id, Long lastEventId) {
+        getUserById(id);
+        return feedStreamService.subscribe(id, lastEventId);
+    }
+
     public Collection<Film> getRecommendations(Long id) {
         return likesStorage.getRecommendations(id);
     }
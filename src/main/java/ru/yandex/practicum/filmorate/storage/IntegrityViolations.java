@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+/**
+ * Разбор нарушений ограничений БД. Записи не проверяют заранее существование связанных строк,
+ * а полагаются на именованные внешние ключи из schema.sql: по имени нарушенного ключа
+ * хранилище определяет, какой строки не хватило, и бросает соответствующее исключение.
+ */
+public final class IntegrityViolations {
+    private IntegrityViolations() {
+    }
+
+    /**
+     * true, если запись отклонена внешним ключом с именем constraint.
+     */
+    public static boolean isForeignKey(DataIntegrityViolationException e, String constraint) {
+        if (e instanceof DuplicateKeyException) {
+            return false;
+        }
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toUpperCase().contains(constraint.toUpperCase());
+    }
+}
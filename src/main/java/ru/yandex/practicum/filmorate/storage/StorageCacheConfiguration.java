@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.director.CachingDirectorStorage;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventWriter;
+import ru.yandex.practicum.filmorate.storage.event.QueuedEventStorage;
+import ru.yandex.practicum.filmorate.storage.film.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.IndexedSearchFilmStorage;
+import ru.yandex.practicum.filmorate.storage.friends.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+import ru.yandex.practicum.filmorate.storage.friends.GraphFriendsStorage;
+import ru.yandex.practicum.filmorate.storage.like.CommonFilmsLikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.IndexedLikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikedFilmsCache;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.like.PrecomputedLikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.like.RecommendationPrecomputer;
+import ru.yandex.practicum.filmorate.storage.like.RecommendingLikesStorage;
+import ru.yandex.practicum.filmorate.storage.review.BufferedReviewStorage;
+import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
+import ru.yandex.practicum.filmorate.storage.review.ReviewVoteBuffer;
+import ru.yandex.practicum.filmorate.storage.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.user.CachingUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Duration;
+
+/**
+ * Хранилища фильмов и пользователей, которыми пользуются сервисы.
+ * При filmorate.cache.enabled=true поверх БД ставится кэш Caffeine (вытеснение W-TinyLFU + TTL),
+ * его счётчики попаданий, промахов и вытеснений публикуются в метриках cache.*;
+ * там же кэшируются фильмографии режиссёров в обоих порядках сортировки.
+ * Популярные фильмы отдаются из {@link PopularityIndex}, если он включён (filmorate.popularity-index.enabled),
+ * поиск по названию и режиссёру - из {@link FilmSearchIndex} (filmorate.search-index.enabled),
+ * рекомендации - из {@link RecommendationEngine} (filmorate.recommender.enabled)
+ * или из заранее посчитанной таблицы {@link RecommendationPrecomputer} (filmorate.recommender.precompute.enabled),
+ * общие фильмы - пересечением лайков из {@link LikedFilmsCache} (filmorate.liked-films.enabled),
+ * возможные друзья - по графу дружбы {@link FriendGraph} (filmorate.friend-graph.enabled).
+ * События ленты пишет в фоне {@link EventWriter} (filmorate.event-writer.enabled),
+ * оценки отзывов копит и пишет пакетами {@link ReviewVoteBuffer} (filmorate.review-votes.enabled).
+ */
+@Slf4j
+@Configuration
+public class StorageCacheConfiguration {
+
+    @Bean
+    public FilmStorage filmStorage(@Qualifier("filmDbStorage") FilmStorage filmDbStorage,
+                                   ObjectProvider<FilmSearchIndex> searchIndex,
+                                   @Value("${filmorate.cache.enabled:true}") boolean enabled,
+                                   @Value("${filmorate.cache.films.maximum-size:10000}") long maximumSize,
+                                   @Value("${filmorate.cache.films.expire-after-write:10m}") Duration ttl,
+                                   MeterRegistry meterRegistry) {
+        FilmStorage storage = filmDbStorage;
+        FilmSearchIndex index = searchIndex.getIfAvailable();
+        if (index != null) {
+            log.info("Film search is served from the in-memory search index");
+            storage = new IndexedSearchFilmStorage(storage, index);
+        }
+        if (!enabled) {
+            return storage;
+        }
+        Cache<Long, Film> cache = buildCache(maximumSize, ttl);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "films");
+        log.info("Films cache enabled: maximum size = {}, ttl = {}", maximumSize, ttl);
+        return new CachingFilmStorage(storage, cache);
+    }
+
+    @Bean
+    public UserStorage userStorage(@Qualifier("userDbStorage") UserStorage userDbStorage,
+                                   @Value("${filmorate.cache.enabled:true}") boolean enabled,
+                                   @Value("${filmorate.cache.users.maximum-size:10000}") long maximumSize,
+                                   @Value("${filmorate.cache.users.expire-after-write:10m}") Duration ttl,
+                                   MeterRegistry meterRegistry) {
+        if (!enabled) {
+            return userDbStorage;
+        }
+        Cache<Long, User> cache = buildCache(maximumSize, ttl);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+        log.info("Users cache enabled: maximum size = {}, ttl = {}", maximumSize, ttl);
+        return new CachingUserStorage(userDbStorage, cache);
+    }
+
+    @Bean
+    @Primary
+    public DirectorStorage directorStorage(@Qualifier("directorDbStorage") DirectorStorage directorDbStorage,
+                                           @Value("${filmorate.cache.enabled:true}") boolean enabled,
+                                           @Value("${filmorate.cache.directors.maximum-size:1000}") long maximumSize,
+                                           @Value("${filmorate.cache.directors.expire-after-write:10m}") Duration ttl,
+                                           MeterRegistry meterRegistry) {
+        if (!enabled) {
+            return directorDbStorage;
+        }
+        CachingDirectorStorage storage = new CachingDirectorStorage(directorDbStorage, cacheBuilder(maximumSize, ttl));
+        CaffeineCacheMetrics.monitor(meterRegistry, storage.getCache(), "director-films");
+        log.info("Director filmography cache enabled: maximum size = {}, ttl = {}", maximumSize, ttl);
+        return storage;
+    }
+
+    @Bean
+    @Primary
+    public LikesStorage likesStorage(@Qualifier("likesDbStorage") LikesStorage likesDbStorage,
+                                     @Qualifier("filmStorage") FilmStorage filmStorage,
+                                     ObjectProvider<PopularityIndex> popularityIndex,
+                                     ObjectProvider<RecommendationEngine> recommendationEngine,
+                                     ObjectProvider<RecommendationPrecomputer> recommendationPrecomputer,
+                                     ObjectProvider<LikedFilmsCache> likedFilmsCache) {
+        LikesStorage storage = likesDbStorage;
+        PopularityIndex index = popularityIndex.getIfAvailable();
+        if (index != null) {
+            log.info("Popular films are served from the in-memory popularity index");
+            storage = new IndexedLikesStorage(storage, filmStorage, index);
+        }
+        RecommendationEngine engine = recommendationEngine.getIfAvailable();
+        if (engine != null) {
+            log.info("Recommendations are served from the in-memory like matrix");
+            storage = new RecommendingLikesStorage(storage, filmStorage, engine);
+        }
+        RecommendationPrecomputer precomputer = recommendationPrecomputer.getIfAvailable();
+        if (precomputer != null) {
+            log.info("Recommendations are read from the precomputed USER_RECOMMENDATIONS table");
+            storage = new PrecomputedLikesStorage(storage, filmStorage, precomputer);
+        }
+        LikedFilmsCache likedFilms = likedFilmsCache.getIfAvailable();
+        if (likedFilms != null) {
+            log.info("Common films are found by intersecting cached like sets");
+            storage = new CommonFilmsLikesStorage(storage, filmStorage, likedFilms);
+        }
+        return storage;
+    }
+
+    @Bean
+    @Primary
+    public FriendsStorage friendsStorage(@Qualifier("friendsDbStorage") FriendsStorage friendsDbStorage,
+                                         @Qualifier("userStorage") UserStorage userStorage,
+                                         ObjectProvider<FriendGraph> friendGraph) {
+        FriendGraph graph = friendGraph.getIfAvailable();
+        if (graph == null) {
+            return friendsDbStorage;
+        }
+        log.info("Friend suggestions are served from the in-memory friend graph");
+        return new GraphFriendsStorage(friendsDbStorage, userStorage, graph);
+    }
+
+    @Bean
+    @Primary
+    public EventStorage eventStorage(@Qualifier("eventDbStorage") EventStorage eventDbStorage,
+                                     ObjectProvider<EventWriter> eventWriter) {
+        EventWriter writer = eventWriter.getIfAvailable();
+        if (writer == null) {
+            return eventDbStorage;
+        }
+        log.info("Feed events are written in the background by group commits");
+        return new QueuedEventStorage(eventDbStorage, writer);
+    }
+
+    @Bean
+    @Primary
+    public ReviewStorage reviewStorage(@Qualifier("reviewDbStorage") ReviewStorage reviewDbStorage,
+                                       ObjectProvider<ReviewVoteBuffer> reviewVoteBuffer) {
+        ReviewVoteBuffer buffer = reviewVoteBuffer.getIfAvailable();
+        if (buffer == null) {
+            return reviewDbStorage;
+        }
+        log.info("Review votes are buffered in memory and written in batches");
+        return new BufferedReviewStorage(reviewDbStorage, buffer);
+    }
+
+    private static <V> Cache<Long, V> buildCache(long maximumSize, Duration ttl) {
+        return cacheBuilder(maximumSize, ttl).build();
+    }
+
+    private static Caffeine<Object, Object> cacheBuilder(long maximumSize, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats();
+    }
+}
@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate.storage.director;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.context.event.EventListener;
+import ru.yandex.practicum.filmorate.change.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.change.FilmsImportedEvent;
+import ru.yandex.practicum.filmorate.change.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikesChangedEvent;
+import ru.yandex.practicum.filmorate.change.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Кэширующая обёртка над хранилищем режиссёров: фильмография режиссёра хранится сразу в двух порядках -
+ * по году выпуска и по лайкам. При промахе фильмы читаются одним запросом, жанры и режиссёры догружаются
+ * пакетно, а порядок по лайкам получается сортировкой в памяти.
+ * Запись сбрасывается при изменении связей FILM_DIRECTOR, самих режиссёров, фильмов и их лайков; режиссёров
+ * фильма подсказывает обратный индекс по закэшированным фильмографиям, из которого вытесненные
+ * фильмографии убираются слушателем удаления кэша. Наружу отдаются копии фильмов.
+ */
+public class CachingDirectorStorage implements DirectorStorage {
+    private static final Comparator<Film> BY_LIKES = Comparator.comparingLong(Film::getRating).reversed()
+            .thenComparing(Film::getId);
+
+    private final DirectorStorage directorStorage;
+    private final Cache<Long, Filmography> cache;
+    // фильмографии, в которые попал фильм, по id фильма и id режиссёра; устаревшая запись лишь сбросит
+    // лишнюю фильмографию
+    private final Map<Long, Map<Long, Filmography>> filmDirectors = new ConcurrentHashMap<>();
+    // режиссёры, чьи фильмографии загружаются сейчас: их фильмы ещё не попали в обратный индекс
+    private final Set<Long> loading = ConcurrentHashMap.newKeySet();
+
+    public CachingDirectorStorage(DirectorStorage directorStorage, Caffeine<Object, Object> cacheBuilder) {
+        this.directorStorage = directorStorage;
+        this.cache = cacheBuilder.<Long, Filmography>removalListener((directorId, filmography, cause) -> {
+            if (directorId != null && filmography != null) {
+                unregister(directorId, filmography);
+            }
+        }).build();
+    }
+
+    public Cache<Long, Filmography> getCache() {
+        return cache;
+    }
+
+    @Override
+    public List<Director> getAllDirectorsFromDb() {
+        return directorStorage.getAllDirectorsFromDb();
+    }
+
+    @Override
+    public Director getDirectorByIdFromDb(Long id) {
+        return directorStorage.getDirectorByIdFromDb(id);
+    }
+
+    @Override
+    public Director createDirectorAndReturnDirectorWithId(Director director) {
+        Director created = directorStorage.createDirectorAndReturnDirectorWithId(director);
+        cache.invalidate(created.getId());
+        return created;
+    }
+
+    @Override
+    public Director updateDirectorInDb(Director director) {
+        Director updated = directorStorage.updateDirectorInDb(director);
+        // имя режиссёра хранится и в фильмах, снятых им вместе с другими режиссёрами
+        invalidateAll();
+        return updated;
+    }
+
+    @Override
+    public void removeDirectorByIdFromStorage(Long id) {
+        directorStorage.removeDirectorByIdFromStorage(id);
+        invalidateAll();
+    }
+
+    @Override
+    public void updateDirectorsOfFilm(Film film) {
+        directorStorage.updateDirectorsOfFilm(film);
+        invalidateFilm(film.getId());
+        if (film.getDirectors() != null) {
+            cache.invalidateAll(film.getDirectors().stream().map(Director::getId).collect(Collectors.toSet()));
+        }
+    }
+
+    @Override
+    public void addDirectorToFilm(Long filmId, Long directorId) {
+        directorStorage.addDirectorToFilm(filmId, directorId);
+        cache.invalidate(directorId);
+    }
+
+    @Override
+    public Set<Director> getDirectorsByFilmId(Long filmId) {
+        return directorStorage.getDirectorsByFilmId(filmId);
+    }
+
+    @Override
+    public List<Film> getAllFilmsByDirectorOnLikes(Long directorId) {
+        return copy(cache.get(directorId, this::load).byLikes);
+    }
+
+    @Override
+    public List<Film> getAllFilmsByDirectorOnYear(Long directorId) {
+        return copy(cache.get(directorId, this::load).byYear);
+    }
+
+    @Override
+    public boolean isDirectorExists(Long id) {
+        return directorStorage.isDirectorExists(id);
+    }
+
+    @Override
+    public Set<Long> getExistingDirectorIds(Collection<Long> ids) {
+        return directorStorage.getExistingDirectorIds(ids);
+    }
+
+    @EventListener
+    public void onLikeChanged(LikeChangedEvent event) {
+        invalidateFilm(event.getFilmId());
+    }
+
+    @EventListener
+    public void onLikesChanged(LikesChangedEvent event) {
+        event.getChanges().stream()
+                .map(LikeChangedEvent::getFilmId)
+                .distinct()
+                .forEach(this::invalidateFilm);
+    }
+
+    @EventListener
+    public void onFilmChanged(FilmChangedEvent event) {
+        // новых режиссёров фильма сбрасывают updateDirectorsOfFilm и addDirectorToFilm, которые хранилище
+        // фильмов вызывает через эту обёртку
+        invalidateFilm(event.getFilmId());
+    }
+
+    @EventListener
+    public void onFilmsImported(FilmsImportedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        event.getLikedFilmIds().forEach(this::invalidateFilm);
+    }
+
+    private Filmography load(Long directorId) {
+        loading.add(directorId);
+        try {
+            List<Film> byYear = directorStorage.getAllFilmsByDirectorOnYear(directorId);
+            List<Film> byLikes = byYear.stream()
+                    .sorted(BY_LIKES)
+                    .collect(Collectors.toList());
+            Filmography filmography = new Filmography(byYear, byLikes);
+            byYear.forEach(film -> filmDirectors.computeIfAbsent(film.getId(), id -> new ConcurrentHashMap<>())
+                    .put(directorId, filmography));
+            return filmography;
+        } finally {
+            loading.remove(directorId);
+        }
+    }
+
+    // слушатель удаления вызывается асинхронно: убираем только ссылки на удалённый экземпляр фильмографии,
+    // чтобы не потерять ссылки, которые успела добавить новая загрузка того же режиссёра
+    private void unregister(Long directorId, Filmography filmography) {
+        filmography.byYear.forEach(film -> filmDirectors.computeIfPresent(film.getId(), (id, directors) -> {
+            directors.remove(directorId, filmography);
+            return directors.isEmpty() ? null : directors;
+        }));
+    }
+
+    /**
+     * Загрузка могла прочитать фильм до изменения, но ещё не добавить его в обратный индекс, поэтому
+     * сбрасываются и загружаемые фильмографии: удаление ключа дожидается конца его загрузки в кэше.
+     * Загрузки, начатые позже снимка loading, читают уже изменённые данные.
+     */
+    private void invalidateFilm(Long filmId) {
+        Set<Long> inFlight = Set.copyOf(loading);
+        Map<Long, Filmography> directors = filmDirectors.remove(filmId);
+        if (directors != null) {
+            cache.invalidateAll(directors.keySet());
+        }
+        cache.invalidateAll(inFlight);
+    }
+
+    private void invalidateAll() {
+        Set<Long> inFlight = Set.copyOf(loading);
+        filmDirectors.clear();
+        cache.invalidateAll();
+        // invalidateAll не видит записей, которые ещё загружаются
+        cache.invalidateAll(inFlight);
+    }
+
+    private static List<Film> copy(Collection<Film> films) {
+        return films.stream()
+                .map(Film::new)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Фильмы режиссёра в двух порядках; списки неизменяемы.
+     */
+    public static final class Filmography {
+        private final List<Film> byYear;
+        private final List<Film> byLikes;
+
+        private Filmography(List<Film> byYear, List<Film> byLikes) {
+            this.byYear = List.copyOf(byYear);
+            this.byLikes = List.copyOf(byLikes);
+        }
+    }
+}
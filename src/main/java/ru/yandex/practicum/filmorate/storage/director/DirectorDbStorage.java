@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.director;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -10,10 +11,13 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.DirectorNotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
-import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.IntegrityViolations;
+import ru.yandex.practicum.filmorate.storage.film.FilmHydrator;
 
 import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -23,9 +27,10 @@ import java.util.TreeSet;
 @Repository
 @RequiredArgsConstructor
 public class DirectorDbStorage implements DirectorStorage {
+    private static final int EXISTENCE_CHECK_SIZE = 10_000;
+
     private final JdbcTemplate jdbcTemplate;
-    private final GenreStorage genreStorage;
-    private final MpaStorage mpaStorage;
+    private final FilmHydrator filmHydrator;
 
     @Override
     public List<Director> getAllDirectorsFromDb() {
@@ -63,25 +68,23 @@ public class DirectorDbStorage implements DirectorStorage {
 
     @Override
     public Director updateDirectorInDb(Director director) {
-        if (isDirectorExists(director.getId())) {
-            String sqlQuery = "UPDATE directors SET director_name = ? WHERE director_id = ?";
-            jdbcTemplate.update(sqlQuery, director.getName(), director.getId());
-            log.info("Director {} has been successfully updated", director);
-            return director;
-        } else {
+        String sqlQuery = "UPDATE directors SET director_name = ? WHERE director_id = ?";
+        if (jdbcTemplate.update(sqlQuery, director.getName(), director.getId()) == 0) {
             throw new DirectorNotFoundException(String.format("Attempt to update director with " +
                     "absent id = %d", director.getId()));
         }
+        log.info("Director {} has been successfully updated", director);
+        return director;
     }
 
     @Override
     public void removeDirectorByIdFromStorage(Long id) {
-        if (isDirectorExists(id)) {
-            String sql = "DELETE FROM DIRECTORS WHERE director_id = ?";
-            jdbcTemplate.update(sql, id);
-            log.info("Director  with id = {} has been successfully removed", id);
-        } else throw new DirectorNotFoundException(String.format("Attempt to delete director with " +
-                "absent id = %d", id));
+        String sql = "DELETE FROM DIRECTORS WHERE director_id = ?";
+        if (jdbcTemplate.update(sql, id) == 0) {
+            throw new DirectorNotFoundException(String.format("Attempt to delete director with " +
+                    "absent id = %d", id));
+        }
+        log.info("Director  with id = {} has been successfully removed", id);
     }
 
     @Override
@@ -89,18 +92,30 @@ public class DirectorDbStorage implements DirectorStorage {
         jdbcTemplate.update("DELETE FROM FILM_DIRECTOR WHERE film_id = ?", film.getId());
         if (film.getDirectors() != null) {
             for (Director director : film.getDirectors()) {
-                if (isDirectorExists(director.getId())) {
-                    jdbcTemplate.update("INSERT INTO FILM_DIRECTOR (film_id, director_id) VALUES (?, ?)",
-                            film.getId(), director.getId());
-                    log.info("Director id = {} has been successfully updated in the film: {}", director.getId(), film);
-                } else {
-                    throw new DirectorNotFoundException(String.format("Attempt to create film with " +
-                            "absent director id = %d", director.getId()));
-                }
+                addDirectorToFilm(film.getId(), director.getId());
+                log.info("Director id = {} has been successfully updated in the film: {}", director.getId(), film);
             }
         }
     }
 
+    /**
+     * Связывает режиссёра с фильмом без предварительной проверки: отсутствие режиссёра
+     * определяется по нарушенному внешнему ключу FILM_DIRECTOR.
+     */
+    @Override
+    public void addDirectorToFilm(Long filmId, Long directorId) {
+        try {
+            jdbcTemplate.update("INSERT INTO FILM_DIRECTOR (film_id, director_id) VALUES (?, ?)",
+                    filmId, directorId);
+        } catch (DataIntegrityViolationException e) {
+            if (IntegrityViolations.isForeignKey(e, "film_director_director_fk")) {
+                throw new DirectorNotFoundException(String.format("Attempt to create film with " +
+                        "absent director id = %d", directorId));
+            }
+            throw e;
+        }
+    }
+
     @Override
     public Set<Director> getDirectorsByFilmId(Long filmId) {
         String sql = "SELECT DIRECTORS.DIRECTOR_ID, DIRECTOR_NAME FROM FILM_DIRECTOR JOIN DIRECTORS " +
@@ -115,37 +130,26 @@ public class DirectorDbStorage implements DirectorStorage {
 
     @Override
     public List<Film> getAllFilmsByDirectorOnLikes(Long directorId) {
-        String sql = "SELECT f.film_id, f.name, f.description, f.releasedate, f.duration, f.rate_id " +
+        String sql = "SELECT f.* " +
                 "FROM FILMS AS f " +
-                "LEFT JOIN LIKES AS l ON f.film_id = l.film_id " +
-                "LEFT JOIN FILM_DIRECTOR AS fd ON f.film_id = fd.film_id " +
+                "JOIN FILM_DIRECTOR AS fd ON f.film_id = fd.film_id " +
                 "WHERE fd.director_id = ? " +
-                "GROUP BY f.FILM_ID " +
-                "ORDER BY COUNT(l.FILM_ID) DESC;";
+                "ORDER BY f.likes_count DESC, f.film_id;";
         return collectSortedListOfFilms(sql, directorId);
     }
 
     @Override
     public List<Film> getAllFilmsByDirectorOnYear(Long directorId) {
-        String sql = "SELECT f.film_id, f.name, f.description, f.releasedate, f.duration, f.rate_id " +
+        String sql = "SELECT f.* " +
                 "FROM FILMS AS f " +
                 "LEFT JOIN FILM_DIRECTOR AS fd ON f.film_id = fd.film_id " +
                 "WHERE fd.director_id = ? " +
-                "ORDER BY f.releaseDate;";
+                "ORDER BY f.releaseDate, f.film_id;";
         return collectSortedListOfFilms(sql, directorId);
     }
 
     private List<Film> collectSortedListOfFilms(String sql, Long directorId) {
-        return jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                rs.getLong("film_id"),
-                rs.getString("name"),
-                rs.getString("description"),
-                rs.getDate("releaseDate").toLocalDate(),
-                rs.getInt("duration"),
-                genreStorage.getFilmGenres(rs.getLong("film_id")),
-                mpaStorage.getMpa(rs.getInt("rate_id")),
-                getDirectorsByFilmId(rs.getLong("film_id"))
-        ), directorId);
+        return filmHydrator.hydrate(jdbcTemplate.query(sql, FilmHydrator::mapFilm, directorId));
     }
 
     @Override
@@ -154,4 +158,17 @@ public class DirectorDbStorage implements DirectorStorage {
         SqlRowSet userRows = jdbcTemplate.queryForRowSet(sql, id);
         return userRows.next();
     }
+
+    @Override
+    public Set<Long> getExistingDirectorIds(Collection<Long> ids) {
+        String sql = "SELECT D.DIRECTOR_ID FROM TABLE(ID BIGINT = ?) T JOIN DIRECTORS D ON D.DIRECTOR_ID = T.ID";
+        // пакет фильмов может ссылаться на больше режиссёров, чем H2 принимает в одном массиве-параметре
+        Long[] all = ids.toArray(Long[]::new);
+        Set<Long> existing = new HashSet<>();
+        for (int from = 0; from < all.length; from += EXISTENCE_CHECK_SIZE) {
+            Long[] chunk = Arrays.copyOfRange(all, from, Math.min(all.length, from + EXISTENCE_CHECK_SIZE));
+            existing.addAll(jdbcTemplate.queryForList(sql, Long.class, (Object) chunk));
+        }
+        return existing;
+    }
 }
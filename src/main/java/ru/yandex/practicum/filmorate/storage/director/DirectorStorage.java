@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.storage.director;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -19,6 +20,8 @@ public interface DirectorStorage {
 
     void updateDirectorsOfFilm(Film film);
 
+    void addDirectorToFilm(Long filmId, Long directorId);
+
     Set<Director> getDirectorsByFilmId(Long filmId);
 
     List<Film> getAllFilmsByDirectorOnLikes(Long directorId);
@@ -26,4 +29,7 @@ public interface DirectorStorage {
     List<Film> getAllFilmsByDirectorOnYear(Long directorId);
 
     boolean isDirectorExists(Long id);
+
+    // те из переданных id, режиссёры с которыми есть в БД
+    Set<Long> getExistingDirectorIds(Collection<Long> ids);
 }
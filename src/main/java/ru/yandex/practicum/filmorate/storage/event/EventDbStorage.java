@@ -1,24 +1,34 @@
 package ru.yandex.practicum.filmorate.storage.event;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.change.FeedEventsAddedEvent;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.OperationType;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 @Repository
 public class EventDbStorage implements EventStorage, RowMapper<Event> {
-    private static final String GET_ALL_USER_EVENTS = "SELECT * FROM EVENTS WHERE USER_ID = ?";
+    private static final String GET_ALL_USER_EVENTS = "SELECT * FROM EVENTS WHERE USER_ID = ? ORDER BY EVENT_ID";
+    private static final String INSERT_EVENT = "INSERT INTO EVENTS (timestamp, user_id, event_type, operation, " +
+            "entity_id) VALUES (?, ?, ?, ?, ?)";
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public EventDbStorage(JdbcTemplate jdbcTemplate) {
+    public EventDbStorage(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
         this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -28,10 +38,67 @@ public class EventDbStorage implements EventStorage, RowMapper<Event> {
 
     @Override
     public void addNewEvent(Event event) {
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("EVENTS")
-                .usingGeneratedKeyColumns("event_id");
-        simpleJdbcInsert.execute(event.toMap());
+        addNewEvents(List.of(event));
+    }
+
+    /**
+     * Страница читается по индексу events_user_event_idx (user_id, event_id DESC) от beforeId назад
+     * и останавливается на limit строках, фильтр по типам проверяется в том же запросе.
+     * USER_ID в ORDER BY нужен H2, чтобы сортировка совпала с индексом и не выполнялась отдельно.
+     */
+    @Override
+    public List<Event> getEventsPage(Long userId, long beforeId, int limit, Set<EventType> types) {
+        if (types.isEmpty()) {
+            return jdbcTemplate.query("SELECT * FROM EVENTS WHERE USER_ID = ? AND EVENT_ID < ? " +
+                    "ORDER BY USER_ID, EVENT_ID DESC LIMIT ?", this, userId, beforeId, limit);
+        }
+        String[] typeNames = types.stream().map(EventType::name).toArray(String[]::new);
+        return jdbcTemplate.query("SELECT * FROM EVENTS WHERE USER_ID = ? AND EVENT_ID < ? " +
+                "AND EVENT_TYPE = ANY(?) ORDER BY USER_ID, EVENT_ID DESC LIMIT ?", this, userId, beforeId, typeNames,
+                limit);
+    }
+
+    @Override
+    public List<Event> getEventsAfter(Long userId, long afterId, int limit) {
+        return jdbcTemplate.query("SELECT * FROM EVENTS WHERE USER_ID = ? AND EVENT_ID > ? " +
+                "ORDER BY EVENT_ID LIMIT ?", this, userId, afterId, limit);
+    }
+
+    /**
+     * Записывает события одним пакетным INSERT, проставляет им присвоенные id
+     * и публикует {@link FeedEventsAddedEvent} для подписчиков ленты. Пакет пишется в одной транзакции,
+     * чтобы после ошибки его можно было повторить без дублей.
+     */
+    @Override
+    @Transactional
+    public void addNewEvents(List<Event> events) {
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_EVENT, new String[]{"event_id"})) {
+                for (Event event : events) {
+                    statement.setLong(1, event.getTimestamp());
+                    statement.setLong(2, event.getUserId());
+                    statement.setString(3, event.getEventType().name());
+                    statement.setString(4, event.getOperation().name());
+                    statement.setLong(5, event.getEntityId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                List<Long> keys = new ArrayList<>(events.size());
+                try (ResultSet rs = statement.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getLong(1));
+                    }
+                }
+                return keys;
+            }
+        });
+        if (ids == null || ids.size() != events.size()) {
+            throw new IllegalStateException("Batch insert of events returned unexpected generated keys");
+        }
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setEventId(ids.get(i));
+        }
+        eventPublisher.publishEvent(new FeedEventsAddedEvent(events));
     }
 
     @Override
@@ -1,15 +1,30 @@
 package ru.yandex.practicum.filmorate.storage.event;
 
 import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventType;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Set;
 
 public interface EventStorage {
     List<Event> getEventsByUserId(Long id);
 
+    /**
+     * События пользователя с id меньше beforeId от новых к старым, не больше limit.
+     * Пустой набор types означает события всех типов.
+     */
+    List<Event> getEventsPage(Long userId, long beforeId, int limit, Set<EventType> types);
+
+    /**
+     * События пользователя с id больше afterId от старых к новым, не больше limit.
+     */
+    List<Event> getEventsAfter(Long userId, long afterId, int limit);
+
     void addNewEvent(Event event);
 
+    void addNewEvents(List<Event> events);
+
     Event mapRow(ResultSet rs, int rowNum) throws SQLException;
 }
@@ -0,0 +1,285 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Фоновая запись событий ленты групповыми коммитами.
+ * События складываются в ограниченную очередь, поток-писатель забирает первое событие, ждёт
+ * ещё до flush-interval или до batch-size событий и вставляет их одним пакетным INSERT.
+ * Если очередь заполнена, добавляющий поток ждёт места в ней: запись в обход очереди получила бы
+ * больший EVENT_ID раньше событий, стоящих в очереди, а лента и её поток считают порядок EVENT_ID
+ * порядком записи. Ожидание дольше offer-timeout считается в метрике переполнений.
+ * Для каждого пользователя считается число ещё не записанных событий: чтение ленты просит писателя
+ * записать очередь сразу и ждёт, пока события пользователя не окажутся в БД.
+ * При остановке приложения очередь записывается полностью.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.event-writer.enabled", havingValue = "true", matchIfMissing = true)
+public class EventWriter {
+    // сигнал писателю закончить сбор пакета; сравнивается по ссылке и в БД не попадает
+    private static final Event FLUSH = new Event();
+
+    private final EventDbStorage eventDbStorage;
+    private final BlockingQueue<Event> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Duration offerTimeout;
+    private final Duration readTimeout;
+    private final Duration shutdownTimeout;
+    private final Map<Long, Integer> pending = new ConcurrentHashMap<>();
+    private final Object committed = new Object();
+    // добавление в очередь держит блокировку на чтение, остановка - на запись,
+    // поэтому после остановки писателя в очередь ничего не попадает
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private final Thread writer;
+    private volatile boolean running;
+
+    private final Timer commitTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter overflows;
+    private final Counter dropped;
+
+    public EventWriter(EventDbStorage eventDbStorage,
+                       @Value("${filmorate.event-writer.queue-capacity:10000}") int queueCapacity,
+                       @Value("${filmorate.event-writer.batch-size:500}") int batchSize,
+                       @Value("${filmorate.event-writer.flush-interval:10ms}") Duration flushInterval,
+                       @Value("${filmorate.event-writer.offer-timeout:1s}") Duration offerTimeout,
+                       @Value("${filmorate.event-writer.read-timeout:1s}") Duration readTimeout,
+                       @Value("${filmorate.event-writer.shutdown-timeout:30s}") Duration shutdownTimeout,
+                       MeterRegistry meterRegistry) {
+        this.eventDbStorage = eventDbStorage;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeout = offerTimeout;
+        this.readTimeout = readTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.writer = new Thread(this::run, "event-writer");
+        writer.setDaemon(true);
+
+        Gauge.builder("events.writer.queue.depth", queue, BlockingQueue::size)
+                .register(meterRegistry);
+        commitTimer = Timer.builder("events.writer.commit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("events.writer.batch.size")
+                .register(meterRegistry);
+        overflows = Counter.builder("events.writer.overflow")
+                .description("Events that waited longer than offer-timeout for space in the queue")
+                .register(meterRegistry);
+        dropped = Counter.builder("events.writer.dropped")
+                .description("Events not written because the user was deleted or the write failed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer.start();
+        log.info("Event writer started: batch size = {}, flush interval = {} ms", batchSize,
+                TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+    }
+
+    /**
+     * Ставит событие в очередь, при заполненной очереди ждёт места в ней. Если писатель остановлен,
+     * событие записывается в БД в вызывающем потоке после того, как писатель запишет очередь.
+     */
+    public void add(Event event) {
+        lifecycle.readLock().lock();
+        try {
+            if (running) {
+                pending.merge(event.getUserId(), 1, Integer::sum);
+                enqueue(event);
+                return;
+            }
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+        awaitWriter();
+        eventDbStorage.addNewEvent(event);
+    }
+
+    /**
+     * Ждёт, пока события пользователя, поставленные в очередь до вызова, будут записаны в БД,
+     * но не дольше read-timeout.
+     */
+    public void awaitCommitted(Long userId) {
+        if (!pending.containsKey(userId)) {
+            return;
+        }
+        queue.offer(FLUSH);
+        long deadline = System.nanoTime() + readTimeout.toNanos();
+        synchronized (committed) {
+            long remaining;
+            while (pending.containsKey(userId) && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(committed, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (pending.containsKey(userId)) {
+            log.warn("Events of user id = {} are not written within {}, the feed may miss them", userId,
+                    readTimeout);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lifecycle.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        queue.offer(FLUSH);
+        writer.join(shutdownTimeout.toMillis());
+        if (writer.isAlive()) {
+            log.error("Event writer did not finish within {}, {} events are not written", shutdownTimeout,
+                    queue.size());
+        } else {
+            log.info("Event writer stopped, all queued events are written");
+        }
+    }
+
+    private void enqueue(Event event) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (queue.offer(event, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                        return;
+                    }
+                    overflows.increment();
+                    log.warn("Event queue stayed full for {}, waiting for the writer", offerTimeout);
+                    queue.put(event);
+                    return;
+                } catch (InterruptedException e) {
+                    // событие нельзя ни бросить, ни записать мимо очереди
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void awaitWriter() {
+        try {
+            writer.join(shutdownTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // останавливается писатель только по флагу, чтобы не потерять собранный пакет
+                log.warn("Event writer interrupted while collecting a batch");
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    commit(batch);
+                } catch (RuntimeException e) {
+                    // писатель не должен остановиться: добавляющие потоки ждут места в очереди
+                    log.error("Failed to write {} events, they are dropped", batch.size(), e);
+                    dropped.increment(batch.size());
+                    release(batch);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<Event> batch) throws InterruptedException {
+        Event event = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (event == null || event == FLUSH) {
+            return;
+        }
+        batch.add(event);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize && running) {
+            event = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (event == null || event == FLUSH) {
+                return;
+            }
+            batch.add(event);
+        }
+        // при остановке ждать новых событий незачем, забираем то, что уже в очереди
+        while (batch.size() < batchSize && (event = queue.poll()) != null) {
+            if (event != FLUSH) {
+                batch.add(event);
+            }
+        }
+    }
+
+    private void commit(List<Event> batch) {
+        long start = System.nanoTime();
+        try {
+            eventDbStorage.addNewEvents(batch);
+        } catch (DataAccessException e) {
+            // например, пользователь удалён, пока его события ждали в очереди: пишем события по одному
+            log.warn("Failed to write {} events in one batch, retrying one by one: {}", batch.size(),
+                    e.getMessage());
+            batch.forEach(this::commitOne);
+        }
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+        release(batch);
+    }
+
+    private void commitOne(Event event) {
+        try {
+            eventDbStorage.addNewEvent(event);
+        } catch (DataAccessException e) {
+            log.warn("Event {} is dropped: {}", event, e.getMessage());
+            dropped.increment();
+        }
+    }
+
+    private void release(List<Event> batch) {
+        Map<Long, Integer> written = new HashMap<>();
+        batch.forEach(event -> written.merge(event.getUserId(), 1, Integer::sum));
+        written.forEach((userId, count) ->
+                pending.computeIfPresent(userId, (id, left) -> left > count ? left - count : null));
+        synchronized (committed) {
+            committed.notifyAll();
+        }
+    }
+}
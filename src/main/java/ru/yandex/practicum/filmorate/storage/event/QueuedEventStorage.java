@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventType;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Хранилище событий, которое отдаёт запись событий фоновому {@link EventWriter}, не задерживая запрос.
+ * Перед чтением ленты дожидается записи событий этого пользователя, поэтому свои действия
+ * пользователь видит в ленте сразу.
+ */
+public class QueuedEventStorage implements EventStorage {
+    private final EventStorage eventStorage;
+    private final EventWriter eventWriter;
+
+    public QueuedEventStorage(EventStorage eventStorage, EventWriter eventWriter) {
+        this.eventStorage = eventStorage;
+        this.eventWriter = eventWriter;
+    }
+
+    @Override
+    public List<Event> getEventsByUserId(Long id) {
+        eventWriter.awaitCommitted(id);
+        return eventStorage.getEventsByUserId(id);
+    }
+
+    @Override
+    public List<Event> getEventsPage(Long userId, long beforeId, int limit, Set<EventType> types) {
+        eventWriter.awaitCommitted(userId);
+        return eventStorage.getEventsPage(userId, beforeId, limit, types);
+    }
+
+    @Override
+    public List<Event> getEventsAfter(Long userId, long afterId, int limit) {
+        eventWriter.awaitCommitted(userId);
+        return eventStorage.getEventsAfter(userId, afterId, limit);
+    }
+
+    @Override
+    public void addNewEvent(Event event) {
+        eventWriter.add(event);
+    }
+
+    @Override
+    public void addNewEvents(List<Event> events) {
+        events.forEach(eventWriter::add);
+    }
+
+    @Override
+    public Event mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return eventStorage.mapRow(rs, rowNum);
+    }
+}
@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.storage.export;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import javax.sql.DataSource;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Построчная выгрузка таблиц без материализации их в памяти.
+ * Основная таблица и её отношения читаются отсортированными по id владельца,
+ * отношения присоединяются слиянием (sorted-merge) по мере продвижения курсоров.
+ * Все курсоры выгрузки открываются в одной читающей транзакции: одно соединение и один снимок данных.
+ */
+@Component
+public class ExportDbStorage implements ExportStorage {
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferenceDataRegistry referenceData;
+
+    public ExportDbStorage(DataSource dataSource, PlatformTransactionManager transactionManager,
+                           ReferenceDataRegistry referenceData) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.referenceData = referenceData;
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        transactionTemplate.executeWithoutResult(status -> exportFilms(action));
+    }
+
+    @Override
+    public void forEachUser(Consumer<User> action) {
+        transactionTemplate.executeWithoutResult(status -> exportUsers(action));
+    }
+
+    /**
+     * Лайки по фильмам: порядок только по FILM_ID читается из индекса внешнего ключа likes_film_fk,
+     * а добавленный USER_ID потребовал бы сортировки всей таблицы.
+     */
+    @Override
+    public void forEachLike(BiConsumer<Long, Long> action) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(
+                "SELECT USER_ID, FILM_ID FROM LIKES ORDER BY FILM_ID",
+                (RowCallbackHandler) rs -> action.accept(rs.getLong("user_id"), rs.getLong("film_id"))));
+    }
+
+    private void exportFilms(Consumer<Film> action) {
+        try (SortedRelation<Genre> genres = new SortedRelation<>(jdbcTemplate.queryForStream(
+                "SELECT FILM_ID, GENRE_ID FROM FILM_GENRES ORDER BY FILM_ID",
+                (rs, rowNum) -> entry(rs.getLong("film_id"), referenceData.getGenre(rs.getInt("genre_id")))));
+             SortedRelation<Director> directors = new SortedRelation<>(jdbcTemplate.queryForStream(
+                     "SELECT FD.FILM_ID, D.DIRECTOR_ID, D.DIRECTOR_NAME FROM FILM_DIRECTOR FD " +
+                             "JOIN DIRECTORS D ON FD.DIRECTOR_ID = D.DIRECTOR_ID ORDER BY FD.FILM_ID",
+                     (rs, rowNum) -> entry(rs.getLong("film_id"),
+                             new Director(rs.getLong("director_id"), rs.getString("director_name")))));
+             SortedRelation<Long> likes = new SortedRelation<>(jdbcTemplate.queryForStream(
+                     "SELECT FILM_ID, USER_ID FROM LIKES ORDER BY FILM_ID",
+                     pairMapper("film_id", "user_id")))) {
+            jdbcTemplate.query("SELECT * FROM FILMS ORDER BY FILM_ID", (RowCallbackHandler) rs -> {
+                Film film = new Film(
+                        rs.getLong("film_id"),
+                        rs.getString("name"),
+                        rs.getString("description"),
+                        rs.getDate("releaseDate").toLocalDate(),
+                        rs.getInt("duration"));
+                film.setMpa(referenceData.getMpa(rs.getInt("rate_id")));
+                film.setGenres(genres.collectFor(film.getId(), new TreeSet<>()));
+                film.setDirectors(directors.collectFor(film.getId(), new TreeSet<>()));
+                film.setLikes(likes.collectFor(film.getId(), new TreeSet<>()));
+                action.accept(film);
+            });
+        }
+    }
+
+    private void exportUsers(Consumer<User> action) {
+        try (SortedRelation<Long> friends = new SortedRelation<>(jdbcTemplate.queryForStream(
+                "SELECT USER_ID, FRIEND_ID FROM FRIENDSHIPS ORDER BY USER_ID",
+                pairMapper("user_id", "friend_id")))) {
+            jdbcTemplate.query("SELECT * FROM USERS ORDER BY USER_ID", (RowCallbackHandler) rs -> {
+                User user = new User(
+                        rs.getLong("user_id"),
+                        rs.getString("email"),
+                        rs.getString("login"),
+                        rs.getString("name"),
+                        rs.getDate("birthday").toLocalDate());
+                user.setFriends(friends.collectFor(user.getId(), new TreeSet<>()));
+                action.accept(user);
+            });
+        }
+    }
+
+    private static RowMapper<Map.Entry<Long, Long>> pairMapper(String ownerColumn, String valueColumn) {
+        return (rs, rowNum) -> entry(rs.getLong(ownerColumn), rs.getLong(valueColumn));
+    }
+
+    private static <V> Map.Entry<Long, V> entry(long ownerId, V value) {
+        return new AbstractMap.SimpleImmutableEntry<>(ownerId, value);
+    }
+
+    /**
+     * Курсор по отношению, отсортированному по id владельца.
+     * Владельцы должны запрашиваться в порядке возрастания id.
+     */
+    private static class SortedRelation<V> implements AutoCloseable {
+        private final Stream<Map.Entry<Long, V>> rows;
+        private final Iterator<Map.Entry<Long, V>> iterator;
+        private Map.Entry<Long, V> head;
+
+        SortedRelation(Stream<Map.Entry<Long, V>> rows) {
+            this.rows = rows;
+            this.iterator = rows.iterator();
+            this.head = iterator.hasNext() ? iterator.next() : null;
+        }
+
+        <C extends Collection<V>> C collectFor(long ownerId, C target) {
+            while (head != null && head.getKey() < ownerId) {
+                advance();
+            }
+            while (head != null && head.getKey() == ownerId) {
+                target.add(head.getValue());
+                advance();
+            }
+            return target;
+        }
+
+        private void advance() {
+            head = iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public void close() {
+            rows.close();
+        }
+    }
+}
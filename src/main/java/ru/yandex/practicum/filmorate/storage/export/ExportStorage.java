@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.storage.export;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public interface ExportStorage {
+    void forEachFilm(Consumer<Film> action);
+
+    void forEachUser(Consumer<User> action);
+
+    void forEachLike(BiConsumer<Long, Long> action);
+}
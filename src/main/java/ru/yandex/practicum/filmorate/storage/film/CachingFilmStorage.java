@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.context.event.EventListener;
+import ru.yandex.practicum.filmorate.change.DirectorChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikesChangedEvent;
+import ru.yandex.practicum.filmorate.change.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Кэширующая обёртка над хранилищем фильмов: getById читает через кэш,
+ * изменения фильма, его лайков и режиссёров сбрасывают соответствующие записи.
+ * Наружу отдаются копии, чтобы вызывающий код не мог испортить закэшированный фильм.
+ * В кэше у фильма всегда есть набор жанров, возможно пустой; getById, как и хранилище под ним,
+ * отдаёт фильм без жанров с genres == null.
+ */
+public class CachingFilmStorage implements FilmStorage {
+    private final FilmStorage filmStorage;
+    private final Cache<Long, Film> cache;
+
+    public CachingFilmStorage(FilmStorage filmStorage, Cache<Long, Film> cache) {
+        this.filmStorage = filmStorage;
+        this.cache = cache;
+    }
+
+    @Override
+    public Film add(Film film) {
+        return filmStorage.add(film);
+    }
+
+    @Override
+    public List<Film> addAll(List<Film> films) {
+        return filmStorage.addAll(films);
+    }
+
+    @Override
+    public Film update(Film film) {
+        Film updated = filmStorage.update(film);
+        cache.invalidate(film.getId());
+        return updated;
+    }
+
+    @Override
+    public Collection<Film> getAll() {
+        return filmStorage.getAll();
+    }
+
+    @Override
+    public List<Film> getPage(Long afterId, int limit) {
+        return filmStorage.getPage(afterId, limit);
+    }
+
+    @Override
+    public Optional<Film> getById(Long id) {
+        return Optional.ofNullable(cache.get(id, key -> filmStorage.getById(key).map(this::cached).orElse(null)))
+                .map(film -> {
+                    Film copy = new Film(film);
+                    if (copy.getGenres().isEmpty()) {
+                        copy.setGenres(null);
+                    }
+                    return copy;
+                });
+    }
+
+    @Override
+    public List<Film> getByIds(Collection<Long> ids) {
+        return cache.getAll(ids, missing -> {
+                    List<Long> missingIds = new ArrayList<>();
+                    missing.forEach(missingIds::add);
+                    return filmStorage.getByIds(missingIds).stream()
+                            .map(this::cached)
+                            .collect(Collectors.toMap(Film::getId, Function.identity()));
+                }).values().stream()
+                .map(Film::new)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getPopularByIds(Collection<Long> ids, int limit) {
+        return filmStorage.getPopularByIds(ids, limit);
+    }
+
+    @Override
+    public Film delete(Film film) {
+        Film deleted = filmStorage.delete(film);
+        cache.invalidate(film.getId());
+        return deleted;
+    }
+
+    @Override
+    public List<Film> search(String query, boolean byTitle, boolean byDirector, int limit) {
+        return filmStorage.search(query, byTitle, byDirector, limit);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        filmStorage.deleteById(id);
+        cache.invalidate(id);
+    }
+
+    private Film cached(Film film) {
+        if (film.getGenres() == null) {
+            film.setGenres(new TreeSet<>());
+        }
+        return film;
+    }
+
+    @EventListener
+    public void onLikeChanged(LikeChangedEvent event) {
+        cache.invalidate(event.getFilmId());
+    }
+
+    @EventListener
+    public void onLikesChanged(LikesChangedEvent event) {
+        cache.invalidateAll(event.getChanges().stream().map(LikeChangedEvent::getFilmId).collect(Collectors.toSet()));
+    }
+
+    @EventListener
+    public void onDirectorChanged(DirectorChangedEvent event) {
+        cache.asMap().values().removeIf(film -> film.getDirectors() != null && film.getDirectors().stream()
+                .anyMatch(director -> director.getId().equals(event.getDirectorId())));
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        cache.invalidateAll(event.getLikedFilmIds());
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -1,20 +1,29 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.DirectorNotFoundException;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.NotImplementedException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.IntegrityViolations;
 import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.*;
 
 @Slf4j
@@ -25,20 +34,30 @@ public class FilmDbStorage implements FilmStorage {
     private GenreStorage genreStorage;
     private MpaStorage mpaStorage;
     private final DirectorStorage directorDao;
+    private final FilmHydrator filmHydrator;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchChunkSize;
 
     public FilmDbStorage(JdbcTemplate jdbcTemplate,
                          GenreStorage genreStorage,
-                         MpaStorage mpaStorage, DirectorStorage directorDao) {
+                         MpaStorage mpaStorage, DirectorStorage directorDao,
+                         FilmHydrator filmHydrator,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${filmorate.films.batch.chunk-size:1000}") int batchChunkSize) {
         this.jdbcTemplate = jdbcTemplate;
         this.genreStorage = genreStorage;
         this.mpaStorage = mpaStorage;
         this.directorDao = directorDao;
+        this.filmHydrator = filmHydrator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchChunkSize = batchChunkSize;
     }
 
     @Override
     public Film add(Film film) {
         SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
                 .withTableName("FILMS")
+                .usingColumns("name", "description", "releaseDate", "duration")
                 .usingGeneratedKeyColumns("film_id");
         film.setId(simpleJdbcInsert.executeAndReturnKey(film.toMap()).longValue());
         if (film.getGenres() != null) {
@@ -50,13 +69,7 @@ public class FilmDbStorage implements FilmStorage {
 
         if (film.getDirectors() != null) {
             for (Director director : film.getDirectors()) { // если режиссер есть - добавляет их в FILM_DIRECTOR
-                if (directorDao.isDirectorExists(director.getId())) {  //проверка присутствия режиссера в DIRECTORS
-                    jdbcTemplate.update("INSERT INTO FILM_DIRECTOR (film_id, director_id) VALUES (?, ?)",
-                            film.getId(), director.getId());
-                } else {
-                    throw new DirectorNotFoundException(String.format("Attempt to create film with " +
-                            "absent director id = %d", director.getId()));
-                }
+                directorDao.addDirectorToFilm(film.getId(), director.getId());
             }
         }
         film.setDirectors(directorDao.getDirectorsByFilmId(film.getId()));
@@ -68,42 +81,123 @@ public class FilmDbStorage implements FilmStorage {
         return film;
     }
 
+    /**
+     * Пакетное добавление фильмов одной транзакцией. Фильмы вставляются частями по chunk-size:
+     * строки FILMS, FILM_GENRES и FILM_DIRECTOR - тремя пакетными запросами на часть.
+     * Id присваиваются фильмам в порядке списка. Если часть не вставилась, откатывается весь пакет.
+     */
+    @Override
+    public List<Film> addAll(List<Film> films) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < films.size(); from += batchChunkSize) {
+                insertChunk(films.subList(from, Math.min(films.size(), from + batchChunkSize)));
+            }
+        });
+        log.info("{} films added in a batch", films.size());
+        return films;
+    }
+
+    private void insertChunk(List<Film> chunk) {
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            String sql = "INSERT INTO FILMS (name, description, releaseDate, duration, rate_id) VALUES (?, ?, ?, ?, ?)";
+            try (PreparedStatement statement = connection.prepareStatement(sql, new String[]{"film_id"})) {
+                for (Film film : chunk) {
+                    statement.setString(1, film.getName());
+                    statement.setString(2, film.getDescription());
+                    statement.setDate(3, Date.valueOf(film.getReleaseDate()));
+                    statement.setInt(4, film.getDuration());
+                    statement.setInt(5, film.getMpa().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                List<Long> keys = new ArrayList<>(chunk.size());
+                try (ResultSet rs = statement.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getLong(1));
+                    }
+                }
+                return keys;
+            }
+        });
+        if (ids == null || ids.size() != chunk.size()) {
+            throw new IllegalStateException("Batch insert of films returned unexpected generated keys");
+        }
+        List<Object[]> genres = new ArrayList<>();
+        List<Object[]> directors = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Film film = chunk.get(i);
+            film.setId(ids.get(i));
+            if (film.getGenres() != null) {
+                film.getGenres().forEach(genre -> genres.add(new Object[]{film.getId(), genre.getId()}));
+            }
+            if (film.getDirectors() != null) {
+                film.getDirectors().forEach(director -> directors.add(new Object[]{film.getId(), director.getId()}));
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO FILM_GENRES (film_id, genre_id) VALUES (?, ?)", genres);
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO FILM_DIRECTOR (film_id, director_id) VALUES (?, ?)", directors);
+        } catch (DataIntegrityViolationException e) {
+            if (IntegrityViolations.isForeignKey(e, "film_director_director_fk")) {
+                throw new DirectorNotFoundException("Attempt to create films with absent director");
+            }
+            throw e;
+        }
+    }
+
     @Override
     public Film update(Film film) {
-        if (isFilmExists(film.getId())) {
-            String sqlQuery = "UPDATE FILMS SET " +
-                    "name = ?, description = ?, releaseDate = ?, duration = ?, " +
-                    "rate_id = ? WHERE film_id = ?";
-            jdbcTemplate.update(sqlQuery,
-                    film.getName(),
-                    film.getDescription(),
-                    film.getReleaseDate(),
-                    film.getDuration(),
-                    film.getMpa().getId(),
-                    film.getId());
-            genreStorage.updateGenresOfFilm(film);
-            directorDao.updateDirectorsOfFilm(film);
-            log.info("Film {} has been successfully updated", film);
-            return film;
-        } else {
+        String sqlQuery = "UPDATE FILMS SET " +
+                "name = ?, description = ?, releaseDate = ?, duration = ?, " +
+                "rate_id = ? WHERE film_id = ?";
+        int updated = jdbcTemplate.update(sqlQuery,
+                film.getName(),
+                film.getDescription(),
+                film.getReleaseDate(),
+                film.getDuration(),
+                film.getMpa().getId(),
+                film.getId());
+        if (updated == 0) {
             throw new FilmNotFoundException(String.format("Attempt to update film with " +
                     "absent id = %d", film.getId()));
         }
+        genreStorage.updateGenresOfFilm(film);
+        directorDao.updateDirectorsOfFilm(film);
+        log.info("Film {} has been successfully updated", film);
+        return film;
     }
 
     @Override
     public Collection<Film> getAll() {
         String sql = "SELECT * FROM FILMS ";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                rs.getLong("film_id"),
-                rs.getString("name"),
-                rs.getString("description"),
-                rs.getDate("releaseDate").toLocalDate(),
-                rs.getInt("duration"),
-                genreStorage.getFilmGenres(rs.getLong("film_id")),
-                mpaStorage.getMpa(rs.getInt("rate_id")),
-                directorDao.getDirectorsByFilmId(rs.getLong("film_id"))
-        ));
+        return filmHydrator.hydrate(jdbcTemplate.query(sql, FilmHydrator::mapFilm));
+    }
+
+    @Override
+    public List<Film> getPage(Long afterId, int limit) {
+        String sql = "SELECT * FROM FILMS WHERE film_id > ? ORDER BY film_id LIMIT ?";
+        return filmHydrator.hydrate(jdbcTemplate.query(sql, FilmHydrator::mapFilm, afterId, limit));
+    }
+
+    @Override
+    public List<Film> getByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT F.* FROM TABLE(ID BIGINT = ?) T JOIN FILMS F ON F.FILM_ID = T.ID";
+        Long[] filmIds = ids.toArray(Long[]::new);
+        return filmHydrator.hydrate(jdbcTemplate.query(sql, FilmHydrator::mapFilm, (Object) filmIds));
+    }
+
+    @Override
+    public List<Film> getPopularByIds(Collection<Long> ids, int limit) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT F.* FROM TABLE(ID BIGINT = ?) T JOIN FILMS F ON F.FILM_ID = T.ID " +
+                "ORDER BY F.LIKES_COUNT DESC, F.FILM_ID LIMIT ?";
+        Long[] filmIds = ids.toArray(Long[]::new);
+        return filmHydrator.hydrate(jdbcTemplate.query(sql, FilmHydrator::mapFilm, filmIds, limit));
     }
 
     @Override
@@ -117,11 +211,12 @@ public class FilmDbStorage implements FilmStorage {
                     userRows.getDate("releaseDate").toLocalDate(),
                     userRows.getInt("duration")
             );
+            film.setRating(userRows.getLong("likes_count"));
             Integer rateMpa = userRows.getInt("rate_id");
             film.setMpa(mpaStorage.getMpa(rateMpa));
             Set<Genre> genres = genreStorage.getFilmGenres(id);
             if (genres.size() != 0) {
-                film.setGenres(genreStorage.getFilmGenres(id));
+                film.setGenres(genres);
             }
             film.setDirectors(directorDao.getDirectorsByFilmId(id));
             log.info("Found film id = {}", film);
@@ -133,11 +228,11 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public void deleteById(Long filmId){
-        if (isFilmExists(filmId)) {
-            String sql = "DELETE FROM FILMS WHERE film_id = ?";
-            jdbcTemplate.update(sql, filmId);
-        } else throw new FilmNotFoundException(String.format("Attempt to delete film with " +
-                "absent id = %d", filmId));
+        String sql = "DELETE FROM FILMS WHERE film_id = ?";
+        if (jdbcTemplate.update(sql, filmId) == 0) {
+            throw new FilmNotFoundException(String.format("Attempt to delete film with " +
+                    "absent id = %d", filmId));
+        }
     }
 
     public boolean isFilmExists(Long id) {
@@ -146,41 +241,24 @@ public class FilmDbStorage implements FilmStorage {
         return userRows.next();
     }
 
+    /**
+     * Поиск сразу по названию и/или режиссёру за один проход по FILMS:
+     * каждый фильм проверяется обоими условиями один раз, поэтому дублей нет.
+     * Результат упорядочен по числу лайков и ограничен limit, гидрируются только возвращаемые фильмы.
+     */
     @Override
-
-    public List<Film> searchByTitle(String query) {
+    public List<Film> search(String query, boolean byTitle, boolean byDirector, int limit) {
         String str = "%" + query + "%";
-        String sql = "SELECT * FROM FILMS WHERE LOWER(NAME) LIKE LOWER(?)";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                rs.getLong("film_id"),
-                rs.getString("name"),
-                rs.getString("description"),
-                rs.getDate("releaseDate").toLocalDate(),
-                rs.getInt("duration"),
-                genreStorage.getFilmGenres(rs.getLong("film_id")),
-                mpaStorage.getMpa(rs.getInt("rate_id")),
-                directorDao.getDirectorsByFilmId(rs.getLong("film_id"))
-        ), str);
+        String sql = "SELECT F.* FROM FILMS F " +
+                "WHERE (? AND LOWER(F.NAME) LIKE LOWER(?)) " +
+                "OR (? AND EXISTS (SELECT 1 FROM FILM_DIRECTOR FD " +
+                "JOIN DIRECTORS D ON D.DIRECTOR_ID = FD.DIRECTOR_ID " +
+                "WHERE FD.FILM_ID = F.FILM_ID AND LOWER(D.DIRECTOR_NAME) LIKE LOWER(?))) " +
+                "ORDER BY F.LIKES_COUNT DESC, F.FILM_ID LIMIT ?";
+        return filmHydrator.hydrate(jdbcTemplate.query(sql, FilmHydrator::mapFilm,
+                byTitle, str, byDirector, str, limit));
     }
 
-    @Override
-    public List<Film> searchByDirector(String query) {
-        String str = "%" + query + "%";
-        String sql = "select * from FILMS\n" +
-                "         left join FILM_DIRECTOR FD on FILMS.FILM_ID = FD.FILM_ID\n" +
-                "         left join DIRECTORS D on D.DIRECTOR_ID = FD.DIRECTOR_ID\n" +
-                "where lower(d.DIRECTOR_NAME) like lower(?);";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                rs.getLong("film_id"),
-                rs.getString("name"),
-                rs.getString("description"),
-                rs.getDate("releaseDate").toLocalDate(),
-                rs.getInt("duration"),
-                genreStorage.getFilmGenres(rs.getLong("film_id")),
-                mpaStorage.getMpa(rs.getInt("rate_id")),
-                directorDao.getDirectorsByFilmId(rs.getLong("film_id"))
-        ), str);
-}
     public Film delete(Film film) {
         deleteById(film.getId());
         return film;
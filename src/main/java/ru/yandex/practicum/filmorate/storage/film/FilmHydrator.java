@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Заполняет жанры, рейтинг MPA и режиссёров сразу для целого списка фильмов.
+ * Вместо трёх запросов на каждый фильм выполняется по одному запросу на жанры и на режиссёров,
+ * после чего результаты раскладываются по фильмам в памяти. Id фильмов передаются массивом
+ * и соединяются с таблицей как TABLE(ID BIGINT = ?): в отличие от FILM_ID = ANY(?) такой запрос
+ * ищет строки по первичному ключу, а не сравнивает каждую строку таблицы со всем массивом.
+ * Названия жанров и рейтингов MPA берутся из {@link ReferenceDataRegistry}.
+ */
+@Component
+public class FilmHydrator {
+    private static final String GET_GENRES_OF_FILMS = "SELECT FG.FILM_ID, FG.GENRE_ID " +
+            "FROM TABLE(ID BIGINT = ?) T JOIN FILM_GENRES FG ON FG.FILM_ID = T.ID";
+    private static final String GET_DIRECTORS_OF_FILMS = "SELECT FD.FILM_ID, D.DIRECTOR_ID, D.DIRECTOR_NAME " +
+            "FROM TABLE(ID BIGINT = ?) T JOIN FILM_DIRECTOR FD ON FD.FILM_ID = T.ID " +
+            "JOIN DIRECTORS D ON FD.DIRECTOR_ID = D.DIRECTOR_ID";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataRegistry referenceData;
+
+    public FilmHydrator(JdbcTemplate jdbcTemplate, ReferenceDataRegistry referenceData) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.referenceData = referenceData;
+    }
+
+    /**
+     * Строит фильм из строки таблицы FILMS без связанных сущностей.
+     * У рейтинга MPA заполняется только id, название подставит {@link #hydrate(List)}.
+     * Рейтинг фильма берётся из счётчика лайков FILMS.LIKES_COUNT.
+     */
+    public static Film mapFilm(ResultSet rs, int rowNum) throws SQLException {
+        Film film = new Film(
+                rs.getLong("film_id"),
+                rs.getString("name"),
+                rs.getString("description"),
+                rs.getDate("releaseDate").toLocalDate(),
+                rs.getInt("duration"));
+        film.setMpa(new Mpa(rs.getInt("rate_id"), null));
+        film.setRating(rs.getLong("likes_count"));
+        return film;
+    }
+
+    public List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Long[] filmIds = films.stream().map(Film::getId).distinct().toArray(Long[]::new);
+        Map<Long, Set<Genre>> genres = getGenresByFilmIds(filmIds);
+        Map<Long, Set<Director>> directors = getDirectorsByFilmIds(filmIds);
+        for (Film film : films) {
+            film.setGenres(new TreeSet<>(genres.getOrDefault(film.getId(), Collections.emptySet())));
+            film.setDirectors(new TreeSet<>(directors.getOrDefault(film.getId(), Collections.emptySet())));
+            if (film.getMpa() != null) {
+                film.setMpa(referenceData.getMpa(film.getMpa().getId()));
+            }
+        }
+        return films;
+    }
+
+    private Map<Long, Set<Genre>> getGenresByFilmIds(Long[] filmIds) {
+        Map<Long, Set<Genre>> genres = new HashMap<>();
+        jdbcTemplate.query(GET_GENRES_OF_FILMS, rs -> {
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new TreeSet<>())
+                    .add(referenceData.getGenre(rs.getInt("genre_id")));
+        }, (Object) filmIds);
+        return genres;
+    }
+
+    private Map<Long, Set<Director>> getDirectorsByFilmIds(Long[] filmIds) {
+        Map<Long, Set<Director>> directors = new HashMap<>();
+        jdbcTemplate.query(GET_DIRECTORS_OF_FILMS, rs -> {
+            directors.computeIfAbsent(rs.getLong("film_id"), id -> new TreeSet<>())
+                    .add(new Director(rs.getLong("director_id"), rs.getString("director_name")));
+        }, (Object) filmIds);
+        return directors;
+    }
+}
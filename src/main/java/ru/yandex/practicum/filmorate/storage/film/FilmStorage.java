@@ -8,13 +8,16 @@ import java.util.Optional;
 
 public interface FilmStorage {
     Film add(Film film);
+    List<Film> addAll(List<Film> films);
     Film update(Film film);
     Collection<Film> getAll();
+    List<Film> getPage(Long afterId, int limit);
     Optional<Film> getById(Long id);
+    List<Film> getByIds(Collection<Long> ids);
+    List<Film> getPopularByIds(Collection<Long> ids, int limit);
     Film delete(Film film);
 
-    public List<Film> searchByTitle(String query);
-    public List<Film> searchByDirector(String query);
+    List<Film> search(String query, boolean byTitle, boolean byDirector, int limit);
 
     void deleteById(Long id);
 
@@ -7,6 +7,7 @@ import ru.yandex.practicum.filmorate.exception.NotImplementedException;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component("inMemoryFilmStorage")
@@ -20,6 +21,12 @@ public class InMemoryFilmStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public List<Film> addAll(List<Film> films) {
+        films.forEach(this::add);
+        return films;
+    }
+
     @Override
     public Film update(Film film) {
         Long id = film.getId();
@@ -35,11 +42,36 @@ public class InMemoryFilmStorage implements FilmStorage {
         return films.values();
     }
 
+    @Override
+    public List<Film> getPage(Long afterId, int limit) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Optional<Film> getById(Long id) {
         return Optional.of(films.get(id));
     }
 
+    @Override
+    public List<Film> getByIds(Collection<Long> ids) {
+        return ids.stream()
+                .filter(films::containsKey)
+                .map(films::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getPopularByIds(Collection<Long> ids, int limit) {
+        return getByIds(ids).stream()
+                .sorted(Comparator.comparingLong(Film::getRating).reversed().thenComparing(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Film delete(Film film) {
         if (films.containsKey(film.getId())) {
@@ -50,15 +82,10 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-
-    public List<Film> searchByTitle(String query) {
+    public List<Film> search(String query, boolean byTitle, boolean byDirector, int limit) {
         throw new NotImplementedException();
     }
 
-    @Override
-    public List<Film> searchByDirector(String query) {
-        throw new NotImplementedException();
-}
     public void deleteById(Long id){
         throw new NotImplementedException();
 
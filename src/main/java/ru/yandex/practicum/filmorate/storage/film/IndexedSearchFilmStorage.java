@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.search.FilmSearchIndex;
+
+import java.util.*;
+
+/**
+ * Хранилище фильмов, которое ищет по названию и режиссёру через {@link FilmSearchIndex}
+ * вместо LIKE '%query%' в БД. Найденные фильмы загружаются одним запросом по первичному ключу
+ * и возвращаются по числу лайков.
+ * Остальные операции выполняет исходное хранилище.
+ */
+public class IndexedSearchFilmStorage implements FilmStorage {
+    private final FilmStorage filmStorage;
+    private final FilmSearchIndex searchIndex;
+
+    public IndexedSearchFilmStorage(FilmStorage filmStorage, FilmSearchIndex searchIndex) {
+        this.filmStorage = filmStorage;
+        this.searchIndex = searchIndex;
+    }
+
+    @Override
+    public Film add(Film film) {
+        return filmStorage.add(film);
+    }
+
+    @Override
+    public List<Film> addAll(List<Film> films) {
+        return filmStorage.addAll(films);
+    }
+
+    @Override
+    public Film update(Film film) {
+        return filmStorage.update(film);
+    }
+
+    @Override
+    public Collection<Film> getAll() {
+        return filmStorage.getAll();
+    }
+
+    @Override
+    public List<Film> getPage(Long afterId, int limit) {
+        return filmStorage.getPage(afterId, limit);
+    }
+
+    @Override
+    public Optional<Film> getById(Long id) {
+        return filmStorage.getById(id);
+    }
+
+    @Override
+    public List<Film> getByIds(Collection<Long> ids) {
+        return filmStorage.getByIds(ids);
+    }
+
+    @Override
+    public List<Film> getPopularByIds(Collection<Long> ids, int limit) {
+        return filmStorage.getPopularByIds(ids, limit);
+    }
+
+    @Override
+    public Film delete(Film film) {
+        return filmStorage.delete(film);
+    }
+
+    @Override
+    public List<Film> search(String query, boolean byTitle, boolean byDirector, int limit) {
+        Set<Long> ids = new HashSet<>();
+        if (byTitle) {
+            ids.addAll(searchIndex.searchByTitle(query));
+        }
+        if (byDirector) {
+            ids.addAll(searchIndex.searchByDirector(query));
+        }
+        return filmStorage.getPopularByIds(ids, limit);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        filmStorage.deleteById(id);
+    }
+}
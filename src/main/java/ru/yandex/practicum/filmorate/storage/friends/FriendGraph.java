@@ -0,0 +1,329 @@
+package ru.yandex.practicum.filmorate.storage.friends;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.change.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.model.FriendPath;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Направленный граф дружбы в памяти: для каждого пользователя хранятся отсортированные массивы id
+ * тех, кого он добавил в друзья, и тех, кто добавил его. Массивы не изменяются на месте,
+ * при добавлении и удалении ребра они заменяются копией, поэтому их можно читать без блокировки.
+ * Граф собирается из FRIENDSHIPS при старте и обновляется хранилищем дружбы при каждой записи.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.friend-graph.enabled", havingValue = "true", matchIfMissing = true)
+public class FriendGraph {
+    private static final long[] EMPTY = new long[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxFanOut;
+    private final int maxDepth;
+    private final Duration timeBudget;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, long[]> friends = new HashMap<>();
+    private Map<Long, long[]> followers = new HashMap<>();
+
+    public FriendGraph(JdbcTemplate jdbcTemplate,
+                       @Value("${filmorate.friend-graph.max-fan-out:1000}") int maxFanOut,
+                       @Value("${filmorate.friend-path.max-depth:6}") int maxDepth,
+                       @Value("${filmorate.friend-path.time-budget:100ms}") Duration timeBudget) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxFanOut = maxFanOut;
+        this.maxDepth = maxDepth;
+        this.timeBudget = timeBudget;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        int count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FRIENDSHIPS", Integer.class);
+        long[][] edges = {new long[count], new long[count]};
+        int[] size = {0};
+        jdbcTemplate.query("SELECT USER_ID, FRIEND_ID FROM FRIENDSHIPS", (RowCallbackHandler) rs -> {
+            if (size[0] == edges[0].length) {
+                // строки добавились между подсчётом и чтением
+                edges[0] = Arrays.copyOf(edges[0], size[0] * 2 + 1);
+                edges[1] = Arrays.copyOf(edges[1], size[0] * 2 + 1);
+            }
+            edges[0][size[0]] = rs.getLong("user_id");
+            edges[1][size[0]] = rs.getLong("friend_id");
+            size[0]++;
+        });
+        load(Arrays.copyOf(edges[0], size[0]), Arrays.copyOf(edges[1], size[0]));
+    }
+
+    /**
+     * Заменяет граф рёбрами userIds[i] -> friendIds[i].
+     */
+    public void load(long[] userIds, long[] friendIds) {
+        Map<Long, long[]> loadedFriends = toSortedArrays(userIds, friendIds);
+        Map<Long, long[]> loadedFollowers = toSortedArrays(friendIds, userIds);
+        lock.writeLock().lock();
+        try {
+            friends = loadedFriends;
+            followers = loadedFollowers;
+            log.info("Friend graph built for {} users and {} friendships", friends.size(), userIds.length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Отсортированные id друзей пользователя. Массив нельзя изменять.
+     */
+    public long[] friends(long userId) {
+        lock.readLock().lock();
+        try {
+            return friends.getOrDefault(userId, EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Отсортированные id пользователей, добавивших пользователя в друзья. Массив нельзя изменять.
+     */
+    public long[] followers(long userId) {
+        lock.readLock().lock();
+        try {
+            return followers.getOrDefault(userId, EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            friends.put(userId, insert(friends.getOrDefault(userId, EMPTY), friendId));
+            followers.put(friendId, insert(followers.getOrDefault(friendId, EMPTY), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            replace(friends, userId, remove(friends.getOrDefault(userId, EMPTY), friendId));
+            replace(followers, friendId, remove(followers.getOrDefault(friendId, EMPTY), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        long userId = event.getUserId();
+        lock.writeLock().lock();
+        try {
+            for (long friendId : friends.getOrDefault(userId, EMPTY)) {
+                replace(followers, friendId, remove(followers.get(friendId), userId));
+            }
+            for (long followerId : followers.getOrDefault(userId, EMPTY)) {
+                replace(friends, followerId, remove(friends.get(followerId), userId));
+            }
+            friends.remove(userId);
+            followers.remove(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * До limit друзей друзей пользователя, которых нет у него в друзьях, по убыванию числа общих друзей
+     * (при равенстве - по возрастанию id). У пользователей с большим числом друзей просматриваются
+     * только первые max-fan-out друзей и первые max-fan-out друзей каждого из них,
+     * чтобы время ответа не зависело от размера их списков.
+     */
+    public long[] suggest(long userId, int limit) {
+        long[] own = friends(userId);
+        int fanOut = Math.min(own.length, maxFanOut);
+        long[][] lists = new long[fanOut][];
+        int total = 0;
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < fanOut; i++) {
+                lists[i] = friends.getOrDefault(own[i], EMPTY);
+                total += Math.min(lists[i].length, maxFanOut);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long[] candidates = new long[total];
+        int size = 0;
+        for (long[] list : lists) {
+            int length = Math.min(list.length, maxFanOut);
+            System.arraycopy(list, 0, candidates, size, length);
+            size += length;
+        }
+        Arrays.sort(candidates);
+
+        // вершина кучи - худший из лучших: меньше общих друзей, при равенстве больший id
+        PriorityQueue<long[]> top = new PriorityQueue<>(Comparator.<long[]>comparingLong(c -> c[1])
+                .thenComparing(Comparator.<long[]>comparingLong(c -> c[0]).reversed()));
+        for (int i = 0; i < candidates.length; ) {
+            long candidate = candidates[i];
+            int end = i;
+            while (end < candidates.length && candidates[end] == candidate) {
+                end++;
+            }
+            if (candidate != userId && Arrays.binarySearch(own, candidate) < 0) {
+                top.add(new long[]{candidate, end - i});
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            i = end;
+        }
+        long[] result = new long[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll()[0];
+        }
+        return result;
+    }
+
+    /**
+     * Кратчайший путь по дружбе от from к to двунаправленным обходом в ширину:
+     * прямой обход идёт по друзьям от from, обратный - по подписчикам от to, и на каждом шаге
+     * расширяется меньший из двух фронтов. Посещённые вершины с родителями хранятся в примитивных таблицах.
+     * Поиск прекращается после max-depth шагов или по истечении time-budget, тогда путь помечается
+     * как не найденный с truncated = true.
+     */
+    public FriendPath shortestPath(long from, long to) {
+        if (from == to) {
+            return FriendPath.of(List.of(from));
+        }
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        LongLongHashMap forwardParents = new LongLongHashMap(64);
+        LongLongHashMap backwardParents = new LongLongHashMap(64);
+        forwardParents.putIfAbsent(from, LongLongHashMap.MISSING);
+        backwardParents.putIfAbsent(to, LongLongHashMap.MISSING);
+        long[] forward = {from};
+        long[] backward = {to};
+        lock.readLock().lock();
+        try {
+            for (int depth = 0; depth < maxDepth; depth++) {
+                boolean expandForward = frontierDegree(forward, friends) <= frontierDegree(backward, followers);
+                long[] frontier = expandForward ? forward : backward;
+                Map<Long, long[]> adjacency = expandForward ? friends : followers;
+                LongLongHashMap parents = expandForward ? forwardParents : backwardParents;
+                LongLongHashMap opposite = expandForward ? backwardParents : forwardParents;
+                long[] next = new long[16];
+                int size = 0;
+                for (long node : frontier) {
+                    if (System.nanoTime() > deadline) {
+                        return FriendPath.notFound(true);
+                    }
+                    for (long neighbour : adjacency.getOrDefault(node, EMPTY)) {
+                        if (!parents.putIfAbsent(neighbour, node)) {
+                            continue;
+                        }
+                        if (opposite.containsKey(neighbour)) {
+                            return FriendPath.of(joinPath(neighbour, forwardParents, backwardParents));
+                        }
+                        if (size == next.length) {
+                            next = Arrays.copyOf(next, size * 2);
+                        }
+                        next[size++] = neighbour;
+                    }
+                }
+                if (size == 0) {
+                    return FriendPath.notFound(false);
+                }
+                if (expandForward) {
+                    forward = Arrays.copyOf(next, size);
+                } else {
+                    backward = Arrays.copyOf(next, size);
+                }
+            }
+            return FriendPath.notFound(true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long frontierDegree(long[] frontier, Map<Long, long[]> adjacency) {
+        long degree = 0;
+        for (long node : frontier) {
+            degree += adjacency.getOrDefault(node, EMPTY).length;
+        }
+        return degree;
+    }
+
+    private static List<Long> joinPath(long meeting, LongLongHashMap forwardParents,
+                                       LongLongHashMap backwardParents) {
+        LinkedList<Long> path = new LinkedList<>();
+        for (long node = meeting; node != LongLongHashMap.MISSING; node = forwardParents.get(node)) {
+            path.addFirst(node);
+        }
+        for (long node = backwardParents.get(meeting); node != LongLongHashMap.MISSING;
+             node = backwardParents.get(node)) {
+            path.addLast(node);
+        }
+        return new ArrayList<>(path);
+    }
+
+    private static void replace(Map<Long, long[]> adjacency, long userId, long[] ids) {
+        if (ids.length == 0) {
+            adjacency.remove(userId);
+        } else {
+            adjacency.put(userId, ids);
+        }
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int position = -index - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = id;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    private static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+
+    // списки смежности из рёбер from[i] -> to[i]: подсчёт степеней, раскладка по массивам и сортировка
+    private static Map<Long, long[]> toSortedArrays(long[] from, long[] to) {
+        Map<Long, int[]> degrees = new HashMap<>();
+        for (long id : from) {
+            degrees.computeIfAbsent(id, key -> new int[1])[0]++;
+        }
+        Map<Long, long[]> arrays = new HashMap<>(degrees.size() * 2);
+        degrees.forEach((id, degree) -> {
+            arrays.put(id, new long[degree[0]]);
+            degree[0] = 0;
+        });
+        for (int i = 0; i < from.length; i++) {
+            int[] position = degrees.get(from[i]);
+            arrays.get(from[i])[position[0]++] = to[i];
+        }
+        arrays.values().forEach(Arrays::sort);
+        return arrays;
+    }
+}
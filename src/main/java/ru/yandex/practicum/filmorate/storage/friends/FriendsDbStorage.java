@@ -1,30 +1,56 @@
 package ru.yandex.practicum.filmorate.storage.friends;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendPath;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IntegrityViolations;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
-import java.util.Collection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
 
-@Component
+@Component("friendsDbStorage")
 @Slf4j
 public class FriendsDbStorage implements FriendsStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final UserDbStorage userDbStorage;
+    private final int maxDepth;
+    private final Duration timeBudget;
 
-    public FriendsDbStorage(JdbcTemplate jdbcTemplate) {
+    public FriendsDbStorage(JdbcTemplate jdbcTemplate, UserDbStorage userDbStorage,
+                            @Value("${filmorate.friend-path.max-depth:6}") int maxDepth,
+                            @Value("${filmorate.friend-path.time-budget:100ms}") Duration timeBudget) {
         this.jdbcTemplate = jdbcTemplate;
+        this.userDbStorage = userDbStorage;
+        this.maxDepth = maxDepth;
+        this.timeBudget = timeBudget;
     }
 
+    /**
+     * Дружба записывается без предварительных проверок: отсутствие пользователя определяется
+     * по нарушенному внешнему ключу FRIENDSHIPS.
+     */
     @Override
     public void addFriend(Long id, Long friendId) {
-        if (isUserExists(id) && isUserExists(friendId)) {
-            String sql = "INSERT INTO FRIENDSHIPS (user_id, friend_id, is_approved) VALUES (?, ?, ?)";
+        String sql = "INSERT INTO FRIENDSHIPS (user_id, friend_id, is_approved) VALUES (?, ?, ?)";
+        try {
             jdbcTemplate.update(sql, id, friendId, false);
-            log.info("user {} add user {} to friends", id, friendId);
-        } else throw new UserNotFoundException("Attempt to add unknown user to friends");
+        } catch (DataIntegrityViolationException e) {
+            if (IntegrityViolations.isForeignKey(e, "friendships_user_fk")
+                    || IntegrityViolations.isForeignKey(e, "friendships_friend_fk")) {
+                throw new UserNotFoundException("Attempt to add unknown user to friends");
+            }
+            throw e;
+        }
+        log.info("user {} add user {} to friends", id, friendId);
     }
 
     @Override
@@ -32,32 +58,115 @@ public class FriendsDbStorage implements FriendsStorage {
         String sql = "SELECT FRIEND_ID, EMAIL, LOGIN, NAME, BIRTHDAY FROM FRIENDSHIPS JOIN USERS U " +
                 "on FRIENDSHIPS.FRIEND_ID = U.USER_ID WHERE " +
                 "FRIENDSHIPS.USER_ID = ?";
-        if (isUserExists(id)) {
-            return jdbcTemplate.query(sql, (rs, rowNum) -> new User(
-                            rs.getLong("friend_id"),
-                            rs.getString("email"),
-                            rs.getString("login"),
-                            rs.getString("name"),
-                            rs.getDate("birthday").toLocalDate()),
-                    id
-            );
-        } else {
+        List<User> friends = jdbcTemplate.query(sql, FriendsDbStorage::mapFriend, id);
+        // пустой список может означать отсутствие пользователя, только тогда нужен второй запрос
+        if (friends.isEmpty() && !userDbStorage.isUserExists(id)) {
             throw new UserNotFoundException(String.format("Request to find friends of user with absent id = %d", id));
         }
+        return friends;
+    }
+
+    /**
+     * Общие друзья двух пользователей одним запросом: пересечение их строк FRIENDSHIPS
+     * по первичному ключу (user_id, friend_id), без загрузки полных списков друзей.
+     */
+    @Override
+    public Collection<User> findSharedFriends(Long id, Long otherId) {
+        String sql = "SELECT F1.FRIEND_ID, U.EMAIL, U.LOGIN, U.NAME, U.BIRTHDAY FROM FRIENDSHIPS F1 " +
+                "JOIN FRIENDSHIPS F2 ON F2.FRIEND_ID = F1.FRIEND_ID AND F2.USER_ID = ? " +
+                "JOIN USERS U ON U.USER_ID = F1.FRIEND_ID " +
+                "WHERE F1.USER_ID = ? ORDER BY F1.FRIEND_ID";
+        List<User> shared = jdbcTemplate.query(sql, FriendsDbStorage::mapFriend, otherId, id);
+        if (shared.isEmpty() && (!userDbStorage.isUserExists(id) || !userDbStorage.isUserExists(otherId))) {
+            throw new UserNotFoundException(String.format("Request to find shared friends of users id = %d " +
+                    "and id = %d, one of them is absent", id, otherId));
+        }
+        return shared;
+    }
+
+    /**
+     * Друзья друзей, которые ещё не в друзьях у пользователя, по убыванию числа общих друзей.
+     */
+    @Override
+    public List<User> findSuggestions(Long id, int limit) {
+        String sql = "SELECT C.CANDIDATE AS FRIEND_ID, U.EMAIL, U.LOGIN, U.NAME, U.BIRTHDAY FROM " +
+                "(SELECT F2.FRIEND_ID AS CANDIDATE, COUNT(*) AS MUTUAL FROM FRIENDSHIPS F1 " +
+                "JOIN FRIENDSHIPS F2 ON F2.USER_ID = F1.FRIEND_ID " +
+                "WHERE F1.USER_ID = ? AND F2.FRIEND_ID <> F1.USER_ID AND NOT EXISTS " +
+                "(SELECT 1 FROM FRIENDSHIPS F3 WHERE F3.USER_ID = F1.USER_ID AND F3.FRIEND_ID = F2.FRIEND_ID) " +
+                "GROUP BY F2.FRIEND_ID ORDER BY MUTUAL DESC, F2.FRIEND_ID LIMIT ?) C " +
+                "JOIN USERS U ON U.USER_ID = C.CANDIDATE " +
+                "ORDER BY C.MUTUAL DESC, C.CANDIDATE";
+        List<User> suggestions = jdbcTemplate.query(sql, FriendsDbStorage::mapFriend, id, limit);
+        if (suggestions.isEmpty() && !userDbStorage.isUserExists(id)) {
+            throw new UserNotFoundException(String.format("Request to find friend suggestions of user " +
+                    "with absent id = %d", id));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Кратчайший путь обходом в ширину от id: друзья очередного уровня загружаются одним запросом.
+     * Ограничения по глубине и времени те же, что у графа в памяти.
+     */
+    @Override
+    public FriendPath findPath(Long id, Long otherId) {
+        if (!userDbStorage.isUserExists(id) || !userDbStorage.isUserExists(otherId)) {
+            throw new UserNotFoundException(String.format("Request to find path between users " +
+                    "with absent id = %d or id = %d", id, otherId));
+        }
+        if (id.equals(otherId)) {
+            return FriendPath.of(List.of(id));
+        }
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        String sql = "SELECT F.USER_ID, F.FRIEND_ID FROM TABLE(ID BIGINT = ?) T " +
+                "JOIN FRIENDSHIPS F ON F.USER_ID = T.ID ORDER BY F.USER_ID, F.FRIEND_ID";
+        Map<Long, Long> parents = new HashMap<>();
+        parents.put(id, null);
+        List<Long> frontier = List.of(id);
+        for (int depth = 0; depth < maxDepth; depth++) {
+            if (System.nanoTime() > deadline) {
+                return FriendPath.notFound(true);
+            }
+            List<Long> next = new ArrayList<>();
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                long friendId = rs.getLong("friend_id");
+                if (!parents.containsKey(friendId)) {
+                    parents.put(friendId, rs.getLong("user_id"));
+                    next.add(friendId);
+                }
+            }, (Object) frontier.toArray(new Long[0]));
+            if (parents.containsKey(otherId)) {
+                LinkedList<Long> path = new LinkedList<>();
+                for (Long node = otherId; node != null; node = parents.get(node)) {
+                    path.addFirst(node);
+                }
+                return FriendPath.of(new ArrayList<>(path));
+            }
+            if (next.isEmpty()) {
+                return FriendPath.notFound(false);
+            }
+            frontier = next;
+        }
+        return FriendPath.notFound(true);
     }
 
-    private boolean isUserExists(Long id) {
-        String sql = "SELECT * FROM USERS WHERE user_id = ?";
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet(sql, id);
-        return userRows.next();
+    private static User mapFriend(ResultSet rs, int rowNum) throws SQLException {
+        return new User(
+                rs.getLong("friend_id"),
+                rs.getString("email"),
+                rs.getString("login"),
+                rs.getString("name"),
+                rs.getDate("birthday").toLocalDate());
     }
 
     @Override
     public void deleteFriend(Long id, Long friendId) {
-        if (isUserExists(id) && isUserExists(friendId)) {
-            String sql = "DELETE FROM FRIENDSHIPS WHERE user_id = ? AND friend_id = ?";
-            jdbcTemplate.update(sql, id, friendId);
-        } else throw new UserNotFoundException("Attempt to delete unknown user to friends");
+        String sql = "DELETE FROM FRIENDSHIPS WHERE user_id = ? AND friend_id = ?";
+        if (jdbcTemplate.update(sql, id, friendId) == 0
+                && (!userDbStorage.isUserExists(id) || !userDbStorage.isUserExists(friendId))) {
+            throw new UserNotFoundException("Attempt to delete unknown user to friends");
+        }
     }
 }
 
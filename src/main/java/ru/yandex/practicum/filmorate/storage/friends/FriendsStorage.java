@@ -1,13 +1,21 @@
 package ru.yandex.practicum.filmorate.storage.friends;
 
+import ru.yandex.practicum.filmorate.model.FriendPath;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface FriendsStorage {
     void addFriend(Long id, Long friendId);
 
     Collection<User> findFriends(Long id);
 
+    Collection<User> findSharedFriends(Long id, Long otherId);
+
+    List<User> findSuggestions(Long id, int limit);
+
+    FriendPath findPath(Long id, Long otherId);
+
     void deleteFriend(Long id, Long friendId);
 }
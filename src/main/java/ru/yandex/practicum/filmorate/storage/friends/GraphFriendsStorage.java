@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.storage.friends;
+
+import ru.yandex.practicum.filmorate.model.FriendPath;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище дружбы, которое после каждой записи в БД обновляет {@link FriendGraph}
+ * и подбирает возможных друзей и кратчайшие пути между пользователями по графу. Пользователи загружаются одним запросом по найденным id.
+ * Пользователей без друзей и остальные запросы обслуживает исходное хранилище.
+ */
+public class GraphFriendsStorage implements FriendsStorage {
+    private final FriendsStorage friendsStorage;
+    private final UserStorage userStorage;
+    private final FriendGraph friendGraph;
+
+    public GraphFriendsStorage(FriendsStorage friendsStorage, UserStorage userStorage, FriendGraph friendGraph) {
+        this.friendsStorage = friendsStorage;
+        this.userStorage = userStorage;
+        this.friendGraph = friendGraph;
+    }
+
+    @Override
+    public void addFriend(Long id, Long friendId) {
+        friendsStorage.addFriend(id, friendId);
+        friendGraph.addFriend(id, friendId);
+    }
+
+    @Override
+    public Collection<User> findFriends(Long id) {
+        return friendsStorage.findFriends(id);
+    }
+
+    @Override
+    public Collection<User> findSharedFriends(Long id, Long otherId) {
+        return friendsStorage.findSharedFriends(id, otherId);
+    }
+
+    @Override
+    public List<User> findSuggestions(Long id, int limit) {
+        if (friendGraph.friends(id).length == 0) {
+            // проверку существования пользователя выполняет исходное хранилище
+            return friendsStorage.findSuggestions(id, limit);
+        }
+        long[] suggested = friendGraph.suggest(id, limit);
+        List<Long> ids = Arrays.stream(suggested).boxed().collect(Collectors.toList());
+        Map<Long, User> users = userStorage.getByIds(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public FriendPath findPath(Long id, Long otherId) {
+        if (id.equals(otherId) || friendGraph.friends(id).length == 0 || friendGraph.followers(otherId).length == 0) {
+            // путей нет или они тривиальны, исходное хранилище заодно проверит существование пользователей
+            return friendsStorage.findPath(id, otherId);
+        }
+        return friendGraph.shortestPath(id, otherId);
+    }
+
+    @Override
+    public void deleteFriend(Long id, Long friendId) {
+        friendsStorage.deleteFriend(id, friendId);
+        friendGraph.deleteFriend(id, friendId);
+    }
+}
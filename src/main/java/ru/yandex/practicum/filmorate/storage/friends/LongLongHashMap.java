@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage.friends;
+
+import java.util.Arrays;
+
+/**
+ * Хэш-таблица long -> long с открытой адресацией и линейным пробированием, без упаковки в Long.
+ * Используется обходом графа дружбы как множество посещённых вершин с их родителями.
+ * Ключ {@link Long#MIN_VALUE} зарезервирован под пустую ячейку.
+ */
+class LongLongHashMap {
+    static final long MISSING = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, MISSING);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(long key) {
+        return keys[indexOf(keys, key)] == key;
+    }
+
+    /**
+     * Значение по ключу или {@link #MISSING}, если ключа нет.
+     */
+    long get(long key) {
+        int index = indexOf(keys, key);
+        return keys[index] == key ? values[index] : MISSING;
+    }
+
+    /**
+     * Добавляет ключ, если его ещё нет. Возвращает false, если ключ уже был.
+     */
+    boolean putIfAbsent(long key, long value) {
+        int index = indexOf(keys, key);
+        if (keys[index] == key) {
+            return false;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return true;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        Arrays.fill(keys, MISSING);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != MISSING) {
+                int index = indexOf(keys, oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int indexOf(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int index = (int) (mix(key) & mask);
+        while (keys[index] != MISSING && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -4,29 +4,40 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
 
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
 @Component
 public class GenreDbStorage implements GenreStorage {
     JdbcTemplate jdbcTemplate;
-    public GenreDbStorage(JdbcTemplate jdbcTemplate) {
+    private final ReferenceDataRegistry referenceData;
+
+    public GenreDbStorage(JdbcTemplate jdbcTemplate, ReferenceDataRegistry referenceData) {
         this.jdbcTemplate = jdbcTemplate;
+        this.referenceData = referenceData;
     }
 
     @Override
     public Set<Genre> getFilmGenres(Long filmId) {
-        String sql = "SELECT GENRES.GENRE_ID, GENRE FROM FILM_GENRES JOIN GENRES " +
-                "ON FILM_GENRES.GENRE_ID = GENRES.GENRE_ID " +
-                "WHERE FILM_ID = ?";
-        return new TreeSet<>(jdbcTemplate.query(sql, (rs, rowNum) -> new Genre(
-                        rs.getInt("genre_id"),
-                        rs.getString("genre")),
+        String sql = "SELECT GENRE_ID FROM FILM_GENRES WHERE FILM_ID = ?";
+        return new TreeSet<>(jdbcTemplate.query(sql, (rs, rowNum) -> referenceData.getGenre(rs.getInt("genre_id")),
                 filmId
         ));
     }
 
+    @Override
+    public Genre getGenre(int genreId) {
+        return referenceData.getGenre(genreId);
+    }
+
+    @Override
+    public List<Genre> getAll() {
+        return referenceData.getAllGenres();
+    }
+
     @Override
     public void updateGenresOfFilm(Film film) {
         jdbcTemplate.update("DELETE FROM FILM_GENRES WHERE film_id = ?", film.getId());
@@ -3,10 +3,15 @@ package ru.yandex.practicum.filmorate.storage.genre;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import java.util.List;
 import java.util.Set;
 
 public interface GenreStorage {
     Set<Genre> getFilmGenres(Long filmId);
 
     void updateGenresOfFilm(Film film);
+
+    Genre getGenre(int genreId);
+
+    List<Genre> getAll();
 }
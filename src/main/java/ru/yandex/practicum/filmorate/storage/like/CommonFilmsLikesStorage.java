@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище лайков, которое находит общие фильмы двух пользователей пересечением их лайков
+ * из {@link LikedFilmsCache} и загружает из БД только найденные фильмы, упорядоченные по популярности.
+ * Остальные запросы выполняет исходное хранилище.
+ */
+public class CommonFilmsLikesStorage implements LikesStorage {
+    private final LikesStorage likesStorage;
+    private final FilmStorage filmStorage;
+    private final LikedFilmsCache likedFilmsCache;
+
+    public CommonFilmsLikesStorage(LikesStorage likesStorage, FilmStorage filmStorage,
+                                   LikedFilmsCache likedFilmsCache) {
+        this.likesStorage = likesStorage;
+        this.filmStorage = filmStorage;
+        this.likedFilmsCache = likedFilmsCache;
+    }
+
+    @Override
+    public void addLike(Long id, Long userId) {
+        likesStorage.addLike(id, userId);
+    }
+
+    @Override
+    public void removeLike(Long id, Long userId) {
+        likesStorage.removeLike(id, userId);
+    }
+
+    @Override
+    public List<LikeResult.Status> applyLikes(List<LikeOperation> operations) {
+        return likesStorage.applyLikes(operations);
+    }
+
+    @Override
+    public List<Film> getPopular(int count, int genreId, int year) {
+        return likesStorage.getPopular(count, genreId, year);
+    }
+
+    @Override
+    public List<Film> getCommonFilms(Long userId, Long friendId) {
+        long[] common = LikedFilmsCache.intersect(likedFilmsCache.get(userId), likedFilmsCache.get(friendId));
+        if (common.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Long> filmIds = Arrays.stream(common).boxed().collect(Collectors.toList());
+        List<Film> films = filmStorage.getPopularByIds(filmIds, filmIds.size());
+        for (Film film : films) {
+            if (film.getGenres() != null && film.getGenres().isEmpty()) {
+                film.setGenres(null);
+            }
+        }
+        return films;
+    }
+
+    @Override
+    public List<Film> getRecommendations(Long userId) {
+        return likesStorage.getRecommendations(userId);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище лайков, которое отвечает на запросы популярных фильмов по {@link PopularityIndex}.
+ * Порядок фильмов и число лайков берутся из индекса, сами фильмы - из хранилища фильмов
+ * (при включённом кэше без обращения к БД). Остальные запросы выполняет исходное хранилище.
+ */
+public class IndexedLikesStorage implements LikesStorage {
+    private final LikesStorage likesStorage;
+    private final FilmStorage filmStorage;
+    private final PopularityIndex popularityIndex;
+
+    public IndexedLikesStorage(LikesStorage likesStorage, FilmStorage filmStorage, PopularityIndex popularityIndex) {
+        this.likesStorage = likesStorage;
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+    }
+
+    @Override
+    public void addLike(Long id, Long userId) {
+        likesStorage.addLike(id, userId);
+    }
+
+    @Override
+    public void removeLike(Long id, Long userId) {
+        likesStorage.removeLike(id, userId);
+    }
+
+    @Override
+    public List<LikeResult.Status> applyLikes(List<LikeOperation> operations) {
+        return likesStorage.applyLikes(operations);
+    }
+
+    @Override
+    public List<Film> getPopular(int count, int genreId, int year) {
+        // остальные сочетания параметров SQL-реализация отклоняет или возвращает пустой список
+        if ((genreId != -1 && genreId <= 0) || (year != -1 && year <= 0)) {
+            return likesStorage.getPopular(count, genreId, year);
+        }
+        Map<Long, Long> top = popularityIndex.top(count,
+                genreId == -1 ? PopularityIndex.ANY : genreId,
+                year == -1 ? PopularityIndex.ANY : year);
+        Map<Long, Film> films = filmStorage.getByIds(top.keySet()).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        List<Film> popular = new ArrayList<>(top.size());
+        top.forEach((filmId, likes) -> {
+            Film film = films.get(filmId);
+            if (film != null) {
+                film.setRating(likes);
+                if (film.getGenres() == null) {
+                    film.setGenres(new TreeSet<>());
+                }
+                popular.add(film);
+            }
+        });
+        return popular;
+    }
+
+    @Override
+    public List<Film> getCommonFilms(Long userId, Long friendId) {
+        return likesStorage.getCommonFilms(userId, friendId);
+    }
+
+    @Override
+    public List<Film> getRecommendations(Long userId) {
+        return likesStorage.getRecommendations(userId);
+    }
+}
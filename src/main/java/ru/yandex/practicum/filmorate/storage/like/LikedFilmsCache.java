@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.change.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikesChangedEvent;
+import ru.yandex.practicum.filmorate.change.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш лайкнутых пользователем фильмов в виде отсортированного long[].
+ * Лайки пользователя читаются одним запросом по первичному ключу LIKES (user_id, film_id),
+ * запись сбрасывается при изменении его лайков; удаление фильма сбрасывает весь кэш.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.liked-films.enabled", havingValue = "true", matchIfMissing = true)
+public class LikedFilmsCache {
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Long, long[]> cache;
+
+    public LikedFilmsCache(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.liked-films.maximum-size:100000}") long maximumSize,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "liked-films");
+    }
+
+    /**
+     * Id фильмов, которые лайкнул пользователь, по возрастанию. Массив нельзя изменять.
+     */
+    public long[] get(Long userId) {
+        return cache.get(userId, this::load);
+    }
+
+    @EventListener
+    public void onLikeChanged(LikeChangedEvent event) {
+        cache.invalidate(event.getUserId());
+    }
+
+    @EventListener
+    public void onLikesChanged(LikesChangedEvent event) {
+        cache.invalidateAll(event.getChanges().stream().map(LikeChangedEvent::getUserId).collect(Collectors.toSet()));
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        cache.invalidate(event.getUserId());
+    }
+
+    @EventListener
+    public void onFilmChanged(FilmChangedEvent event) {
+        if (event.isDeleted()) {
+            // лайки удалённого фильма удалены каскадно, у кого они были - неизвестно
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Пересечение двух отсортированных массивов галопирующим поиском: каждый элемент меньшего массива
+     * ищется в большем экспоненциальным шагом от позиции предыдущего совпадения,
+     * а затем бинарным поиском, что даёт O(m log(n / m)) для m <= n.
+     */
+    public static long[] intersect(long[] a, long[] b) {
+        long[] small = a.length <= b.length ? a : b;
+        long[] large = small == a ? b : a;
+        long[] result = new long[small.length];
+        int size = 0;
+        int from = 0;
+        for (int i = 0; i < small.length && from < large.length; i++) {
+            long value = small[i];
+            int step = 1;
+            while (from + step < large.length && large[from + step] < value) {
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(large, from + (step >>> 1), Math.min(from + step + 1, large.length),
+                    value);
+            if (index >= 0) {
+                result[size++] = value;
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private long[] load(Long userId) {
+        long[] filmIds = jdbcTemplate.queryForList("SELECT FILM_ID FROM LIKES WHERE USER_ID = ? ORDER BY FILM_ID",
+                        Long.class, userId).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        if (filmIds.length == 0 && jdbcTemplate.queryForList("SELECT USER_ID FROM USERS WHERE USER_ID = ?",
+                Long.class, userId).isEmpty()) {
+            throw new UserNotFoundException("User not found");
+        }
+        return filmIds;
+    }
+}
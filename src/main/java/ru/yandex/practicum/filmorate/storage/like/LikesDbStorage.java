@@ -1,167 +1,213 @@
 package ru.yandex.practicum.filmorate.storage.like;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.OperationType;
+import ru.yandex.practicum.filmorate.storage.IntegrityViolations;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
-import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
-import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmHydrator;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
-@Component
+@Component("likesDbStorage")
 @Slf4j
 public class LikesDbStorage implements LikesStorage {
     private final JdbcTemplate jdbcTemplate;
-    private final GenreStorage genreStorage;
-    private final MpaStorage mpaStorage;
+    private final FilmHydrator filmHydrator;
     private final FilmDbStorage filmDbStorage;
     private final UserDbStorage userDbStorage;
 
     public LikesDbStorage(JdbcTemplate jdbcTemplate,
-                          GenreStorage genreStorage,
-                          MpaStorage mpaStorage,
+                          FilmHydrator filmHydrator,
                           FilmDbStorage filmDbStorage, UserDbStorage userDbStorage) {
         this.jdbcTemplate = jdbcTemplate;
-        this.genreStorage = genreStorage;
-        this.mpaStorage = mpaStorage;
+        this.filmHydrator = filmHydrator;
         this.filmDbStorage = filmDbStorage;
         this.userDbStorage = userDbStorage;
     }
 
+    /**
+     * Лайк записывается без предварительных проверок: отсутствие фильма или пользователя
+     * определяется по нарушенному внешнему ключу, отсутствие лайка при удалении - по числу удалённых строк.
+     * Существование фильма и пользователя проверяется отдельными запросами только после неудачной записи.
+     */
     @Override
+    @Transactional
     public void addLike(Long id, Long userId) {
-        if (!filmDbStorage.isFilmExists(id)) throw new FilmNotFoundException("Film not found");
-        if (!userDbStorage.isUserExists(userId)) throw new UserNotFoundException("User not found");
         String sql = "INSERT INTO LIKES (user_id, film_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, userId, id);
+        try {
+            jdbcTemplate.update(sql, userId, id);
+        } catch (DataIntegrityViolationException e) {
+            if (IntegrityViolations.isForeignKey(e, "likes_film_fk")) throw new FilmNotFoundException("Film not found");
+            if (IntegrityViolations.isForeignKey(e, "likes_user_fk")) throw new UserNotFoundException("User not found");
+            throw e;
+        }
+        jdbcTemplate.update("UPDATE FILMS SET likes_count = likes_count + 1 WHERE film_id = ?", id);
         log.info("User id = {} add like to film id = {}", userId, id);
     }
 
     @Override
+    @Transactional
     public void removeLike(Long id, Long userId) {
-        if (!filmDbStorage.isFilmExists(id)) throw new FilmNotFoundException("Film not found");
-        if (!userDbStorage.isUserExists(userId)) throw new UserNotFoundException("User not found");
-        if (!isLikeExist(userId, id)) throw new UserNotFoundException("User didn't add like to film");
         String sql = "DELETE FROM LIKES WHERE user_id = ? AND film_id = ?";
-        jdbcTemplate.update(sql, userId, id);
+        if (jdbcTemplate.update(sql, userId, id) == 0) {
+            if (!filmDbStorage.isFilmExists(id)) throw new FilmNotFoundException("Film not found");
+            if (!userDbStorage.isUserExists(userId)) throw new UserNotFoundException("User not found");
+            throw new UserNotFoundException("User didn't add like to film");
+        }
+        jdbcTemplate.update("UPDATE FILMS SET likes_count = likes_count - 1 WHERE film_id = ?", id);
+    }
+
+    /**
+     * Существование всех фильмов и пользователей пакета проверяется двумя запросами,
+     * затем лайки вставляются и удаляются пакетными MERGE и DELETE. Поставлен или убран ли лайк,
+     * определяется по числу изменённых каждой операцией строк, а не по предварительному чтению LIKES,
+     * поэтому счётчики фильмов сходятся и при одновременных одиночных лайках.
+     */
+    @Override
+    @Transactional
+    public List<LikeResult.Status> applyLikes(List<LikeOperation> operations) {
+        Set<Long> films = findExisting("FILMS", "FILM_ID",
+                operations.stream().map(LikeOperation::getFilmId).collect(Collectors.toSet()));
+        Set<Long> users = findExisting("USERS", "USER_ID",
+                operations.stream().map(LikeOperation::getUserId).collect(Collectors.toSet()));
+        LikeResult.Status[] statuses = new LikeResult.Status[operations.size()];
+        List<Integer> adds = new ArrayList<>();
+        List<Integer> removes = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            LikeOperation operation = operations.get(i);
+            if (!films.contains(operation.getFilmId())) {
+                statuses[i] = LikeResult.Status.FILM_NOT_FOUND;
+            } else if (!users.contains(operation.getUserId())) {
+                statuses[i] = LikeResult.Status.USER_NOT_FOUND;
+            } else {
+                (operation.getOperation() == OperationType.ADD ? adds : removes).add(i);
+            }
+        }
+        String merge = "MERGE INTO LIKES L " +
+                "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) V(USER_ID, FILM_ID) " +
+                "ON L.USER_ID = V.USER_ID AND L.FILM_ID = V.FILM_ID " +
+                "WHEN NOT MATCHED THEN INSERT (USER_ID, FILM_ID) VALUES (V.USER_ID, V.FILM_ID)";
+        try {
+            applyBatch(merge, operations, adds, statuses);
+        } catch (DataIntegrityViolationException e) {
+            // фильм или пользователь удалён уже после проверки существования
+            if (IntegrityViolations.isForeignKey(e, "likes_film_fk")) throw new FilmNotFoundException("Film not found");
+            if (IntegrityViolations.isForeignKey(e, "likes_user_fk")) throw new UserNotFoundException("User not found");
+            throw e;
+        }
+        applyBatch("DELETE FROM LIKES WHERE user_id = ? AND film_id = ?", operations, removes, statuses);
+
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            if (statuses[i] == LikeResult.Status.APPLIED) {
+                LikeOperation operation = operations.get(i);
+                deltas.merge(operation.getFilmId(), operation.getOperation() == OperationType.ADD ? 1 : -1,
+                        Integer::sum);
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        List<Object[]> counters = deltas.entrySet().stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate("UPDATE FILMS SET likes_count = likes_count + ? WHERE film_id = ?", counters);
+        log.info("{} of {} like operations changed likes", changedCount(statuses), operations.size());
+        return Arrays.asList(statuses);
+    }
+
+    private static long changedCount(LikeResult.Status[] statuses) {
+        return Arrays.stream(statuses).filter(status -> status == LikeResult.Status.APPLIED).count();
+    }
+
+    private Set<Long> findExisting(String table, String idColumn, Set<Long> ids) {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT X." + idColumn + " FROM " + table + " X " +
+                "JOIN TABLE(ID BIGINT = ?) T ON X." + idColumn + " = T.ID", Long.class,
+                (Object) ids.toArray(Long[]::new)));
     }
 
-    private boolean isLikeExist(Long userId, Long filmId) {
-        String sql = "SELECT * FROM LIKES WHERE user_id = ? AND film_id = ?";
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet(sql, userId, filmId);
-        return userRows.next();
+    private void applyBatch(String sql, List<LikeOperation> operations, List<Integer> indexes,
+                            LikeResult.Status[] statuses) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = indexes.stream()
+                .map(i -> new Object[]{operations.get(i).getUserId(), operations.get(i).getFilmId()})
+                .collect(Collectors.toList());
+        int[] counts = jdbcTemplate.batchUpdate(sql, args);
+        for (int j = 0; j < indexes.size(); j++) {
+            statuses[indexes.get(j)] = counts[j] > 0 ? LikeResult.Status.APPLIED : LikeResult.Status.UNCHANGED;
+        }
     }
 
+    /**
+     * Самые популярные фильмы. Сортировка идёт по счётчику FILMS.LIKES_COUNT,
+     * поэтому запрос читает индекс films_likes_count_idx до первых count подходящих фильмов
+     * вместо группировки всей таблицы LIKES.
+     */
     @Override
     public List<Film> getPopular(int count, int genreId, int year) {
         String sql = "";
         List<Film> films = new ArrayList<>();
         if (genreId == -1 && year == -1) {
             log.info("Filtering populars films no parameters");
-            sql = "SELECT FILMS.FILM_ID, NAME, DESCRIPTION, RELEASEDATE, DURATION, RATE_ID , " +
-                    "COUNT(L.USER_ID) as RATING FROM FILMS " +
-                    "LEFT JOIN LIKES L on FILMS.FILM_ID = L.FILM_ID " +
-                    "GROUP BY FILMS.FILM_ID " +
-                    "ORDER BY RATING DESC LIMIT ?";
-            films = jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                    rs.getLong("film_id"),
-                    rs.getString("name"),
-                    rs.getString("description"),
-                    rs.getDate("releaseDate").toLocalDate(),
-                    rs.getInt("duration"),
-                    genreStorage.getFilmGenres(rs.getLong("film_id")),
-                    mpaStorage.getMpa(rs.getInt("rate_id")),
-                    rs.getLong("rating")
-            ), count);
+            sql = "SELECT * FROM FILMS " +
+                    "ORDER BY LIKES_COUNT DESC, FILM_ID LIMIT ?";
+            films = jdbcTemplate.query(sql, FilmHydrator::mapFilm, count);
 
         }
         if (genreId > 0 && year == -1) {
             log.info("Filtering populars films by genre");
-            sql = "SELECT FILMS.FILM_ID, NAME, DESCRIPTION, RELEASEDATE, DURATION, RATE_ID , " +
-                    "COUNT(L.USER_ID) as RATING FROM FILMS " +
-                    "LEFT JOIN LIKES L on FILMS.FILM_ID = L.FILM_ID " +
-                    "LEFT JOIN FILM_GENRES F on FILMS.FILM_ID = F.FILM_ID " +
-                    "WHERE F.GENRE_ID=?" +
-                    " GROUP BY FILMS.FILM_ID,  F.GENRE_ID " +
-                    "ORDER BY RATING DESC LIMIT ?";
-            films = jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                    rs.getLong("film_id"),
-                    rs.getString("name"),
-                    rs.getString("description"),
-                    rs.getDate("releaseDate").toLocalDate(),
-                    rs.getInt("duration"),
-                    genreStorage.getFilmGenres(rs.getLong("film_id")),
-                    mpaStorage.getMpa(rs.getInt("rate_id")),
-                    rs.getLong("rating")
-            ), genreId, count);
+            sql = "SELECT FILMS.* FROM FILMS " +
+                    "JOIN FILM_GENRES F on FILMS.FILM_ID = F.FILM_ID " +
+                    "WHERE F.GENRE_ID=? " +
+                    "ORDER BY FILMS.LIKES_COUNT DESC, FILMS.FILM_ID LIMIT ?";
+            films = jdbcTemplate.query(sql, FilmHydrator::mapFilm, genreId, count);
         }
         if (genreId == -1 && year > 0) {
             log.info("Filtering populars films by year");
-            sql = "SELECT FILMS.FILM_ID, NAME, DESCRIPTION, RELEASEDATE, DURATION, RATE_ID , " +
-                    "COUNT(L.USER_ID) as RATING FROM FILMS " +
-                    "LEFT JOIN LIKES L on FILMS.FILM_ID = L.FILM_ID " +
-                    "WHERE EXTRACT(YEAR FROM RELEASEDATE)=?" +
-                    " GROUP BY FILMS.FILM_ID" +
-                    " ORDER BY RATING DESC LIMIT ?";
-            films = jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                    rs.getLong("film_id"),
-                    rs.getString("name"),
-                    rs.getString("description"),
-                    rs.getDate("releaseDate").toLocalDate(),
-                    rs.getInt("duration"),
-                    genreStorage.getFilmGenres(rs.getLong("film_id")),
-                    mpaStorage.getMpa(rs.getInt("rate_id")),
-                    rs.getLong("rating")
-            ), year, count);
+            sql = "SELECT * FROM FILMS " +
+                    "WHERE EXTRACT(YEAR FROM RELEASEDATE)=? " +
+                    "ORDER BY LIKES_COUNT DESC, FILM_ID LIMIT ?";
+            films = jdbcTemplate.query(sql, FilmHydrator::mapFilm, year, count);
         }
         if (genreId > 0 && year > 0) {
             log.info("Filtering populars films by genre and year");
-            sql = "SELECT FILMS.FILM_ID, NAME, DESCRIPTION, RELEASEDATE, DURATION, RATE_ID , " +
-                    "COUNT(L.USER_ID) as RATING FROM FILMS " +
-                    "LEFT JOIN LIKES L on FILMS.FILM_ID = L.FILM_ID " +
-                    "LEFT JOIN FILM_GENRES F on FILMS.FILM_ID = F.FILM_ID " +
+            sql = "SELECT FILMS.* FROM FILMS " +
+                    "JOIN FILM_GENRES F on FILMS.FILM_ID = F.FILM_ID " +
                     "WHERE F.GENRE_ID=?" +
-                    " AND EXTRACT(YEAR FROM RELEASEDATE)=?" +
-                    " GROUP BY FILMS.FILM_ID,  F.GENRE_ID " +
-                    "ORDER BY RATING DESC LIMIT ?";
-            films = jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                    rs.getLong("film_id"),
-                    rs.getString("name"),
-                    rs.getString("description"),
-                    rs.getDate("releaseDate").toLocalDate(),
-                    rs.getInt("duration"),
-                    genreStorage.getFilmGenres(rs.getLong("film_id")),
-                    mpaStorage.getMpa(rs.getInt("rate_id")),
-                    rs.getLong("rating")
-            ), genreId, year, count);
+                    " AND EXTRACT(YEAR FROM RELEASEDATE)=? " +
+                    "ORDER BY FILMS.LIKES_COUNT DESC, FILMS.FILM_ID LIMIT ?";
+            films = jdbcTemplate.query(sql, FilmHydrator::mapFilm, genreId, year, count);
         }
         if (genreId < -1 && year < -1) {
             throw new ValidationException(String.format("Incorrect parameters for filtering populars - films" +
                     " genreid = %d and year = %d.", genreId, year));
         }
 
-        return films;
+        return filmHydrator.hydrate(films);
     }
 
     @Override
     public List<Film> getCommonFilms(Long userId, Long friendId) {
         if (!userDbStorage.isUserExists(userId)) throw new UserNotFoundException("User not found");
         if (!userDbStorage.isUserExists(friendId)) throw new UserNotFoundException("User not found");
-        String sql = "SELECT *" +
+        String sql = "SELECT f.* " +
                 "FROM films AS f " +
-                "LEFT JOIN (SELECT film_id, COUNT(film_id) AS count_like FROM likes GROUP BY film_id) USING (film_id) " +
                 "RIGHT JOIN likes AS l1 ON f.film_id = l1.film_id " +
                 "RIGHT JOIN likes AS l2 ON l1.film_id = l2.film_id " +
                 "WHERE l1.user_id = ? AND l2.user_id = ? " +
-                "ORDER BY count_like DESC;";
+                "ORDER BY f.likes_count DESC;";
 
         return getFilmsBySql(sql, userId, friendId);
     }
@@ -197,15 +243,7 @@ public class LikesDbStorage implements LikesStorage {
     }
 
     private List<Film> getFilmsBySql(String sql, Long userId, Long id) {
-        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> new Film(
-                rs.getLong("film_id"),
-                rs.getString("name"),
-                rs.getString("description"),
-                rs.getDate("releaseDate").toLocalDate(),
-                rs.getInt("duration"),
-                genreStorage.getFilmGenres(rs.getLong("film_id")),
-                mpaStorage.getMpa(rs.getInt("rate_id"))
-        ), userId, id);
+        List<Film> films = filmHydrator.hydrate(jdbcTemplate.query(sql, FilmHydrator::mapFilm, userId, id));
         for (Film f : films) {
             if (f.getGenres().isEmpty()) {
                 f.setGenres(null);
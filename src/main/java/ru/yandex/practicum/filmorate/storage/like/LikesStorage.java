@@ -1,6 +1,8 @@
 package ru.yandex.practicum.filmorate.storage.like;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeResult;
 
 import java.util.List;
 
@@ -9,6 +11,11 @@ public interface LikesStorage {
 
     void removeLike(Long id, Long userId);
 
+    /**
+     * Применяет операции с попарно разными (userId, filmId) и возвращает итог каждой в том же порядке.
+     */
+    List<LikeResult.Status> applyLikes(List<LikeOperation> operations);
+
     List<Film> getPopular(int count, int genreId, int year);
 
     List<Film> getCommonFilms(Long userId, Long friendId);
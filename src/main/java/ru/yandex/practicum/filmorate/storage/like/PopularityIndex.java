@@ -0,0 +1,294 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.change.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.change.FilmsImportedEvent;
+import ru.yandex.practicum.filmorate.change.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikesChangedEvent;
+import ru.yandex.practicum.filmorate.change.UserDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс популярности фильмов в памяти.
+ * Каждый фильм лежит в упорядоченных по (лайки desc, id) корзинах: общей, своего года,
+ * каждого своего жанра и каждой пары (жанр, год). Поэтому любой вариант getPopular(count, genreId, year)
+ * сводится к чтению первых count элементов одной корзины.
+ * Индекс собирается из БД при старте и обновляется по событиям об изменении лайков и фильмов;
+ * после изменения фильма его запись перечитывается из БД, так что индекс не копит расхождения.
+ * Обновления выполняются по одному под отдельной блокировкой и читают БД до того, как взять блокировку
+ * на запись: она держится только на время замены записей в памяти, и чтение индекса не ждёт запросов к БД.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.popularity-index.enabled", havingValue = "true", matchIfMissing = true)
+public class PopularityIndex {
+    static final int ANY = 0;
+
+    private static final Comparator<Entry> BY_POPULARITY = Comparator.comparingLong((Entry entry) -> entry.likes)
+            .reversed()
+            .thenComparingLong(entry -> entry.filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // последовательность "прочитать БД - заменить записи" не должна перемежаться с другим обновлением,
+    // иначе более старое значение может затереть новое
+    private final Object updateLock = new Object();
+    private Map<Long, Entry> entries = new HashMap<>();
+    private Map<Long, NavigableSet<Entry>> buckets = new HashMap<>();
+
+    public PopularityIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        synchronized (updateLock) {
+            Map<Long, Entry> loaded = load(null);
+            Map<Long, NavigableSet<Entry>> loadedBuckets = new HashMap<>();
+            loaded.values().forEach(entry -> addToBuckets(loadedBuckets, entry));
+            lock.writeLock().lock();
+            try {
+                entries = loaded;
+                buckets = loadedBuckets;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Popularity index built for {} films", loaded.size());
+        }
+    }
+
+    /**
+     * Первые count фильмов корзины в порядке популярности: id фильма -> число лайков.
+     * genreId и year равные {@link #ANY} означают отсутствие фильтра.
+     */
+    public Map<Long, Long> top(int count, int genreId, int year) {
+        Map<Long, Long> top = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> bucket = buckets.get(bucketKey(genreId, year));
+            if (bucket == null) {
+                return top;
+            }
+            Iterator<Entry> iterator = bucket.iterator();
+            while (top.size() < count && iterator.hasNext()) {
+                Entry entry = iterator.next();
+                top.put(entry.filmId, entry.likes);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top;
+    }
+
+    @EventListener
+    public void onLikeChanged(LikeChangedEvent event) {
+        Long filmId = event.getFilmId();
+        synchronized (updateLock) {
+            // entries меняются только под updateLock, поэтому читать их здесь можно без блокировки на чтение
+            Entry entry = entries.get(filmId);
+            List<Long> likes = jdbcTemplate.queryForList("SELECT LIKES_COUNT FROM FILMS WHERE FILM_ID = ?",
+                    Long.class, filmId);
+            if (entry == null || likes.isEmpty()) {
+                update(List.of(filmId), load(List.of(filmId)));
+            } else {
+                update(List.of(filmId), Map.of(filmId,
+                        new Entry(entry.filmId, entry.year, entry.genreIds, likes.get(0))));
+            }
+        }
+    }
+
+    @EventListener
+    public void onLikesChanged(LikesChangedEvent event) {
+        Set<Long> filmIds = event.getChanges().stream().map(LikeChangedEvent::getFilmId).collect(Collectors.toSet());
+        refresh(filmIds);
+    }
+
+    @EventListener
+    public void onFilmChanged(FilmChangedEvent event) {
+        if (event.isDeleted()) {
+            synchronized (updateLock) {
+                update(List.of(event.getFilmId()), Map.of());
+            }
+        } else {
+            refresh(List.of(event.getFilmId()));
+        }
+    }
+
+    @EventListener
+    public void onFilmsImported(FilmsImportedEvent event) {
+        refresh(event.getFilmIds());
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        // лайки пользователя удалены каскадно, счётчики перечитываются только у фильмов, которые он лайкал
+        refresh(event.getLikedFilmIds());
+    }
+
+    /**
+     * Сравнивает индекс с текущим состоянием БД и возвращает описание найденных расхождений.
+     * Пустой список означает, что индекс согласован с таблицами FILMS, FILM_GENRES и счётчиками лайков.
+     */
+    public List<String> checkConsistency() {
+        Map<Long, Entry> expected = load(null);
+        Map<Long, NavigableSet<Entry>> expectedBuckets = new HashMap<>();
+        expected.values().forEach(entry -> addToBuckets(expectedBuckets, entry));
+        List<String> problems = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Entry entry : expected.values()) {
+                Entry indexed = entries.get(entry.filmId);
+                if (!entry.equals(indexed)) {
+                    problems.add(String.format("Film id = %d: expected %s, indexed %s", entry.filmId, entry, indexed));
+                }
+            }
+            for (Long filmId : entries.keySet()) {
+                if (!expected.containsKey(filmId)) {
+                    problems.add(String.format("Film id = %d is indexed but absent in db", filmId));
+                }
+            }
+            for (Map.Entry<Long, NavigableSet<Entry>> bucket : expectedBuckets.entrySet()) {
+                NavigableSet<Entry> indexed = buckets.getOrDefault(bucket.getKey(), Collections.emptyNavigableSet());
+                if (!new ArrayList<>(bucket.getValue()).equals(new ArrayList<>(indexed))) {
+                    problems.add(String.format("Bucket genre = %d, year = %d differs from db",
+                            bucket.getKey() >>> 32, bucket.getKey() & 0xFFFFFFFFL));
+                }
+            }
+            buckets.forEach((key, bucket) -> {
+                if (!bucket.isEmpty() && !expectedBuckets.containsKey(key)) {
+                    problems.add(String.format("Bucket genre = %d, year = %d is absent in db",
+                            key >>> 32, key & 0xFFFFFFFFL));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return problems;
+    }
+
+    /**
+     * Перечитывает записи фильмов из БД; фильмы, которых в БД нет, удаляются из индекса.
+     */
+    private void refresh(Collection<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return;
+        }
+        synchronized (updateLock) {
+            update(filmIds, load(filmIds));
+        }
+    }
+
+    private void update(Collection<Long> filmIds, Map<Long, Entry> loaded) {
+        lock.writeLock().lock();
+        try {
+            filmIds.forEach(filmId -> replace(entries.get(filmId), loaded.get(filmId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void replace(Entry oldEntry, Entry newEntry) {
+        if (oldEntry != null) {
+            removeFromBuckets(oldEntry);
+            entries.remove(oldEntry.filmId);
+        }
+        if (newEntry != null) {
+            addToBuckets(buckets, newEntry);
+            entries.put(newEntry.filmId, newEntry);
+        }
+    }
+
+    // filmIds == null - все фильмы
+    private Map<Long, Entry> load(Collection<Long> filmIds) {
+        String filter = filmIds == null ? "" : " F JOIN TABLE(ID BIGINT = ?) T ON F.FILM_ID = T.ID";
+        Object[] args = filmIds == null ? new Object[0] : new Object[]{filmIds.toArray(Long[]::new)};
+        Map<Long, List<Integer>> genres = new HashMap<>();
+        jdbcTemplate.query("SELECT FILM_ID, GENRE_ID FROM FILM_GENRES" + filter, rs -> {
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+        }, args);
+        Map<Long, Entry> loaded = new HashMap<>();
+        jdbcTemplate.query("SELECT FILM_ID, RELEASEDATE, LIKES_COUNT FROM FILMS" + filter, rs -> {
+            long id = rs.getLong("film_id");
+            int[] genreIds = genres.getOrDefault(id, Collections.emptyList()).stream()
+                    .mapToInt(Integer::intValue)
+                    .sorted()
+                    .toArray();
+            loaded.put(id, new Entry(id, rs.getDate("releasedate").toLocalDate().getYear(), genreIds,
+                    rs.getLong("likes_count")));
+        }, args);
+        return loaded;
+    }
+
+    private static void addToBuckets(Map<Long, NavigableSet<Entry>> buckets, Entry entry) {
+        for (long key : entry.bucketKeys()) {
+            buckets.computeIfAbsent(key, k -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+    }
+
+    private void removeFromBuckets(Entry entry) {
+        for (long key : entry.bucketKeys()) {
+            NavigableSet<Entry> bucket = buckets.get(key);
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    private static long bucketKey(int genreId, int year) {
+        return ((long) genreId << 32) | year;
+    }
+
+    private static final class Entry {
+        private final long filmId;
+        private final int year;
+        private final int[] genreIds;
+        private final long likes;
+
+        private Entry(long filmId, int year, int[] genreIds, long likes) {
+            this.filmId = filmId;
+            this.year = year;
+            this.genreIds = genreIds;
+            this.likes = likes;
+        }
+
+        private long[] bucketKeys() {
+            long[] keys = new long[2 + 2 * genreIds.length];
+            keys[0] = bucketKey(ANY, ANY);
+            keys[1] = bucketKey(ANY, year);
+            for (int i = 0; i < genreIds.length; i++) {
+                keys[2 + 2 * i] = bucketKey(genreIds[i], ANY);
+                keys[3 + 2 * i] = bucketKey(genreIds[i], year);
+            }
+            return keys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry entry = (Entry) o;
+            return filmId == entry.filmId && year == entry.year && likes == entry.likes
+                    && Arrays.equals(genreIds, entry.genreIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(filmId);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{year = %d, genres = %s, likes = %d}", year, Arrays.toString(genreIds), likes);
+        }
+    }
+}
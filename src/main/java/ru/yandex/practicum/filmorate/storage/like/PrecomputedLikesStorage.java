@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Хранилище лайков, которое отдаёт рекомендации из таблицы USER_RECOMMENDATIONS,
+ * заполняемой {@link RecommendationPrecomputer}. Если рекомендации пользователя ещё не посчитаны
+ * или устарели, их считает исходное хранилище, поэтому свои лайки пользователь видит сразу.
+ * Изменившиеся лайки помечают рекомендации пользователя устаревшими; без фонового расчёта
+ * эта обёртка не создаётся, и лайки отметок не пишут.
+ */
+public class PrecomputedLikesStorage implements LikesStorage {
+    private final LikesStorage likesStorage;
+    private final FilmStorage filmStorage;
+    private final RecommendationPrecomputer precomputer;
+
+    public PrecomputedLikesStorage(LikesStorage likesStorage, FilmStorage filmStorage,
+                                   RecommendationPrecomputer precomputer) {
+        this.likesStorage = likesStorage;
+        this.filmStorage = filmStorage;
+        this.precomputer = precomputer;
+    }
+
+    @Override
+    public void addLike(Long id, Long userId) {
+        likesStorage.addLike(id, userId);
+        precomputer.markDirty(List.of(userId));
+    }
+
+    @Override
+    public void removeLike(Long id, Long userId) {
+        likesStorage.removeLike(id, userId);
+        precomputer.markDirty(List.of(userId));
+    }
+
+    @Override
+    public List<LikeResult.Status> applyLikes(List<LikeOperation> operations) {
+        List<LikeResult.Status> statuses = likesStorage.applyLikes(operations);
+        Set<Long> changedUsers = new HashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            if (statuses.get(i) == LikeResult.Status.APPLIED) {
+                changedUsers.add(operations.get(i).getUserId());
+            }
+        }
+        precomputer.markDirty(changedUsers);
+        return statuses;
+    }
+
+    @Override
+    public List<Film> getPopular(int count, int genreId, int year) {
+        return likesStorage.getPopular(count, genreId, year);
+    }
+
+    @Override
+    public List<Film> getCommonFilms(Long userId, Long friendId) {
+        return likesStorage.getCommonFilms(userId, friendId);
+    }
+
+    @Override
+    public List<Film> getRecommendations(Long userId) {
+        Optional<List<Long>> precomputed = precomputer.find(userId);
+        if (precomputed.isEmpty()) {
+            return likesStorage.getRecommendations(userId);
+        }
+        return RecommendingLikesStorage.loadInOrder(filmStorage, precomputed.get());
+    }
+}
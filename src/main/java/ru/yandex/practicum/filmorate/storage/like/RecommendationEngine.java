@@ -0,0 +1,223 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.change.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikeChangedEvent;
+import ru.yandex.practicum.filmorate.change.LikesChangedEvent;
+import ru.yandex.practicum.filmorate.change.UserDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Рекомендации фильмов по матрице лайков пользователь x фильм в памяти (коллаборативная фильтрация).
+ * Пользователи и фильмы получают плотные int-номера, строка и столбец матрицы хранятся как BitSet.
+ * Для пользователя берутся k ближайших соседей по коэффициенту Жаккара среди тех, у кого есть хотя бы
+ * один общий лайк; каждый фильм соседа, который пользователь ещё не лайкнул, получает голос с весом,
+ * равным сходству. Матрица собирается из LIKES при старте и обновляется по событиям, без обращений к БД.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.recommender.enabled", havingValue = "true", matchIfMissing = true)
+public class RecommendationEngine {
+    // на небольшом числе кандидатов накладные расходы fork/join больше выигрыша
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int neighbours;
+    private final int limit;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Matrix matrix = new Matrix();
+
+    public RecommendationEngine(JdbcTemplate jdbcTemplate,
+                                @Value("${filmorate.recommender.neighbours:20}") int neighbours,
+                                @Value("${filmorate.recommender.limit:100}") int limit) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.neighbours = neighbours;
+        this.limit = limit;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        Matrix loaded = new Matrix();
+        jdbcTemplate.query("SELECT USER_ID, FILM_ID FROM LIKES", (RowCallbackHandler) rs ->
+                loaded.set(rs.getLong("user_id"), rs.getLong("film_id"), true));
+        lock.writeLock().lock();
+        try {
+            matrix = loaded;
+            log.info("Recommendation matrix built: {} users, {} films", loaded.userIds.size(),
+                    loaded.filmIds.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Id рекомендованных фильмов в порядке убывания веса (при равенстве - по возрастанию id).
+     * Пустой Optional означает, что у пользователя в матрице нет ни одного лайка и о нём ничего не известно.
+     */
+    public Optional<List<Long>> recommend(Long userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = matrix.userIndex.get(userId);
+            if (user == null) {
+                return Optional.empty();
+            }
+            BitSet liked = matrix.filmsByUser.get(user);
+            int[] candidates = candidates(user, liked);
+            double[] similarity = new double[candidates.length];
+            IntStream positions = IntStream.range(0, candidates.length);
+            if (candidates.length >= PARALLEL_THRESHOLD) {
+                positions = positions.parallel();
+            }
+            positions.forEach(i -> similarity[i] = jaccard(liked, matrix.filmsByUser.get(candidates[i])));
+
+            Map<Integer, Double> scores = new HashMap<>();
+            for (int neighbour : topNeighbours(candidates, similarity)) {
+                double weight = similarity[neighbour];
+                BitSet films = matrix.filmsByUser.get(candidates[neighbour]);
+                for (int film = films.nextSetBit(0); film >= 0; film = films.nextSetBit(film + 1)) {
+                    if (!liked.get(film)) {
+                        scores.merge(film, weight, Double::sum);
+                    }
+                }
+            }
+            return Optional.of(scores.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                            .thenComparingLong(entry -> matrix.filmIds.get(entry.getKey())))
+                    .limit(limit)
+                    .map(entry -> matrix.filmIds.get(entry.getKey()))
+                    .collect(Collectors.toList()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onLikeChanged(LikeChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            matrix.set(event.getUserId(), event.getFilmId(), event.isAdded());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onLikesChanged(LikesChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.getChanges().forEach(change -> matrix.set(change.getUserId(), change.getFilmId(), change.isAdded()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onFilmChanged(FilmChangedEvent event) {
+        if (!event.isDeleted()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer film = matrix.filmIndex.remove(event.getFilmId());
+            if (film != null) {
+                BitSet users = matrix.usersByFilm.get(film);
+                users.stream().forEach(user -> matrix.filmsByUser.get(user).clear(film));
+                users.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            Integer user = matrix.userIndex.remove(event.getUserId());
+            if (user != null) {
+                BitSet films = matrix.filmsByUser.get(user);
+                films.stream().forEach(film -> matrix.usersByFilm.get(film).clear(user));
+                films.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // пользователи, у которых есть хотя бы один общий с user лайк
+    private int[] candidates(int user, BitSet liked) {
+        BitSet candidates = new BitSet();
+        liked.stream().forEach(film -> candidates.or(matrix.usersByFilm.get(film)));
+        candidates.clear(user);
+        return candidates.stream().toArray();
+    }
+
+    // позиции k самых похожих кандидатов; при равном сходстве выигрывает меньший id пользователя
+    private List<Integer> topNeighbours(int[] candidates, double[] similarity) {
+        Comparator<Integer> worstFirst = Comparator.<Integer>comparingDouble(i -> similarity[i])
+                .thenComparing(Comparator.<Integer>comparingLong(i -> matrix.userIds.get(candidates[i])).reversed());
+        PriorityQueue<Integer> top = new PriorityQueue<>(worstFirst);
+        for (int i = 0; i < candidates.length; i++) {
+            top.add(i);
+            if (top.size() > neighbours) {
+                top.poll();
+            }
+        }
+        return new ArrayList<>(top);
+    }
+
+    private static double jaccard(BitSet a, BitSet b) {
+        int sizeA = a.cardinality();
+        int sizeB = b.cardinality();
+        BitSet smaller = sizeA <= sizeB ? a : b;
+        BitSet larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (int i = smaller.nextSetBit(0); i >= 0; i = smaller.nextSetBit(i + 1)) {
+            if (larger.get(i)) {
+                intersection++;
+            }
+        }
+        int union = sizeA + sizeB - intersection;
+        return union == 0 ? 0 : (double) intersection / union;
+    }
+
+    /**
+     * Номера удалённых пользователей и фильмов не переиспользуются, их строки и столбцы просто очищаются;
+     * место освобождается при следующей полной перестройке.
+     */
+    private static final class Matrix {
+        private final Map<Long, Integer> userIndex = new HashMap<>();
+        private final Map<Long, Integer> filmIndex = new HashMap<>();
+        private final List<Long> userIds = new ArrayList<>();
+        private final List<Long> filmIds = new ArrayList<>();
+        private final List<BitSet> filmsByUser = new ArrayList<>();
+        private final List<BitSet> usersByFilm = new ArrayList<>();
+
+        private void set(long userId, long filmId, boolean liked) {
+            int user = userIndex.computeIfAbsent(userId, id -> {
+                userIds.add(id);
+                filmsByUser.add(new BitSet());
+                return userIds.size() - 1;
+            });
+            int film = filmIndex.computeIfAbsent(filmId, id -> {
+                filmIds.add(id);
+                usersByFilm.add(new BitSet());
+                return filmIds.size() - 1;
+            });
+            filmsByUser.get(user).set(film, liked);
+            usersByFilm.get(film).set(user, liked);
+        }
+    }
+}
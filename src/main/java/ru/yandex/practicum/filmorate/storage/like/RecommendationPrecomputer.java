@@ -0,0 +1,278 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Фоновый расчёт рекомендаций в таблицу USER_RECOMMENDATIONS.
+ * Полный пересчёт всех пользователей выполняется по расписанию в отдельном ForkJoinPool:
+ * список пользователей делится пополам, пока в части не останется batch-size пользователей,
+ * и каждая такая пачка пишется в БД одной транзакцией.
+ * Между полными пересчётами небольшими пачками пересчитываются пользователи, чьи лайки изменились:
+ * их помечает {@link PrecomputedLikesStorage} в USER_RECOMMENDATION_STATE. Отметка снимается, только если
+ * версия не изменилась за время расчёта. Лайк меняет и рекомендации похожих пользователей,
+ * их обновит ближайший полный пересчёт.
+ * Считает рекомендации {@link RecommendationEngine}, если он включён, иначе SQL-реализация.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.recommender.precompute.enabled", havingValue = "true", matchIfMissing = true)
+public class RecommendationPrecomputer {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Function<Long, List<Long>> recommender;
+    private final int batchSize;
+    private final ForkJoinPool pool;
+
+    private final Counter fullUsers;
+    private final Counter dirtyUsers;
+    private final AtomicLong fullThroughput = new AtomicLong();
+    private final AtomicLong dirtyThroughput = new AtomicLong();
+    private final AtomicLong dirtyCount = new AtomicLong();
+    private final AtomicLong stalenessSeconds = new AtomicLong();
+
+    public RecommendationPrecomputer(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     @Qualifier("likesDbStorage") LikesStorage likesDbStorage,
+                                     ObjectProvider<RecommendationEngine> recommendationEngine,
+                                     @Value("${filmorate.recommender.precompute.batch-size:100}") int batchSize,
+                                     @Value("${filmorate.recommender.precompute.parallelism:0}") int parallelism,
+                                     MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        RecommendationEngine engine = recommendationEngine.getIfAvailable();
+        this.recommender = engine != null
+                ? userId -> engine.recommend(userId).orElse(List.of())
+                : userId -> likesDbStorage.getRecommendations(userId).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+        this.batchSize = batchSize;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+
+        fullUsers = Counter.builder("recommendations.precompute.users")
+                .tag("run", "full")
+                .register(meterRegistry);
+        dirtyUsers = Counter.builder("recommendations.precompute.users")
+                .tag("run", "dirty")
+                .register(meterRegistry);
+        Gauge.builder("recommendations.precompute.throughput", fullThroughput, AtomicLong::get)
+                .tag("run", "full")
+                .baseUnit("users/s")
+                .register(meterRegistry);
+        Gauge.builder("recommendations.precompute.throughput", dirtyThroughput, AtomicLong::get)
+                .tag("run", "dirty")
+                .baseUnit("users/s")
+                .register(meterRegistry);
+        Gauge.builder("recommendations.precompute.dirty", dirtyCount, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("recommendations.precompute.staleness", stalenessSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Заранее посчитанные рекомендации пользователя (id фильмов по порядку).
+     * Пустой Optional, если пользователь ещё не посчитан или его лайки изменились после расчёта.
+     */
+    public Optional<List<Long>> find(Long userId) {
+        List<Long> filmIds = new ArrayList<>();
+        boolean[] fresh = {false};
+        jdbcTemplate.query("SELECT R.FILM_ID FROM USER_RECOMMENDATION_STATE S " +
+                "LEFT JOIN USER_RECOMMENDATIONS R ON R.USER_ID = S.USER_ID " +
+                "WHERE S.USER_ID = ? AND NOT S.DIRTY AND S.COMPUTED_AT IS NOT NULL " +
+                "ORDER BY R.POSITION", (RowCallbackHandler) rs -> {
+            fresh[0] = true;
+            long filmId = rs.getLong("film_id");
+            if (!rs.wasNull()) {
+                filmIds.add(filmId);
+            }
+        }, userId);
+        return fresh[0] ? Optional.of(filmIds) : Optional.empty();
+    }
+
+    /**
+     * Помечает заранее посчитанные рекомендации пользователей устаревшими.
+     * Версия растёт при каждой отметке, чтобы фоновый пересчёт не снял отметку,
+     * поставленную уже после того, как он начал считать.
+     */
+    public void markDirty(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("MERGE INTO USER_RECOMMENDATION_STATE S " +
+                "USING TABLE(USER_ID BIGINT = ?) V ON S.USER_ID = V.USER_ID " +
+                "WHEN MATCHED THEN UPDATE SET DIRTY = TRUE, VERSION = S.VERSION + 1, " +
+                "CHANGED_AT = CURRENT_TIMESTAMP " +
+                "WHEN NOT MATCHED THEN INSERT (USER_ID, DIRTY, VERSION, CHANGED_AT) " +
+                "VALUES (V.USER_ID, TRUE, 1, CURRENT_TIMESTAMP)", (Object) userIds.toArray(Long[]::new));
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommender.precompute.full-initial-delay:PT1M}",
+            fixedDelayString = "${filmorate.recommender.precompute.full-interval:PT1H}")
+    public void recomputeAll() {
+        long[] userIds = jdbcTemplate.queryForList("SELECT USER_ID FROM USERS ORDER BY USER_ID", Long.class)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        long start = System.nanoTime();
+        pool.invoke(new RecomputeTask(userIds, 0, userIds.length));
+        fullUsers.increment(userIds.length);
+        fullThroughput.set(throughput(userIds.length, start));
+        log.info("Recommendations precomputed for {} users, {} users/s", userIds.length, fullThroughput.get());
+        updateStaleness();
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommender.precompute.dirty-interval:PT5S}",
+            fixedDelayString = "${filmorate.recommender.precompute.dirty-interval:PT5S}")
+    public void recomputeDirty() {
+        List<Long> userIds = jdbcTemplate.queryForList("SELECT USER_ID FROM USER_RECOMMENDATION_STATE " +
+                "WHERE DIRTY ORDER BY CHANGED_AT LIMIT ?", Long.class, batchSize);
+        if (!userIds.isEmpty()) {
+            long start = System.nanoTime();
+            recompute(userIds);
+            dirtyUsers.increment(userIds.size());
+            dirtyThroughput.set(throughput(userIds.size(), start));
+            log.debug("Recommendations recomputed for {} dirty users", userIds.size());
+        }
+        updateStaleness();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void recompute(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> versions = new HashMap<>();
+        jdbcTemplate.query("SELECT S.USER_ID, S.VERSION FROM TABLE(ID BIGINT = ?) T " +
+                        "JOIN USER_RECOMMENDATION_STATE S ON S.USER_ID = T.ID",
+                (RowCallbackHandler) rs -> versions.put(rs.getLong("user_id"), rs.getLong("version")),
+                (Object) userIds.toArray(Long[]::new));
+        Map<Long, List<Long>> recommendations = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            try {
+                recommendations.put(userId, recommender.apply(userId));
+            } catch (UserNotFoundException e) {
+                // пользователь удалён во время расчёта
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(recommendations, versions));
+        } catch (DataAccessException e) {
+            // отметку одновременно поставил LikesDbStorage; пользователи останутся грязными до следующего прохода
+            log.warn("Failed to store recommendations for users {}: {}", recommendations.keySet(), e.getMessage());
+        }
+    }
+
+    private void write(Map<Long, List<Long>> recommendations, Map<Long, Long> versions) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Long> userIds = new ArrayList<>(recommendations.keySet());
+        List<Object[]> states = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (Long userId : userIds) {
+            Long version = versions.get(userId);
+            if (version != null) {
+                states.add(new Object[]{now, userId, version});
+            } else {
+                inserts.add(new Object[]{now, userId});
+            }
+        }
+        Set<Long> stored = new HashSet<>();
+        int[] updated = jdbcTemplate.batchUpdate("UPDATE USER_RECOMMENDATION_STATE " +
+                "SET DIRTY = FALSE, COMPUTED_AT = ? WHERE USER_ID = ? AND VERSION = ?", states);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] > 0) {
+                stored.add((Long) states.get(i)[1]);
+            }
+        }
+        int[] inserted = jdbcTemplate.batchUpdate("INSERT INTO USER_RECOMMENDATION_STATE " +
+                "(USER_ID, DIRTY, VERSION, COMPUTED_AT) SELECT U.USER_ID, FALSE, 0, CAST(? AS TIMESTAMP) FROM USERS U " +
+                "WHERE U.USER_ID = ? AND NOT EXISTS " +
+                "(SELECT 1 FROM USER_RECOMMENDATION_STATE S WHERE S.USER_ID = U.USER_ID)", inserts);
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                stored.add((Long) inserts.get(i)[1]);
+            }
+        }
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (stored.contains(userId)) {
+                deletes.add(new Object[]{userId});
+                List<Long> filmIds = recommendations.get(userId);
+                for (int position = 0; position < filmIds.size(); position++) {
+                    rows.add(new Object[]{userId, position, filmIds.get(position)});
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM USER_RECOMMENDATIONS WHERE USER_ID = ?", deletes);
+        jdbcTemplate.batchUpdate("INSERT INTO USER_RECOMMENDATIONS (USER_ID, POSITION, FILM_ID) " +
+                "SELECT CAST(? AS BIGINT), CAST(? AS INT), FILM_ID FROM FILMS WHERE FILM_ID = ?", rows);
+    }
+
+    private void updateStaleness() {
+        jdbcTemplate.query("SELECT COUNT(*) AS DIRTY_COUNT, MIN(CHANGED_AT) AS OLDEST " +
+                "FROM USER_RECOMMENDATION_STATE WHERE DIRTY", (RowCallbackHandler) rs -> {
+            dirtyCount.set(rs.getLong("dirty_count"));
+            Timestamp oldest = rs.getTimestamp("oldest");
+            stalenessSeconds.set(oldest == null ? 0
+                    : Math.max(0, Duration.between(oldest.toInstant(), Instant.now()).getSeconds()));
+        });
+    }
+
+    private static long throughput(int users, long start) {
+        long nanos = Math.max(1, System.nanoTime() - start);
+        return users * 1_000_000_000L / nanos;
+    }
+
+    private final class RecomputeTask extends RecursiveAction {
+        private final long[] userIds;
+        private final int from;
+        private final int to;
+
+        private RecomputeTask(long[] userIds, int from, int to) {
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                recompute(Arrays.stream(userIds, from, to).boxed().collect(Collectors.toList()));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RecomputeTask(userIds, from, middle), new RecomputeTask(userIds, middle, to));
+        }
+    }
+}
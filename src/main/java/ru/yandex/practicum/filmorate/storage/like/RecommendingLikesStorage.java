@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище лайков, которое отвечает на запрос рекомендаций по {@link RecommendationEngine}.
+ * Порядок фильмов берётся из движка, сами фильмы - из хранилища фильмов.
+ * Пользователей без лайков и остальные запросы обслуживает исходное хранилище.
+ */
+public class RecommendingLikesStorage implements LikesStorage {
+    private final LikesStorage likesStorage;
+    private final FilmStorage filmStorage;
+    private final RecommendationEngine recommendationEngine;
+
+    public RecommendingLikesStorage(LikesStorage likesStorage, FilmStorage filmStorage,
+                                    RecommendationEngine recommendationEngine) {
+        this.likesStorage = likesStorage;
+        this.filmStorage = filmStorage;
+        this.recommendationEngine = recommendationEngine;
+    }
+
+    @Override
+    public void addLike(Long id, Long userId) {
+        likesStorage.addLike(id, userId);
+    }
+
+    @Override
+    public void removeLike(Long id, Long userId) {
+        likesStorage.removeLike(id, userId);
+    }
+
+    @Override
+    public List<LikeResult.Status> applyLikes(List<LikeOperation> operations) {
+        return likesStorage.applyLikes(operations);
+    }
+
+    @Override
+    public List<Film> getPopular(int count, int genreId, int year) {
+        return likesStorage.getPopular(count, genreId, year);
+    }
+
+    @Override
+    public List<Film> getCommonFilms(Long userId, Long friendId) {
+        return likesStorage.getCommonFilms(userId, friendId);
+    }
+
+    @Override
+    public List<Film> getRecommendations(Long userId) {
+        Optional<List<Long>> recommended = recommendationEngine.recommend(userId);
+        if (recommended.isEmpty()) {
+            // проверку существования пользователя выполняет исходное хранилище
+            return likesStorage.getRecommendations(userId);
+        }
+        return loadInOrder(filmStorage, recommended.get());
+    }
+
+    /**
+     * Фильмы с заданными id в том же порядке; пустые жанры заменяются на null, как в SQL-реализации.
+     */
+    static List<Film> loadInOrder(FilmStorage filmStorage, List<Long> filmIds) {
+        Map<Long, Film> films = filmStorage.getByIds(filmIds).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        List<Film> ordered = new ArrayList<>(films.size());
+        for (Long filmId : filmIds) {
+            Film film = films.get(filmId);
+            if (film != null) {
+                if (film.getGenres() != null && film.getGenres().isEmpty()) {
+                    film.setGenres(null);
+                }
+                ordered.add(film);
+            }
+        }
+        return ordered;
+    }
+}
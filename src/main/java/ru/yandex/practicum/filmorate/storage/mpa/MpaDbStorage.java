@@ -1,25 +1,26 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import java.util.List;
 
 @Component
 public class MpaDbStorage implements MpaStorage {
-    JdbcTemplate jdbcTemplate;
-    public MpaDbStorage(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    private final ReferenceDataRegistry referenceData;
+
+    public MpaDbStorage(ReferenceDataRegistry referenceData) {
+        this.referenceData = referenceData;
     }
 
     @Override
     public Mpa getMpa(int mpaId) {
-        String sql = "SELECT MPA_NAME FROM RATES_MPA WHERE MPA_ID = ?";
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet(sql, mpaId);
-        if (userRows.next()) {
-            return new Mpa(mpaId,
-                    userRows.getString("mpa_name"));
-        }
-        else return null;
+        return referenceData.getMpa(mpaId);
+    }
+
+    @Override
+    public List<Mpa> getAll() {
+        return referenceData.getAllMpa();
     }
 }
@@ -2,6 +2,10 @@ package ru.yandex.practicum.filmorate.storage.mpa;
 
 import ru.yandex.practicum.filmorate.model.Mpa;
 
+import java.util.List;
+
 public interface MpaStorage {
     Mpa getMpa(int mpaId);
+
+    List<Mpa> getAll();
 }
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.storage.reference;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Справочники RATES_MPA и GENRES, загруженные в память.
+ * Данные статичны (заполняются из data.sql), поэтому читаются один раз в неизменяемый снимок,
+ * где сущность лежит в массиве по своему id. Перечитать справочники можно через {@link #reload()}.
+ */
+@Slf4j
+@Component
+public class ReferenceDataRegistry {
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Snapshot snapshot;
+
+    public ReferenceDataRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void reload() {
+        List<Mpa> mpa = List.copyOf(jdbcTemplate.query("SELECT MPA_ID, MPA_NAME FROM RATES_MPA ORDER BY MPA_ID",
+                (rs, rowNum) -> new Mpa(rs.getInt("mpa_id"), rs.getString("mpa_name"))));
+        List<Genre> genres = List.copyOf(jdbcTemplate.query("SELECT GENRE_ID, GENRE FROM GENRES ORDER BY GENRE_ID",
+                (rs, rowNum) -> new Genre(rs.getInt("genre_id"), rs.getString("genre"))));
+        Mpa[] mpaById = new Mpa[mpa.isEmpty() ? 0 : mpa.get(mpa.size() - 1).getId() + 1];
+        mpa.forEach(rate -> mpaById[rate.getId()] = rate);
+        Genre[] genreById = new Genre[genres.isEmpty() ? 0 : genres.get(genres.size() - 1).getId() + 1];
+        genres.forEach(genre -> genreById[genre.getId()] = genre);
+        snapshot = new Snapshot(mpa, mpaById, genres, genreById);
+        log.info("Reference data loaded: {} mpa ratings, {} genres", mpa.size(), genres.size());
+    }
+
+    public List<Mpa> getAllMpa() {
+        return snapshot.mpa;
+    }
+
+    public Mpa getMpa(int id) {
+        Mpa[] mpaById = snapshot.mpaById;
+        return id >= 0 && id < mpaById.length ? mpaById[id] : null;
+    }
+
+    public List<Genre> getAllGenres() {
+        return snapshot.genres;
+    }
+
+    public Genre getGenre(int id) {
+        Genre[] genreById = snapshot.genreById;
+        return id >= 0 && id < genreById.length ? genreById[id] : null;
+    }
+
+    private static class Snapshot {
+        private final List<Mpa> mpa;
+        private final Mpa[] mpaById;
+        private final List<Genre> genres;
+        private final Genre[] genreById;
+
+        private Snapshot(List<Mpa> mpa, Mpa[] mpaById, List<Genre> genres, Genre[] genreById) {
+            this.mpa = mpa;
+            this.mpaById = mpaById;
+            this.genres = genres;
+            this.genreById = genreById;
+        }
+    }
+}
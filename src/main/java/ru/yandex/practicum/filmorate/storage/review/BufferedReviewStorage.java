@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import ru.yandex.practicum.filmorate.model.Review;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Хранилище отзывов, которое копит оценки в {@link ReviewVoteBuffer} и пишет их в БД пакетами.
+ * Полезность прочитанных отзывов учитывает ещё не записанные голоса; порядок страниц
+ * определяется полезностью в БД и отстаёт от неё не больше чем на интервал сброса.
+ */
+public class BufferedReviewStorage implements ReviewStorage {
+    private final ReviewStorage reviewStorage;
+    private final ReviewVoteBuffer voteBuffer;
+
+    public BufferedReviewStorage(ReviewStorage reviewStorage, ReviewVoteBuffer voteBuffer) {
+        this.reviewStorage = reviewStorage;
+        this.voteBuffer = voteBuffer;
+    }
+
+    @Override
+    public Collection<Review> getAll(Long filmId, Long count) {
+        return withPendingVotes(reviewStorage.getAll(filmId, count));
+    }
+
+    @Override
+    public List<Review> getPage(Long filmId, Long afterUseful, Long afterId, int limit) {
+        return withPendingVotes(reviewStorage.getPage(filmId, afterUseful, afterId, limit));
+    }
+
+    @Override
+    public Review add(Review review) {
+        return reviewStorage.add(review);
+    }
+
+    @Override
+    public Optional<Review> getById(Long reviewId) {
+        return reviewStorage.getById(reviewId).map(this::withPendingVotes);
+    }
+
+    @Override
+    public Optional<Review> getStoredById(Long reviewId) {
+        return reviewStorage.getStoredById(reviewId);
+    }
+
+    @Override
+    public Review update(Review review) {
+        return withPendingVotes(reviewStorage.update(review));
+    }
+
+    @Override
+    public Review deleteById(Long reviewId) {
+        return reviewStorage.deleteById(reviewId);
+    }
+
+    @Override
+    public void addLike(Long reviewId, Long userId) {
+        voteBuffer.like(reviewId, userId);
+    }
+
+    @Override
+    public void addDislike(Long reviewId, Long userId) {
+        voteBuffer.dislike(reviewId, userId);
+    }
+
+    @Override
+    public void deleteLike(Long reviewId, Long userId) {
+        voteBuffer.deleteLike(reviewId, userId);
+    }
+
+    @Override
+    public void deleteDislike(Long reviewId, Long userId) {
+        voteBuffer.deleteDislike(reviewId, userId);
+    }
+
+    @Override
+    public Long countUseful(Long reviewId) {
+        return reviewStorage.countUseful(reviewId) + voteBuffer.pendingDelta(reviewId);
+    }
+
+    @Override
+    public int reconcileUseful() {
+        return reviewStorage.reconcileUseful();
+    }
+
+    private <C extends Collection<Review>> C withPendingVotes(C reviews) {
+        reviews.forEach(this::withPendingVotes);
+        return reviews;
+    }
+
+    private Review withPendingVotes(Review review) {
+        review.setUseful(review.getUseful() + voteBuffer.pendingDelta(review.getReviewId()));
+        return review;
+    }
+}
@@ -2,20 +2,27 @@ package ru.yandex.practicum.filmorate.storage.review;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ReviewNotFoundException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
-import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.IntegrityViolations;
 
-import java.sql.Types;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
@@ -23,54 +30,74 @@ import java.util.Optional;
 public class ReviewDbStorage implements ReviewStorage {
 
     public static final String GET_REVIEW_BY_ID_QUERY_TEMPLATE = "SELECT * FROM REVIEWS WHERE review_id = ?";
-    public static final String UPDATE_USEFUL_IN_REVIEWS_QUERY_TEMPLATE = "UPDATE REVIEWS SET useful = ? " +
+    public static final String ADJUST_USEFUL_QUERY_TEMPLATE = "UPDATE REVIEWS SET useful = useful + ? " +
             "WHERE review_id = ?";
+    private static final String RATINGS_SUM_SUBQUERY = "(SELECT COALESCE(SUM(CASE WHEN RR.liked THEN 1 ELSE -1 END), 0) " +
+            "FROM REVIEW_RATINGS RR WHERE RR.review_id = R.review_id)";
 
     private final JdbcTemplate jdbcTemplate;
-    private final UserDbStorage userDbStorage;
-    private final FilmDbStorage filmDbStorage;
 
     @Override
     public Collection<Review> getAll(Long filmId, Long count) {
-        String getAllReviewsQuery;
-        Long[] args;
-        int[] argTypes;
-        if (filmId == null) {
-            getAllReviewsQuery = "SELECT * FROM REVIEWS ORDER BY useful DESC LIMIT ?";
-            args = new Long[]{count};
-            argTypes = new int[]{Types.BIGINT};
-        } else {
-            getAllReviewsQuery = "SELECT * FROM REVIEWS WHERE film_id = ? ORDER BY useful DESC LIMIT ?";
-            args = new Long[]{filmId, count};
-            argTypes = new int[]{Types.BIGINT, Types.BIGINT};
+        return getPage(filmId, null, null, count.intValue());
+    }
+
+    /**
+     * Страница отзывов по убыванию полезности, при равной полезности - по id.
+     * Курсор - полезность и id последнего отзыва предыдущей страницы; условие useful <= ?
+     * задаёт начало обхода индекса, поэтому стоимость страницы не зависит от её глубины.
+     * С фильтром по фильму сортировка начинается с film_id, иначе H2 не читает индекс по порядку.
+     */
+    @Override
+    public List<Review> getPage(Long filmId, Long afterUseful, Long afterId, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM REVIEWS WHERE TRUE");
+        List<Object> args = new ArrayList<>();
+        if (filmId != null) {
+            sql.append(" AND film_id = ?");
+            args.add(filmId);
         }
-        return jdbcTemplate.query(getAllReviewsQuery, args, argTypes, (rs, rowNum) -> new Review(
-                rs.getLong("review_id"),
-                rs.getString("content"),
-                rs.getBoolean("is_positive"),
-                rs.getLong("user_id"),
-                rs.getLong("film_id"),
-                rs.getLong("useful"))
-        );
+        if (afterId != null) {
+            sql.append(" AND useful <= ? AND (useful < ? OR review_id > ?)");
+            args.add(afterUseful);
+            args.add(afterUseful);
+            args.add(afterId);
+        }
+        sql.append(filmId != null ? " ORDER BY film_id, useful DESC, review_id" : " ORDER BY useful DESC, review_id");
+        sql.append(" LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), ReviewDbStorage::mapReview, args.toArray());
     }
 
+    /**
+     * Отзыв записывается без предварительных проверок: отсутствие пользователя или фильма
+     * определяется по нарушенному внешнему ключу REVIEWS.
+     */
     @Override
     public Review add(Review review) {
         review.setUseful(0L);
-        if (!userDbStorage.isUserExists(review.getUserId())) {
-            throw new UserNotFoundException(String.format("Attempt to create review by user with absent id = %d", review.getUserId()));
-        }
-        if (!filmDbStorage.isFilmExists(review.getFilmId())) {
-            throw new FilmNotFoundException(String.format("Attempt to create review to film with absent id = %d", review.getFilmId()));
-        }
         SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
                 .withTableName("REVIEWS")
                 .usingGeneratedKeyColumns("review_id");
-        review.setReviewId(simpleJdbcInsert.executeAndReturnKey(review.toMap()).longValue());
+        try {
+            review.setReviewId(simpleJdbcInsert.executeAndReturnKey(review.toMap()).longValue());
+        } catch (DataIntegrityViolationException e) {
+            if (IntegrityViolations.isForeignKey(e, "reviews_user_fk")) {
+                throw new UserNotFoundException(String.format("Attempt to create review by user with absent id = %d", review.getUserId()));
+            }
+            if (IntegrityViolations.isForeignKey(e, "reviews_film_fk")) {
+                throw new FilmNotFoundException(String.format("Attempt to create review to film with absent id = %d", review.getFilmId()));
+            }
+            throw e;
+        }
         log.info("New review added: {}", review);
         return review;
     }
 
+    @Override
+    public Optional<Review> getStoredById(Long reviewId) {
+        return getById(reviewId);
+    }
+
     @Override
     public Optional<Review> getById(Long reviewId) {
         SqlRowSet reviewRows = jdbcTemplate.queryForRowSet(GET_REVIEW_BY_ID_QUERY_TEMPLATE, reviewId);
@@ -89,75 +116,187 @@ public class ReviewDbStorage implements ReviewStorage {
         }
     }
 
+    /**
+     * Обновляет отзыв и за тот же запрос возвращает его строку после обновления.
+     */
     @Override
     public Review update(Review review) {
-        if (isReviewExists(review.getReviewId())) {
-            String updateReviewByIdQuery = "UPDATE REVIEWS SET content = ?, is_positive = ? WHERE review_id = ?";
-            jdbcTemplate.update(updateReviewByIdQuery,
-                    review.getContent(),
-                    review.getIsPositive(),
-                    review.getReviewId());
-            log.info("Review {} has been succesfully updated", review);
-            return review;
-        } else {
+        String updateReviewByIdQuery = "SELECT * FROM FINAL TABLE " +
+                "(UPDATE REVIEWS SET content = ?, is_positive = ? WHERE review_id = ?)";
+        List<Review> updated = jdbcTemplate.query(updateReviewByIdQuery, ReviewDbStorage::mapReview,
+                review.getContent(),
+                review.getIsPositive(),
+                review.getReviewId());
+        if (updated.isEmpty()) {
             throw new ReviewNotFoundException(String.format("Attempt to update review with " +
                     "absent id = %d", review.getReviewId()));
         }
+        log.info("Review {} has been succesfully updated", updated.get(0));
+        return updated.get(0);
     }
 
+    /**
+     * Удаляет отзыв и за тот же запрос возвращает удалённую строку.
+     */
     @Override
-    public void deleteById(Long reviewId) {
-        if (isReviewExists(reviewId)) {
-            String deleteReviewByIdQuery = "DELETE FROM REVIEWS WHERE review_id = ?";
-            jdbcTemplate.update(deleteReviewByIdQuery, reviewId);
-        } else {
+    public Review deleteById(Long reviewId) {
+        String deleteReviewByIdQuery = "SELECT * FROM OLD TABLE (DELETE FROM REVIEWS WHERE review_id = ?)";
+        List<Review> deleted = jdbcTemplate.query(deleteReviewByIdQuery, ReviewDbStorage::mapReview, reviewId);
+        if (deleted.isEmpty()) {
             throw new ReviewNotFoundException(String.format("Attempt to delete review with " +
                     "absent id = %d", reviewId));
         }
+        return deleted.get(0);
     }
 
     @Override
+    @Transactional
     public void addLike(Long reviewId, Long userId) {
-        deleteDislike(reviewId, userId);
-        String addLikeQuery = "INSERT INTO REVIEW_RATINGS (review_id, user_id, liked) VALUES (?,?,true)";
-        jdbcTemplate.update(addLikeQuery, reviewId, userId);
-        jdbcTemplate.update(UPDATE_USEFUL_IN_REVIEWS_QUERY_TEMPLATE, countUseful(reviewId), reviewId);
+        vote(reviewId, userId, true);
     }
 
     @Override
+    @Transactional
     public void addDislike(Long reviewId, Long userId) {
-        deleteLike(reviewId, userId);
-        String addDislikeQuery = "INSERT INTO REVIEW_RATINGS (review_id, user_id, liked) VALUES (?,?,false)";
-        jdbcTemplate.update(addDislikeQuery, reviewId, userId);
-        jdbcTemplate.update(UPDATE_USEFUL_IN_REVIEWS_QUERY_TEMPLATE, countUseful(reviewId), reviewId);
+        vote(reviewId, userId, false);
+    }
+
+    /**
+     * Записывает оценку пользователя и сдвигает полезность отзыва на разницу со старой оценкой:
+     * новая оценка даёт ±1, смена противоположной ±2, повтор той же ничего не меняет.
+     * Старая оценка читается из OLD TABLE того же MERGE, поэтому пересчёт по REVIEW_RATINGS не нужен.
+     */
+    private void vote(Long reviewId, Long userId, boolean liked) {
+        String voteQuery = "SELECT liked FROM OLD TABLE (MERGE INTO REVIEW_RATINGS R " +
+                "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BOOLEAN))) V(review_id, user_id, liked) " +
+                "ON R.review_id = V.review_id AND R.user_id = V.user_id " +
+                "WHEN MATCHED THEN UPDATE SET liked = V.liked " +
+                "WHEN NOT MATCHED THEN INSERT (review_id, user_id, liked) VALUES (V.review_id, V.user_id, V.liked))";
+        List<Boolean> previous;
+        try {
+            previous = jdbcTemplate.queryForList(voteQuery, Boolean.class, reviewId, userId, liked);
+        } catch (DataIntegrityViolationException e) {
+            if (IntegrityViolations.isForeignKey(e, "review_ratings_review_fk")) {
+                throw new ReviewNotFoundException(String.format("Attempt to rate review with absent id = %d", reviewId));
+            }
+            if (IntegrityViolations.isForeignKey(e, "review_ratings_user_fk")) {
+                throw new UserNotFoundException(String.format("Attempt to rate review by user with absent id = %d", userId));
+            }
+            throw e;
+        }
+        long delta;
+        if (previous.isEmpty()) {
+            delta = 1;
+        } else if (previous.get(0) != liked) {
+            delta = 2;
+        } else {
+            return;
+        }
+        adjustUseful(reviewId, liked ? delta : -delta);
     }
 
     @Override
+    @Transactional
     public void deleteLike(Long reviewId, Long userId) {
-        String deleteLikeQuery = "DELETE FROM REVIEW_RATINGS WHERE review_id = ? AND user_id = ? AND liked = true";
-        jdbcTemplate.update(deleteLikeQuery, reviewId, userId);
-        jdbcTemplate.update(UPDATE_USEFUL_IN_REVIEWS_QUERY_TEMPLATE, countUseful(reviewId), reviewId);
+        deleteRating(reviewId, userId, true);
     }
 
     @Override
+    @Transactional
     public void deleteDislike(Long reviewId, Long userId) {
-        String deleteDislikeQuery = "DELETE FROM REVIEW_RATINGS WHERE review_id = ? AND user_id = ? AND liked = false";
-        jdbcTemplate.update(deleteDislikeQuery, reviewId, userId);
-        jdbcTemplate.update(UPDATE_USEFUL_IN_REVIEWS_QUERY_TEMPLATE, countUseful(reviewId), reviewId);
+        deleteRating(reviewId, userId, false);
+    }
+
+    private void deleteRating(Long reviewId, Long userId, boolean liked) {
+        String deleteRatingQuery = "DELETE FROM REVIEW_RATINGS WHERE review_id = ? AND user_id = ? AND liked = ?";
+        if (jdbcTemplate.update(deleteRatingQuery, reviewId, userId, liked) > 0) {
+            adjustUseful(reviewId, liked ? -1 : 1);
+        }
+    }
+
+    private void adjustUseful(Long reviewId, long delta) {
+        jdbcTemplate.update(ADJUST_USEFUL_QUERY_TEMPLATE, delta, reviewId);
+    }
+
+    /**
+     * Текущая оценка пользователя: true - лайк, false - дизлайк, пустой Optional - оценки нет.
+     * Заодно проверяет, что отзыв и пользователь существуют; запрос только читает и строк не блокирует.
+     */
+    public Optional<Boolean> findRating(Long reviewId, Long userId) {
+        String findRatingQuery = "SELECT (SELECT COUNT(*) FROM REVIEWS WHERE review_id = ?) AS review_count, " +
+                "(SELECT COUNT(*) FROM USERS WHERE user_id = ?) AS user_count, " +
+                "(SELECT liked FROM REVIEW_RATINGS WHERE review_id = ? AND user_id = ?) AS liked";
+        SqlRowSet rows = jdbcTemplate.queryForRowSet(findRatingQuery, reviewId, userId, reviewId, userId);
+        rows.next();
+        if (rows.getInt("review_count") == 0) {
+            throw new ReviewNotFoundException(String.format("Attempt to rate review with absent id = %d", reviewId));
+        }
+        if (rows.getInt("user_count") == 0) {
+            throw new UserNotFoundException(String.format("Attempt to rate review by user with absent id = %d", userId));
+        }
+        boolean liked = rows.getBoolean("liked");
+        return rows.wasNull() ? Optional.empty() : Optional.of(liked);
+    }
+
+    /**
+     * Записывает накопленные оценки одной транзакцией: пакетный MERGE выставленных оценок,
+     * пакетный DELETE снятых и по одному сдвигу полезности на отзыв.
+     * Ключ оценки - список [review_id, user_id]; для снятой оценки передаётся её вклад в полезность,
+     * который не применяется, если строки уже нет.
+     */
+    @Transactional
+    public void applyVotes(Map<List<Long>, Boolean> ratings, Map<List<Long>, Long> removed,
+                           Map<Long, Long> usefulDeltas) {
+        List<Object[]> ratingArgs = ratings.entrySet().stream()
+                .map(rating -> new Object[]{rating.getKey().get(0), rating.getKey().get(1), rating.getValue()})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate("MERGE INTO REVIEW_RATINGS (review_id, user_id, liked) KEY (review_id, user_id) " +
+                "VALUES (?, ?, ?)", ratingArgs);
+        List<List<Long>> removedKeys = new ArrayList<>(removed.keySet());
+        List<Object[]> removedArgs = removedKeys.stream()
+                .map(key -> new Object[]{key.get(0), key.get(1)})
+                .collect(Collectors.toList());
+        int[] deleted = jdbcTemplate.batchUpdate("DELETE FROM REVIEW_RATINGS WHERE review_id = ? AND user_id = ?",
+                removedArgs);
+        Map<Long, Long> deltas = new HashMap<>(usefulDeltas);
+        for (int i = 0; i < deleted.length; i++) {
+            if (deleted[i] == 0) {
+                // оценку удалили вместе с пользователем, и её вклад уже вычтен из полезности
+                List<Long> key = removedKeys.get(i);
+                deltas.merge(key.get(0), removed.get(key), Long::sum);
+            }
+        }
+        List<Object[]> deltaArgs = deltas.entrySet().stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(ADJUST_USEFUL_QUERY_TEMPLATE, deltaArgs);
     }
 
     @Override
     public Long countUseful(Long reviewId) {
-        String countUsefulQuery = "SELECT (SELECT COUNT(review_id) FROM REVIEW_RATINGS WHERE review_id = ? AND liked = true) - " +
-                "(SELECT COUNT(review_id) FROM REVIEW_RATINGS WHERE review_id = ? AND liked = false) as count_useful";
-        SqlRowSet count = jdbcTemplate.queryForRowSet(countUsefulQuery, reviewId, reviewId);
-        count.next();
-        return count.getLong("count_useful");
+        String countUsefulQuery = "SELECT COALESCE(SUM(CASE WHEN liked THEN 1 ELSE -1 END), 0) " +
+                "FROM REVIEW_RATINGS WHERE review_id = ?";
+        return jdbcTemplate.queryForObject(countUsefulQuery, Long.class, reviewId);
     }
 
+    /**
+     * Сверяет полезность всех отзывов с REVIEW_RATINGS и исправляет разошедшиеся значения.
+     * Возвращает число исправленных отзывов.
+     */
     @Override
-    public boolean isReviewExists(Long id) {
-        SqlRowSet reviewRows = jdbcTemplate.queryForRowSet(GET_REVIEW_BY_ID_QUERY_TEMPLATE, id);
-        return reviewRows.first();
+    public int reconcileUseful() {
+        String reconcileQuery = "UPDATE REVIEWS R SET useful = " + RATINGS_SUM_SUBQUERY +
+                " WHERE useful IS DISTINCT FROM " + RATINGS_SUM_SUBQUERY;
+        return jdbcTemplate.update(reconcileQuery);
+    }
+
+    private static Review mapReview(ResultSet rs, int rowNum) throws SQLException {
+        return new Review(
+                rs.getLong("review_id"),
+                rs.getString("content"),
+                rs.getBoolean("is_positive"),
+                rs.getLong("user_id"),
+                rs.getLong("film_id"),
+                rs.getLong("useful"));
     }
 }
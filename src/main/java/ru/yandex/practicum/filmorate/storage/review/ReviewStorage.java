@@ -3,18 +3,31 @@ package ru.yandex.practicum.filmorate.storage.review;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ReviewStorage {
     Collection<Review> getAll(Long filmId, Long count);
 
+    /**
+     * Отзывы после курсора (полезность и id отзыва) в порядке убывания полезности, не больше limit.
+     * Без курсора - первая страница, без filmId - отзывы ко всем фильмам.
+     */
+    List<Review> getPage(Long filmId, Long afterUseful, Long afterId, int limit);
+
     Review add(Review review);
 
     Optional<Review> getById(Long reviewId);
 
+    /**
+     * Отзыв с полезностью в том виде, в каком она записана в БД и участвует в порядке страниц,
+     * без ещё не записанных голосов.
+     */
+    Optional<Review> getStoredById(Long reviewId);
+
     Review update(Review review);
 
-    void deleteById(Long reviewId);
+    Review deleteById(Long reviewId);
 
     void addLike(Long reviewId, Long userId);
 
@@ -26,5 +39,5 @@ public interface ReviewStorage {
 
     Long countUseful(Long reviewId);
 
-    boolean isReviewExists(Long id);
+    int reconcileUseful();
 }
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая сверка REVIEWS.useful с оценками в REVIEW_RATINGS.
+ * Голоса меняют полезность на дельту, поэтому ошибка в одном из путей записи накапливалась бы
+ * незаметно; сверка пересчитывает только разошедшиеся отзывы и считает их в метрике.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.review-useful.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class ReviewUsefulReconciler {
+    private final ReviewStorage reviewStorage;
+    private final Counter corrected;
+
+    public ReviewUsefulReconciler(ReviewStorage reviewStorage, MeterRegistry meterRegistry) {
+        this.reviewStorage = reviewStorage;
+        this.corrected = Counter.builder("reviews.useful.reconciled")
+                .description("Reviews whose usefulness differed from REVIEW_RATINGS")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.review-useful.reconcile.interval:PT1H}",
+            fixedDelayString = "${filmorate.review-useful.reconcile.interval:PT1H}")
+    public int reconcile() {
+        int fixed = reviewStorage.reconcileUseful();
+        corrected.increment(fixed);
+        if (fixed > 0) {
+            log.warn("Usefulness of {} reviews differed from their ratings and has been recomputed", fixed);
+        } else {
+            log.debug("Usefulness of all reviews matches their ratings");
+        }
+        return fixed;
+    }
+}
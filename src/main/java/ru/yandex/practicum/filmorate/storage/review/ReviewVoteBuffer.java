@@ -0,0 +1,365 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.change.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.exception.ReviewNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Отложенная запись оценок отзывов.
+ * Голос сравнивается с предыдущей оценкой пользователя (из буфера, а если её там нет - из REVIEW_RATINGS)
+ * под блокировкой полосы, которой принадлежит пара (отзыв, пользователь). Разница полезности
+ * прибавляется к LongAdder отзыва, а сама оценка кладётся в набор ожидающих, где побеждает последний голос пары.
+ * Раз в flush-interval накопленное записывается одной транзакцией: строка популярного отзыва
+ * блокируется один раз за сброс, а не на каждый голос. Если ожидающих голосов больше max-pending,
+ * голосующий поток сбрасывает буфер сам.
+ * Чтение отзывов прибавляет к полезности ещё не записанные дельты; в момент между коммитом сброса
+ * и сменой снимка дельта может кратко учитываться дважды.
+ * После удаления пользователя его голоса убираются из буфера вместе с их вкладом в полезность: удаление
+ * уже вычло из полезности его записанные оценки. Если сброс не удался не из-за удалённого отзыва
+ * или пользователя, снимок возвращается в буфер и запишется следующим сбросом.
+ * При остановке буфер записывается полностью, после остановки голоса пишутся в БД сразу.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.review-votes.enabled", havingValue = "true", matchIfMissing = true)
+public class ReviewVoteBuffer {
+    private static final int STRIPES = 64;
+
+    private final ReviewDbStorage reviewDbStorage;
+    private final Duration flushInterval;
+    private final int maxPending;
+    private final Duration shutdownTimeout;
+    private final Object[] stripes = new Object[STRIPES];
+    // голоса копятся в current; пока снимок пишется в БД, он лежит в flushing,
+    // чтобы его видели чтение отзывов и следующие голоса
+    private volatile Batch current = new Batch();
+    private volatile Batch flushing = new Batch();
+    // голос держит блокировку на чтение, смена снимка и остановка - на запись
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    private final Timer flushTimer;
+    private final Counter dropped;
+
+    public ReviewVoteBuffer(ReviewDbStorage reviewDbStorage,
+                            @Value("${filmorate.review-votes.flush-interval:100ms}") Duration flushInterval,
+                            @Value("${filmorate.review-votes.max-pending:100000}") int maxPending,
+                            @Value("${filmorate.review-votes.shutdown-timeout:30s}") Duration shutdownTimeout,
+                            MeterRegistry meterRegistry) {
+        this.reviewDbStorage = reviewDbStorage;
+        this.flushInterval = flushInterval;
+        this.maxPending = maxPending;
+        this.shutdownTimeout = shutdownTimeout;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "review-vote-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("reviews.votes.pending", this, buffer -> buffer.current.votes.size())
+                .register(meterRegistry);
+        flushTimer = Timer.builder("reviews.votes.flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        dropped = Counter.builder("reviews.votes.dropped")
+                .description("Buffered votes not written because the review or the user was deleted")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher.scheduleWithFixedDelay(this::scheduledFlush, flushInterval.toNanos(), flushInterval.toNanos(),
+                TimeUnit.NANOSECONDS);
+        log.info("Review vote buffer started: flush interval = {} ms", flushInterval.toMillis());
+    }
+
+    public void like(Long reviewId, Long userId) {
+        vote(reviewId, userId, Vote.LIKE, null);
+    }
+
+    public void dislike(Long reviewId, Long userId) {
+        vote(reviewId, userId, Vote.DISLIKE, null);
+    }
+
+    public void deleteLike(Long reviewId, Long userId) {
+        vote(reviewId, userId, Vote.NONE, Vote.LIKE);
+    }
+
+    public void deleteDislike(Long reviewId, Long userId) {
+        vote(reviewId, userId, Vote.NONE, Vote.DISLIKE);
+    }
+
+    /**
+     * Ещё не записанное в БД изменение полезности отзыва.
+     */
+    public long pendingDelta(Long reviewId) {
+        return current.delta(reviewId) + flushing.delta(reviewId);
+    }
+
+    /**
+     * Записывает в БД все накопленные голоса.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Batch batch;
+            lifecycle.writeLock().lock();
+            try {
+                batch = current;
+                if (batch.votes.isEmpty()) {
+                    return;
+                }
+                flushing = batch;
+                current = new Batch();
+            } finally {
+                lifecycle.writeLock().unlock();
+            }
+            long start = System.nanoTime();
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                requeue(batch);
+                throw e;
+            } finally {
+                flushing = new Batch();
+            }
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        // под flushLock снимок в записи пуст; сброс, успевший пройти до события, сам отбросит голоса
+        // удалённого пользователя
+        synchronized (flushLock) {
+            for (List<Long> key : current.votes.keySet()) {
+                if (key.get(1).equals(event.getUserId())) {
+                    synchronized (stripe(key)) {
+                        current.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        if (!flusher.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.error("Review vote flush did not finish within {}", shutdownTimeout);
+        }
+        synchronized (flushLock) {
+            lifecycle.writeLock().lock();
+            try {
+                if (!running) {
+                    return;
+                }
+                running = false;
+            } finally {
+                lifecycle.writeLock().unlock();
+            }
+            flush();
+        }
+        log.info("Review vote buffer stopped, all pending votes are written");
+    }
+
+    /**
+     * expected - оценка, которую голос снимает; если у пользователя другая оценка, голос ничего не меняет.
+     */
+    private void vote(Long reviewId, Long userId, Vote vote, Vote expected) {
+        List<Long> key = List.of(reviewId, userId);
+        boolean buffered;
+        lifecycle.readLock().lock();
+        try {
+            buffered = running;
+            if (buffered) {
+                synchronized (stripe(key)) {
+                    Vote previous = currentVote(key);
+                    if (previous == vote || expected != null && previous != expected) {
+                        return;
+                    }
+                    current.add(key, vote, previous);
+                }
+            }
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+        if (!buffered) {
+            // буфер остановлен: пишем сразу, но после последнего сброса, чтобы он не перезаписал этот голос
+            synchronized (flushLock) {
+                writeNow(key, vote, expected);
+            }
+        } else if (current.votes.size() >= maxPending) {
+            flush();
+        }
+    }
+
+    private Object stripe(List<Long> key) {
+        return stripes[Math.floorMod(key.hashCode(), STRIPES)];
+    }
+
+    private Vote currentVote(List<Long> key) {
+        Vote vote = current.votes.get(key);
+        if (vote == null) {
+            vote = flushing.votes.get(key);
+        }
+        if (vote == null) {
+            vote = reviewDbStorage.findRating(key.get(0), key.get(1))
+                    .map(liked -> liked ? Vote.LIKE : Vote.DISLIKE)
+                    .orElse(Vote.NONE);
+        }
+        return vote;
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush review votes", e);
+        }
+    }
+
+    private void write(Batch batch) {
+        Map<List<Long>, Boolean> ratings = new HashMap<>();
+        Map<List<Long>, Long> removed = new HashMap<>();
+        batch.votes.forEach((key, vote) -> {
+            if (vote == Vote.NONE) {
+                removed.put(key, (long) batch.before.get(key).useful);
+            } else {
+                ratings.put(key, vote == Vote.LIKE);
+            }
+        });
+        Map<Long, Long> deltas = new HashMap<>();
+        batch.deltas.forEach((reviewId, delta) -> {
+            if (delta.sum() != 0) {
+                deltas.put(reviewId, delta.sum());
+            }
+        });
+        try {
+            reviewDbStorage.applyVotes(ratings, removed, deltas);
+        } catch (DataIntegrityViolationException e) {
+            // отзыв или пользователь удалён, пока голос ждал записи:
+            // пишем голоса по одному, полезность при этом считается по REVIEW_RATINGS
+            log.warn("Failed to write {} review votes in one batch, retrying one by one: {}", batch.votes.size(),
+                    e.getMessage());
+            batch.votes.forEach((key, vote) -> writeOne(batch, key, vote));
+        }
+    }
+
+    // записанный голос убирается из снимка, чтобы при ошибке в буфер вернулись только незаписанные
+    private void writeOne(Batch batch, List<Long> key, Vote vote) {
+        try {
+            writeNow(key, vote, null);
+        } catch (ReviewNotFoundException | UserNotFoundException | DataIntegrityViolationException e) {
+            log.warn("Vote of user id = {} for review id = {} is dropped: {}", key.get(1), key.get(0), e.getMessage());
+            dropped.increment();
+        }
+        batch.remove(key);
+    }
+
+    /**
+     * Возвращает голоса неудавшегося сброса в текущий снимок. Более поздний голос пары остаётся,
+     * а вклад пары в полезность считается от оценки, которая была до неудавшегося снимка.
+     */
+    private void requeue(Batch batch) {
+        if (!running) {
+            log.error("{} review votes are dropped: the buffer is stopped", batch.votes.size());
+            dropped.increment(batch.votes.size());
+            return;
+        }
+        batch.votes.forEach((key, vote) -> {
+            synchronized (stripe(key)) {
+                Vote latest = current.votes.getOrDefault(key, vote);
+                current.remove(key);
+                current.add(key, latest, batch.before.get(key));
+            }
+        });
+    }
+
+    private void writeNow(List<Long> key, Vote vote, Vote expected) {
+        Long reviewId = key.get(0);
+        Long userId = key.get(1);
+        switch (vote) {
+            case LIKE:
+                reviewDbStorage.addLike(reviewId, userId);
+                break;
+            case DISLIKE:
+                reviewDbStorage.addDislike(reviewId, userId);
+                break;
+            default:
+                if (expected != Vote.DISLIKE) {
+                    reviewDbStorage.deleteLike(reviewId, userId);
+                }
+                if (expected != Vote.LIKE) {
+                    reviewDbStorage.deleteDislike(reviewId, userId);
+                }
+        }
+    }
+
+    private enum Vote {
+        LIKE(1), DISLIKE(-1), NONE(0);
+
+        private final int useful;
+
+        Vote(int useful) {
+            this.useful = useful;
+        }
+    }
+
+    private static final class Batch {
+        // ключ - [review_id, user_id], значение - последняя оценка пары
+        private final Map<List<Long>, Vote> votes = new ConcurrentHashMap<>();
+        // оценка пары до её первого голоса в снимке
+        private final Map<List<Long>, Vote> before = new ConcurrentHashMap<>();
+        private final Map<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+
+        private long delta(Long reviewId) {
+            LongAdder delta = deltas.get(reviewId);
+            return delta == null ? 0 : delta.sum();
+        }
+
+        private void add(List<Long> key, Vote vote, Vote previous) {
+            before.putIfAbsent(key, previous);
+            votes.put(key, vote);
+            deltas.computeIfAbsent(key.get(0), id -> new LongAdder()).add(vote.useful - previous.useful);
+        }
+
+        // убирает голос пары вместе с его вкладом в полезность
+        private void remove(List<Long> key) {
+            Vote vote = votes.remove(key);
+            Vote previous = before.remove(key);
+            if (vote != null) {
+                deltas.get(key.get(0)).add(previous.useful - vote.useful);
+            }
+        }
+    }
+}
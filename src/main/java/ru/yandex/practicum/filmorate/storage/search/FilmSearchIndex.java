@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.change.DirectorChangedEvent;
+import ru.yandex.practicum.filmorate.change.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.change.FilmsImportedEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый индекс по названиям фильмов и именам режиссёров, который заменяет LIKE '%query%' в БД.
+ * Собирается при старте и поддерживается по событиям об изменении фильмов и режиссёров.
+ * Возвращает id найденных фильмов по возрастанию.
+ * Строки из БД читаются до блокировки на запись, которая держится только на время правки индекса в памяти.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.search-index.enabled", havingValue = "true", matchIfMissing = true)
+public class FilmSearchIndex {
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // обновления идут по одному, чтобы прочитанные раньше строки не затёрли более новые
+    private final Object updateLock = new Object();
+    private final TextIndex titles = new TextIndex();
+    private final TextIndex directorNames = new TextIndex();
+    private final Map<Long, Set<Long>> filmsByDirector = new HashMap<>();
+    private final Map<Long, Set<Long>> directorsByFilm = new HashMap<>();
+
+    public FilmSearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        synchronized (updateLock) {
+            Map<Long, String> films = new HashMap<>();
+            jdbcTemplate.query("SELECT FILM_ID, NAME FROM FILMS",
+                    (RowCallbackHandler) rs -> films.put(rs.getLong("film_id"), rs.getString("name")));
+            Map<Long, String> directors = new HashMap<>();
+            jdbcTemplate.query("SELECT DIRECTOR_ID, DIRECTOR_NAME FROM DIRECTORS", (RowCallbackHandler) rs ->
+                    directors.put(rs.getLong("director_id"), rs.getString("director_name")));
+            List<long[]> links = queryLinks("SELECT FILM_ID, DIRECTOR_ID FROM FILM_DIRECTOR");
+            lock.writeLock().lock();
+            try {
+                titles.clear();
+                directorNames.clear();
+                filmsByDirector.clear();
+                directorsByFilm.clear();
+                films.forEach(titles::put);
+                directors.forEach(directorNames::put);
+                links.forEach(link -> link(link[0], link[1]));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Search index built for {} films and {} directors", films.size(), directors.size());
+        }
+    }
+
+    public Set<Long> searchByTitle(String query) {
+        lock.readLock().lock();
+        try {
+            return titles.search(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<Long> searchByDirector(String query) {
+        lock.readLock().lock();
+        try {
+            Set<Long> films = new TreeSet<>();
+            for (Long directorId : directorNames.search(query)) {
+                films.addAll(filmsByDirector.getOrDefault(directorId, Collections.emptySet()));
+            }
+            return films;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onFilmChanged(FilmChangedEvent event) {
+        long filmId = event.getFilmId();
+        synchronized (updateLock) {
+            List<String> names = event.isDeleted() ? List.of() : jdbcTemplate.queryForList(
+                    "SELECT NAME FROM FILMS WHERE FILM_ID = ?", String.class, filmId);
+            List<Long> directorIds = event.isDeleted() ? List.of() : jdbcTemplate.queryForList(
+                    "SELECT DIRECTOR_ID FROM FILM_DIRECTOR WHERE FILM_ID = ?", Long.class, filmId);
+            lock.writeLock().lock();
+            try {
+                titles.remove(filmId);
+                for (Long directorId : directorsByFilm.getOrDefault(filmId, Collections.emptySet())) {
+                    unlink(filmsByDirector, directorId, filmId);
+                }
+                directorsByFilm.remove(filmId);
+                names.forEach(name -> titles.put(filmId, name));
+                directorIds.forEach(directorId -> link(filmId, directorId));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @EventListener
+    public void onFilmsImported(FilmsImportedEvent event) {
+        Object ids = event.getFilmIds().toArray(Long[]::new);
+        synchronized (updateLock) {
+            Map<Long, String> films = new HashMap<>();
+            jdbcTemplate.query("SELECT F.FILM_ID, F.NAME FROM TABLE(ID BIGINT = ?) T JOIN FILMS F ON F.FILM_ID = T.ID",
+                    (RowCallbackHandler) rs -> films.put(rs.getLong("film_id"), rs.getString("name")), ids);
+            List<long[]> links = queryLinks("SELECT D.FILM_ID, D.DIRECTOR_ID FROM TABLE(ID BIGINT = ?) T " +
+                    "JOIN FILM_DIRECTOR D ON D.FILM_ID = T.ID", ids);
+            lock.writeLock().lock();
+            try {
+                films.forEach(titles::put);
+                links.forEach(link -> link(link[0], link[1]));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @EventListener
+    public void onDirectorChanged(DirectorChangedEvent event) {
+        long directorId = event.getDirectorId();
+        synchronized (updateLock) {
+            List<String> names = jdbcTemplate.queryForList(
+                    "SELECT DIRECTOR_NAME FROM DIRECTORS WHERE DIRECTOR_ID = ?", String.class, directorId);
+            lock.writeLock().lock();
+            try {
+                if (!names.isEmpty()) {
+                    directorNames.put(directorId, names.get(0));
+                    return;
+                }
+                // связи с фильмами удалены в БД каскадно вместе с режиссёром
+                directorNames.remove(directorId);
+                for (Long filmId : filmsByDirector.getOrDefault(directorId, Collections.emptySet())) {
+                    unlink(directorsByFilm, filmId, directorId);
+                }
+                filmsByDirector.remove(directorId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // пары [film_id, director_id]
+    private List<long[]> queryLinks(String sql, Object... args) {
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new long[]{rs.getLong("film_id"), rs.getLong("director_id")},
+                args);
+    }
+
+    private void link(long filmId, long directorId) {
+        filmsByDirector.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+        directorsByFilm.computeIfAbsent(filmId, id -> new HashSet<>()).add(directorId);
+    }
+
+    private static void unlink(Map<Long, Set<Long>> links, Long key, Long value) {
+        Set<Long> linked = links.get(key);
+        if (linked != null && linked.remove(value) && linked.isEmpty()) {
+            links.remove(key);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.storage.search;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Инвертированный индекс строк по триграммам и словам для поиска подстроки без учёта регистра.
+ * Запрос от трёх символов сужается пересечением списков его триграмм, короткий запрос без пробелов
+ * целиком лежит внутри одного слова и ищется по словарю слов. Кандидаты всегда проверяются
+ * на вхождение подстроки, поэтому результат совпадает с LOWER(text) LIKE LOWER('%query%').
+ * Класс не потокобезопасен, синхронизацию обеспечивает {@link FilmSearchIndex}.
+ */
+class TextIndex {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Map<Long, String> documents = new HashMap<>();
+    private final Map<String, Set<Long>> trigrams = new HashMap<>();
+    private final Map<String, Set<Long>> tokens = new HashMap<>();
+
+    void put(long id, String text) {
+        remove(id);
+        if (text == null) {
+            return;
+        }
+        String normalized = normalize(text);
+        documents.put(id, normalized);
+        trigramsOf(normalized).forEach(trigram -> trigrams.computeIfAbsent(trigram, t -> new HashSet<>()).add(id));
+        tokensOf(normalized).forEach(token -> tokens.computeIfAbsent(token, t -> new HashSet<>()).add(id));
+    }
+
+    void remove(long id) {
+        String normalized = documents.remove(id);
+        if (normalized == null) {
+            return;
+        }
+        trigramsOf(normalized).forEach(trigram -> unlink(trigrams, trigram, id));
+        tokensOf(normalized).forEach(token -> unlink(tokens, token, id));
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    void clear() {
+        documents.clear();
+        trigrams.clear();
+        tokens.clear();
+    }
+
+    /**
+     * Id всех строк, содержащих query без учёта регистра.
+     */
+    Set<Long> search(String query) {
+        String normalized = normalize(query);
+        Collection<Long> candidates;
+        if (normalized.length() >= 3) {
+            candidates = candidatesByTrigrams(normalized);
+        } else if (!normalized.isEmpty() && !WHITESPACE.matcher(normalized).find()) {
+            candidates = tokens.entrySet().stream()
+                    .filter(token -> token.getKey().contains(normalized))
+                    .flatMap(token -> token.getValue().stream())
+                    .collect(Collectors.toSet());
+        } else {
+            candidates = documents.keySet();
+        }
+        return candidates.stream()
+                .filter(id -> documents.get(id).contains(normalized))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private Collection<Long> candidatesByTrigrams(String normalized) {
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String trigram : trigramsOf(normalized)) {
+            Set<Long> posting = trigrams.get(trigram);
+            if (posting == null) {
+                return Collections.emptySet();
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<Long> candidates = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !candidates.isEmpty(); i++) {
+            candidates.retainAll(postings.get(i));
+        }
+        return candidates;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigramsOf(String normalized) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            result.add(normalized.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private static Set<String> tokensOf(String normalized) {
+        return WHITESPACE.splitAsStream(normalized)
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    private static void unlink(Map<String, Set<Long>> postings, String key, long id) {
+        Set<Long> posting = postings.get(key);
+        if (posting != null && posting.remove(id) && posting.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+}
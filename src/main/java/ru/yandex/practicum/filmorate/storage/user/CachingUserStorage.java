@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Кэширующая обёртка над хранилищем пользователей: getById читает через кэш,
+ * update и удаление сбрасывают запись. Наружу отдаются копии закэшированных пользователей.
+ */
+public class CachingUserStorage implements UserStorage {
+    private final UserStorage userStorage;
+    private final Cache<Long, User> cache;
+
+    public CachingUserStorage(UserStorage userStorage, Cache<Long, User> cache) {
+        this.userStorage = userStorage;
+        this.cache = cache;
+    }
+
+    @Override
+    public User add(User user) {
+        return userStorage.add(user);
+    }
+
+    @Override
+    public User update(User user) {
+        User updated = userStorage.update(user);
+        cache.invalidate(user.getId());
+        return updated;
+    }
+
+    @Override
+    public Collection<User> getAll() {
+        return userStorage.getAll();
+    }
+
+    @Override
+    public List<User> getPage(Long afterId, int limit) {
+        return userStorage.getPage(afterId, limit);
+    }
+
+    @Override
+    public User delete(User user) {
+        User deleted = userStorage.delete(user);
+        cache.invalidate(user.getId());
+        return deleted;
+    }
+
+    @Override
+    public List<Long> deleteById(Long userId) {
+        List<Long> likedFilmIds = userStorage.deleteById(userId);
+        cache.invalidate(userId);
+        return likedFilmIds;
+    }
+
+    @Override
+    public Optional<User> getById(Long id) {
+        return Optional.ofNullable(cache.get(id, key -> userStorage.getById(key).orElse(null)))
+                .map(User::new);
+    }
+
+    @Override
+    public List<User> getByIds(Collection<Long> ids) {
+        return cache.getAll(ids, missing -> {
+                    List<Long> missingIds = new ArrayList<>();
+                    missing.forEach(missingIds::add);
+                    return userStorage.getByIds(missingIds).stream()
+                            .collect(Collectors.toMap(User::getId, Function.identity()));
+                }).values().stream()
+                .map(User::new)
+                .collect(Collectors.toList());
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
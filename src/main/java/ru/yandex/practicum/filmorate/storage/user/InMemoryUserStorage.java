@@ -6,10 +6,8 @@ import ru.yandex.practicum.filmorate.exception.NotImplementedException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component("inMemoryUserStorage")
@@ -39,6 +37,15 @@ public class InMemoryUserStorage implements UserStorage {
         return users.values();
     }
 
+    @Override
+    public List<User> getPage(Long afterId, int limit) {
+        return users.values().stream()
+                .filter(user -> user.getId() > afterId)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public User delete(User user) {
         if (users.containsKey(user.getId())) return users.remove(user.getId());
@@ -47,7 +54,7 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public void deleteById(Long userId) {
+    public List<Long> deleteById(Long userId) {
         throw new NotImplementedException();
     }
 
@@ -55,4 +62,12 @@ public class InMemoryUserStorage implements UserStorage {
     public Optional<User> getById(Long id) {
         return Optional.of(users.get(id));
     }
+
+    @Override
+    public List<User> getByIds(Collection<Long> ids) {
+        return ids.stream()
+                .filter(users::containsKey)
+                .map(users::get)
+                .collect(Collectors.toList());
+    }
 }
@@ -5,11 +5,14 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotImplementedException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -33,22 +36,21 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User update(User user) {
-        if (isUserExists(user.getId())) {
-            String sqlQuery = "UPDATE USERS SET " +
-                    "email = ?, login = ?, name = ?, birthday = ? " +
-                    "WHERE user_id = ?";
-            jdbcTemplate.update(sqlQuery,
-                    user.getEmail(),
-                    user.getLogin(),
-                    user.getName(),
-                    user.getBirthday(),
-                    user.getId());
-            log.info("User {} has been successfully updated", user);
-            return user;
-        } else {
+        String sqlQuery = "UPDATE USERS SET " +
+                "email = ?, login = ?, name = ?, birthday = ? " +
+                "WHERE user_id = ?";
+        int updated = jdbcTemplate.update(sqlQuery,
+                user.getEmail(),
+                user.getLogin(),
+                user.getName(),
+                user.getBirthday(),
+                user.getId());
+        if (updated == 0) {
             throw new UserNotFoundException(String.format("Attempt to update user with " +
                     "absent id = %d", user.getId()));
         }
+        log.info("User {} has been successfully updated", user);
+        return user;
     }
 
     @Override
@@ -64,14 +66,37 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public void deleteById(Long userId) {
-        if (isUserExists(userId)) {
-            String sql = "DELETE FROM USERS WHERE user_id = ?";
-            jdbcTemplate.update(sql, userId);
-        } else {
+    public List<User> getPage(Long afterId, int limit) {
+        String sql = "SELECT * FROM USERS WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new User(
+                rs.getLong("user_id"),
+                rs.getString("email"),
+                rs.getString("login"),
+                rs.getString("name"),
+                rs.getDate("birthday").toLocalDate()),
+                afterId, limit
+        );
+    }
+
+    @Override
+    @Transactional
+    public List<Long> deleteById(Long userId) {
+        // лайки и оценки отзывов пользователя удалятся каскадно, счётчики фильмов и полезность
+        // отзывов поправляем заранее; если пользователя нет, обновления не затронут строк,
+        // а транзакция откатится по исключению
+        List<Long> likedFilmIds = jdbcTemplate.queryForList("SELECT film_id FROM LIKES WHERE user_id = ?",
+                Long.class, userId);
+        jdbcTemplate.update("UPDATE FILMS SET likes_count = likes_count - 1 " +
+                "WHERE film_id IN (SELECT film_id FROM LIKES WHERE user_id = ?)", userId);
+        jdbcTemplate.update("UPDATE REVIEWS R SET useful = useful - (SELECT CASE WHEN RR.liked THEN 1 ELSE -1 END " +
+                "FROM REVIEW_RATINGS RR WHERE RR.review_id = R.review_id AND RR.user_id = ?) " +
+                "WHERE review_id IN (SELECT review_id FROM REVIEW_RATINGS WHERE user_id = ?)", userId, userId);
+        String sql = "DELETE FROM USERS WHERE user_id = ?";
+        if (jdbcTemplate.update(sql, userId) == 0) {
             throw new UserNotFoundException(String.format("Attempt to delete user with " +
                     "absent id = %d", userId));
         }
+        return likedFilmIds;
     }
 
     @Override
@@ -92,6 +117,22 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    public List<User> getByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT U.* FROM TABLE(ID BIGINT = ?) T JOIN USERS U ON U.USER_ID = T.ID";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new User(
+                rs.getLong("user_id"),
+                rs.getString("email"),
+                rs.getString("login"),
+                rs.getString("name"),
+                rs.getDate("birthday").toLocalDate()),
+                (Object) ids.toArray(Long[]::new)
+        );
+    }
+
     public boolean isUserExists(Long id) {
         String sql = "SELECT * FROM USERS WHERE user_id = ?";
         SqlRowSet userRows = jdbcTemplate.queryForRowSet(sql, id);
@@ -99,6 +140,7 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public User delete(User user) {
         deleteById(user.getId());
         return user;
@@ -3,13 +3,17 @@ package ru.yandex.practicum.filmorate.storage.user;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserStorage {
     User add(User user);
     User update(User user);
     Collection<User> getAll();
+    List<User> getPage(Long afterId, int limit);
     User delete(User user);
-    void deleteById(Long userId);
+    // возвращает id фильмов, которые лайкал удалённый пользователь
+    List<Long> deleteById(Long userId);
     Optional<User> getById(Long id);
+    List<User> getByIds(Collection<Long> ids);
 }
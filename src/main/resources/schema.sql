@@ -1,5 +1,5 @@
 DROP TABLE IF EXISTS FILMS, FILM_GENRES, FRIENDSHIPS, LIKES, USERS, FILM_DIRECTOR, RATES_MPA, GENRES,
-    DIRECTORS, REVIEWS, REVIEW_RATINGS, EVENTS;
+    DIRECTORS, REVIEWS, REVIEW_RATINGS, EVENTS, USER_RECOMMENDATIONS, USER_RECOMMENDATION_STATE;
 
 CREATE TABLE IF NOT EXISTS RATES_MPA
 (
@@ -29,9 +29,12 @@ CREATE TABLE IF NOT EXISTS FILMS
     description varchar(200),
     releaseDate date,
     duration    int,
-    rate_id     int REFERENCES RATES_MPA (mpa_id)
+    rate_id     int REFERENCES RATES_MPA (mpa_id),
+    likes_count int NOT NULL DEFAULT 0
 );
 
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON FILMS (likes_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS FILM_GENRES
 (
     film_id  bigint REFERENCES FILMS (film_id) ON DELETE CASCADE,
@@ -39,19 +42,25 @@ CREATE TABLE IF NOT EXISTS FILM_GENRES
     CONSTRAINT film_genres_pk PRIMARY KEY (film_id, genre_id)
 );
 
+CREATE INDEX IF NOT EXISTS film_genres_genre_idx ON FILM_GENRES (genre_id, film_id);
+
 CREATE TABLE IF NOT EXISTS LIKES
 (
-    user_id bigint REFERENCES USERS (user_id) ON DELETE CASCADE,
-    film_id bigint REFERENCES FILMS (film_id) ON DELETE CASCADE,
-    CONSTRAINT likes_pk PRIMARY KEY (user_id, film_id)
+    user_id bigint,
+    film_id bigint,
+    CONSTRAINT likes_pk PRIMARY KEY (user_id, film_id),
+    CONSTRAINT likes_user_fk FOREIGN KEY (user_id) REFERENCES USERS (user_id) ON DELETE CASCADE,
+    CONSTRAINT likes_film_fk FOREIGN KEY (film_id) REFERENCES FILMS (film_id) ON DELETE CASCADE
 );
 
 CREATE TABLE IF NOT EXISTS FRIENDSHIPS
 (
-    user_id     bigint REFERENCES USERS (user_id) ON DELETE CASCADE,
-    friend_id   bigint REFERENCES USERS (user_id) ON DELETE CASCADE,
+    user_id     bigint,
+    friend_id   bigint,
     is_approved boolean,
-    CONSTRAINT friendships_pk PRIMARY KEY (user_id, friend_id)
+    CONSTRAINT friendships_pk PRIMARY KEY (user_id, friend_id),
+    CONSTRAINT friendships_user_fk FOREIGN KEY (user_id) REFERENCES USERS (user_id) ON DELETE CASCADE,
+    CONSTRAINT friendships_friend_fk FOREIGN KEY (friend_id) REFERENCES USERS (user_id) ON DELETE CASCADE
 );
 
 CREATE TABLE IF NOT EXISTS REVIEWS
@@ -59,17 +68,24 @@ CREATE TABLE IF NOT EXISTS REVIEWS
     review_id   bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     content     varchar(500),
     is_positive boolean,
-    user_id     bigint REFERENCES USERS (user_id) ON DELETE CASCADE,
-    film_id     bigint REFERENCES FILMS (film_id) ON DELETE CASCADE,
-    useful  bigint
+    user_id     bigint,
+    film_id     bigint,
+    useful  bigint DEFAULT 0 NOT NULL,
+    CONSTRAINT reviews_user_fk FOREIGN KEY (user_id) REFERENCES USERS (user_id) ON DELETE CASCADE,
+    CONSTRAINT reviews_film_fk FOREIGN KEY (film_id) REFERENCES FILMS (film_id) ON DELETE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS reviews_film_useful_idx ON REVIEWS (film_id, useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS reviews_useful_idx ON REVIEWS (useful DESC, review_id);
+
 CREATE TABLE IF NOT EXISTS REVIEW_RATINGS
 (
-    review_id bigint REFERENCES REVIEWS (review_id) ON DELETE CASCADE,
-    user_id bigint REFERENCES USERS (user_id) ON DELETE CASCADE,
-    liked boolean,
-    PRIMARY KEY (review_id, user_id, liked)
+    review_id bigint,
+    user_id bigint,
+    liked boolean NOT NULL,
+    PRIMARY KEY (review_id, user_id),
+    CONSTRAINT review_ratings_review_fk FOREIGN KEY (review_id) REFERENCES REVIEWS (review_id) ON DELETE CASCADE,
+    CONSTRAINT review_ratings_user_fk FOREIGN KEY (user_id) REFERENCES USERS (user_id) ON DELETE CASCADE
 );
 
 CREATE TABLE IF NOT EXISTS EVENTS
@@ -82,6 +98,8 @@ CREATE TABLE IF NOT EXISTS EVENTS
     entity_id  bigint
 );
 
+CREATE INDEX IF NOT EXISTS events_user_event_idx ON EVENTS (user_id, event_id DESC);
+
 CREATE TABLE IF NOT EXISTS DIRECTORS
 (
     director_id   bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -90,7 +108,29 @@ CREATE TABLE IF NOT EXISTS DIRECTORS
 
 CREATE TABLE IF NOT EXISTS FILM_DIRECTOR
 (
-    film_id     bigint REFERENCES FILMS (film_id) ON DELETE CASCADE,
-    director_id bigint REFERENCES DIRECTORS (director_id) ON DELETE CASCADE,
-    CONSTRAINT film_director_pk PRIMARY KEY (film_id, director_id)
-);
\ No newline at end of file
+    film_id     bigint,
+    director_id bigint,
+    CONSTRAINT film_director_pk PRIMARY KEY (film_id, director_id),
+    CONSTRAINT film_director_film_fk FOREIGN KEY (film_id) REFERENCES FILMS (film_id) ON DELETE CASCADE,
+    CONSTRAINT film_director_director_fk FOREIGN KEY (director_id) REFERENCES DIRECTORS (director_id)
+        ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS USER_RECOMMENDATIONS
+(
+    user_id  bigint REFERENCES USERS (user_id) ON DELETE CASCADE,
+    position int,
+    film_id  bigint REFERENCES FILMS (film_id) ON DELETE CASCADE,
+    CONSTRAINT user_recommendations_pk PRIMARY KEY (user_id, position)
+);
+
+CREATE TABLE IF NOT EXISTS USER_RECOMMENDATION_STATE
+(
+    user_id     bigint PRIMARY KEY REFERENCES USERS (user_id) ON DELETE CASCADE,
+    dirty       boolean NOT NULL,
+    version     bigint  NOT NULL,
+    changed_at  timestamp,
+    computed_at timestamp
+);
+
+CREATE INDEX IF NOT EXISTS user_recommendation_state_dirty_idx ON USER_RECOMMENDATION_STATE (dirty, changed_at);
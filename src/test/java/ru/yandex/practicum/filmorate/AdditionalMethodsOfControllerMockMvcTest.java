@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -30,11 +29,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @SpringBootTest
 @AutoConfigureMockMvc
 @AutoConfigureTestDatabase
-@RequiredArgsConstructor(onConstructor_ = @Autowired)
 @Sql(scripts = {"/schema.sql", "/data.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
 public class AdditionalMethodsOfControllerMockMvcTest {
-    private final MockMvc mockMvc;
-    private final ObjectMapper mapper;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper mapper;
 
     Director directorTemplate1 = new Director(null, "Quentin Tarantino");
 
@@ -204,4 +204,42 @@ public class AdditionalMethodsOfControllerMockMvcTest {
                 .andExpect(jsonPath("$[1].name").value("Film3"))
                 .andExpect(jsonPath("$[2].name").value("Film1"));
     }
+
+    @Test
+    public void shouldSearchByTitleAndDirectorOnceOrderedByLikes() throws Exception {
+        mockMvc.perform(post("/directors").content(mapper.writeValueAsString(new Director(null, "Crazy Director")))
+                .contentType(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+        Film both = new Film(null, "Crazy Film", "Description", LocalDate.of(2001, 1, 1), 100,
+                null, new Mpa(1, null), Set.of(new Director(1L, null)));
+        Film byTitle = new Film(null, "Crazy Title", "Description", LocalDate.of(2002, 1, 1), 100,
+                null, new Mpa(1, null));
+        Film byDirector = new Film(null, "Another Film", "Description", LocalDate.of(2003, 1, 1), 100,
+                null, new Mpa(1, null), Set.of(new Director(1L, null)));
+        Film other = new Film(null, "Other Film", "Description", LocalDate.of(2004, 1, 1), 100,
+                null, new Mpa(1, null));
+        for (Film film : new Film[]{both, byTitle, byDirector, other}) {
+            mockMvc.perform(post("/films").content(mapper.writeValueAsString(film))
+                    .contentType(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/users").content(mapper.writeValueAsString(new User(null, "mail@user1.ru", "user1",
+                "User1", LocalDate.of(1946, 8, 20)))).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/films/{id}/like/{userId}", 3, 1)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/search?query=crAzY&by=title,director"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(3)))
+                .andExpect(jsonPath("$[0].name").value("Another Film"))
+                .andExpect(jsonPath("$[1].name").value("Crazy Film"))
+                .andExpect(jsonPath("$[2].name").value("Crazy Title"));
+        mockMvc.perform(get("/films/search?query=crazy&by=director,title&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(2)))
+                .andExpect(jsonPath("$[1].name").value("Crazy Film"));
+        mockMvc.perform(get("/films/search?query=crazy&by=director"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(2)));
+        mockMvc.perform(get("/films/search?query=crazy&by=title&limit=0"))
+                .andExpect(status().isBadRequest());
+    }
 }
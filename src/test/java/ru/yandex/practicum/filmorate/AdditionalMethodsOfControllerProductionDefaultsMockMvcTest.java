@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * Режиссёры, их фильмы и поиск из AdditionalMethodsOfControllerMockMvcTest на настройках по умолчанию.
+ */
+@ProductionDefaults
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class AdditionalMethodsOfControllerProductionDefaultsMockMvcTest extends AdditionalMethodsOfControllerMockMvcTest {
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class ExportControllerMockMvcTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private FilmDbStorage filmDbStorage;
+    @Autowired
+    private UserDbStorage userDbStorage;
+    @Autowired
+    private LikesStorage likesStorage;
+    @Autowired
+    private FriendsStorage friendsStorage;
+
+    @BeforeEach
+    void clearTables() {
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM USERS");
+    }
+
+    @Test
+    void shouldExportFilmsUsersAndLikes() throws Exception {
+        Long userOne = userDbStorage.add(new User(null, "mail@mail.ru", "dolore", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+        Long userTwo = userDbStorage.add(new User(null, "mail@yandex.ru", "qwerty", "Nick Name",
+                LocalDate.of(1948, 7, 25))).getId();
+        Long filmOne = filmDbStorage.add(new Film(null, "Missi", "Great film",
+                LocalDate.of(2000, 2, 22), 200, Set.of(new Genre(1, null), new Genre(2, null)),
+                new Mpa(1, null))).getId();
+        Long filmTwo = filmDbStorage.add(new Film(null, "New film", "Film description",
+                LocalDate.of(2021, 2, 22), 200, null, new Mpa(3, null))).getId();
+        likesStorage.addLike(filmOne, userOne);
+        likesStorage.addLike(filmOne, userTwo);
+        likesStorage.addLike(filmTwo, userTwo);
+        friendsStorage.addFriend(userOne, userTwo);
+
+        List<JsonNode> films = export("/export/films.ndjson");
+        assertEquals(2, films.size());
+        assertEquals(filmOne, films.get(0).get("id").asLong());
+        assertEquals("G", films.get(0).get("mpa").get("name").asText());
+        assertEquals(2, films.get(0).get("genres").size());
+        assertEquals(2, films.get(0).get("likes").size());
+        assertEquals(filmTwo, films.get(1).get("id").asLong());
+        assertEquals(0, films.get(1).get("genres").size());
+        assertEquals(userTwo, films.get(1).get("likes").get(0).asLong());
+
+        List<JsonNode> users = export("/export/users.ndjson");
+        assertEquals(2, users.size());
+        assertEquals(userTwo, users.get(0).get("friends").get(0).asLong());
+        assertEquals(0, users.get(1).get("friends").size());
+
+        List<JsonNode> likes = export("/export/likes.ndjson");
+        assertEquals(3, likes.size());
+        assertEquals(filmOne, likes.get(0).get("filmId").asLong());
+        assertEquals(filmTwo, likes.get(2).get("filmId").asLong());
+    }
+
+    private List<JsonNode> export(String url) throws Exception {
+        MvcResult asyncResult = mockMvc.perform(get(url))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * Выгрузка из ExportControllerMockMvcTest при включённых по умолчанию кэшах.
+ */
+@ProductionDefaults
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ExportControllerProductionDefaultsMockMvcTest extends ExportControllerMockMvcTest {
+}
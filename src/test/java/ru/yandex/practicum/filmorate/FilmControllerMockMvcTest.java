@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -34,6 +35,8 @@ public class FilmControllerMockMvcTest {
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
+    @Value("${filmorate.films.batch.chunk-size}")
+    private int batchChunkSize;
 
     @BeforeEach
     void cleanDB() {
@@ -311,24 +314,144 @@ public class FilmControllerMockMvcTest {
                         .contentType(MediaType.APPLICATION_JSON)
         ).andExpect(status().isOk());
         mockMvc.perform(get("/films/search?query=mis&by=title")).andExpect(status().is2xxSuccessful());
-        List<Film> filmsSearch = controller.search("mis", "title");
+        List<Film> filmsSearch = controller.search("mis", "title", null);
         assertEquals("Missi", filmsSearch.get(0).getName());
         mockMvc.perform(get("/films/search?query=fil&by=title")).andExpect(status().is2xxSuccessful());
-        filmsSearch = controller.search("fil", "title");
+        filmsSearch = controller.search("fil", "title", null);
         assertEquals("New film", filmsSearch.get(0).getName());
         mockMvc.perform(get("/films/search?query=ire&by=director")).andExpect(status().is2xxSuccessful());
-        filmsSearch = controller.search("ire", "director");
+        filmsSearch = controller.search("ire", "director", null);
         assertEquals("Missi", filmsSearch.get(0).getName());
         mockMvc.perform(get("/films/search?query=pda&by=director")).andExpect(status().is2xxSuccessful());
-        filmsSearch = controller.search("pda", "director");
+        filmsSearch = controller.search("pda", "director", null);
         assertEquals("New film", filmsSearch.get(0).getName());
         mockMvc.perform(get("/films/search?query=ate&by=director,title")).andExpect(status().is2xxSuccessful());
-        filmsSearch = controller.search("ate", "director,title");
+        filmsSearch = controller.search("ate", "director,title", null);
         assertEquals("New film", filmsSearch.get(0).getName());
         mockMvc.perform(get("/films/search")).andExpect(status().is2xxSuccessful());
-        filmsSearch = controller.search(null, null);
+        filmsSearch = controller.search(null, null, null);
         assertEquals(2, filmsSearch.size());
     }
 
+    @Test
+    void shouldAddFilmsInBatch() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            films.add(new Film(null, "Film " + i, "Description", LocalDate.of(2000 + i, 1, 1), 100,
+                    new TreeSet<>(Set.of(new Genre(i + 1, null))), new Mpa(1, null)));
+        }
+        String ids = mockMvc.perform(
+                post("/films/batch")
+                        .content(objectMapper.writeValueAsString(films))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        assertEquals("[1,2,3]", ids);
+        assertEquals("Film 1", controller.getFilm(2L).getName());
+        assertEquals(Set.of(new Genre(2, "Драма")), controller.getFilm(2L).getGenres());
+        assertEquals(3, controller.popularFilms(10, -1, -1).size());
+
+        films.get(1).setName("");
+        mockMvc.perform(
+                post("/films/batch")
+                        .content(objectMapper.writeValueAsString(films))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isBadRequest());
+        films.get(1).setName("Film 1");
+        films.get(2).setDirectors(Set.of(new Director(1_000_000L, null)));
+        mockMvc.perform(
+                post("/films/batch")
+                        .content(objectMapper.writeValueAsString(films))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isNotFound());
+        mockMvc.perform(
+                post("/films/batch")
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isBadRequest());
+        assertEquals(3, controller.findAll(null, null).getBody().size());
+    }
+
+    @Test
+    void shouldReportAbsentDirectorsOfBatchBeyondArrayParameterLimit() throws Exception {
+        Set<Director> directors = new TreeSet<>();
+        for (long id = 1; id <= 70_000; id++) {
+            directors.add(new Director(id, null));
+        }
+        Film film = new Film(null, "Film", "Description", LocalDate.of(2000, 1, 1), 100,
+                new TreeSet<>(), new Mpa(1, null), directors);
+        mockMvc.perform(
+                post("/films/batch")
+                        .content(objectMapper.writeValueAsString(List.of(film)))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isNotFound());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FILMS", Integer.class));
+    }
+
+    @Test
+    void shouldNotAddAnyFilmOfBatchWhenSecondChunkFails() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i <= batchChunkSize; i++) {
+            films.add(new Film(null, "Film " + i, "Description", LocalDate.of(2000, 1, 1), 100,
+                    new TreeSet<>(), new Mpa(1, null)));
+        }
+        Film firstOfSecondChunk = films.get(batchChunkSize);
+
+        firstOfSecondChunk.setMpa(new Mpa(100, null));
+        mockMvc.perform(
+                post("/films/batch")
+                        .content(objectMapper.writeValueAsString(films))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isNotFound());
+        firstOfSecondChunk.setMpa(new Mpa(1, null));
+        firstOfSecondChunk.setGenres(new TreeSet<>(Set.of(new Genre(100, null))));
+        mockMvc.perform(
+                post("/films/batch")
+                        .content(objectMapper.writeValueAsString(films))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isNotFound());
+        firstOfSecondChunk.setGenres(new TreeSet<>());
+        // имя длиннее столбца FILMS.name проходит проверки и падает только при вставке второй части
+        firstOfSecondChunk.setName("x".repeat(51));
+        mockMvc.perform(
+                post("/films/batch")
+                        .content(objectMapper.writeValueAsString(films))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().is5xxServerError());
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FILMS", Integer.class));
+    }
 
+    @Test
+    void shouldApplyLikesInBatch() throws Exception {
+        controller.create(new Film(null, "Film", "Description", LocalDate.of(2000, 1, 1), 100,
+                new TreeSet<>(), new Mpa(1, null)));
+        String user = mockMvc.perform(
+                post("/users")
+                        .content(objectMapper.writeValueAsString(new User(null, "mail@mail.ru", "batch",
+                                "Nick Name", LocalDate.of(1946, 8, 20))))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        Long userId = objectMapper.readValue(user, User.class).getId();
+        List<LikeOperation> operations = List.of(
+                new LikeOperation(userId, 1L, OperationType.ADD),
+                new LikeOperation(userId, 1_000_000L, OperationType.ADD));
+        String results = mockMvc.perform(
+                post("/films/likes/batch")
+                        .content(objectMapper.writeValueAsString(operations))
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        assertEquals(List.of(
+                new LikeResult(userId, 1L, OperationType.ADD, LikeResult.Status.APPLIED),
+                new LikeResult(userId, 1_000_000L, OperationType.ADD, LikeResult.Status.FILM_NOT_FOUND)),
+                List.of(objectMapper.readValue(results, LikeResult[].class)));
+        assertEquals(1L, controller.getFilm(1L).getRating());
+
+        mockMvc.perform(
+                post("/films/likes/batch")
+                        .content("[{\"userId\": " + userId + ", \"filmId\": 1, \"operation\": \"UPDATE\"}]")
+                        .contentType(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isBadRequest());
+    }
 }
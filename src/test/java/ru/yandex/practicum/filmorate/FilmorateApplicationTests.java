@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.yandex.practicum.filmorate.exception.DirectorNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.*;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.ReviewService;
@@ -144,6 +145,31 @@ class FilmorateApplicationTests {
 				.hasFieldOrPropertyWithValue("entityId", idTwo);
 	}
 
+	@Test
+	public void testFindSharedFriends() {
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			ids.add(userDbStorage.add(new User(null, "mail@mail.ru", "user" + i, "Nick Name",
+					LocalDate.of(1946, 8, 20))).getId());
+		}
+		userService.addFriend(ids.get(0), ids.get(2));
+		userService.addFriend(ids.get(0), ids.get(3));
+		userService.addFriend(ids.get(0), ids.get(4));
+		userService.addFriend(ids.get(1), ids.get(4));
+		userService.addFriend(ids.get(1), ids.get(2));
+		userService.addFriend(ids.get(2), ids.get(3));
+
+		List<Long> shared = new ArrayList<>();
+		userService.findSharedFriends(ids.get(0), ids.get(1)).forEach(user -> shared.add(user.getId()));
+		assertThat(shared).isEqualTo(List.of(ids.get(2), ids.get(4)));
+		shared.clear();
+		userService.findSharedFriends(ids.get(1), ids.get(0)).forEach(user -> shared.add(user.getId()));
+		assertThat(shared).isEqualTo(List.of(ids.get(2), ids.get(4)));
+		assertThat(userService.findSharedFriends(ids.get(0), ids.get(3)).size()).isEqualTo(0);
+		Throwable thrown = catchThrowable(() -> userService.findSharedFriends(ids.get(0), -1L));
+		assertThat(thrown).isInstanceOf(UserNotFoundException.class);
+	}
+
 	@Test
 	public void testAddEventWhenUserDeleteFriend() {
 		User userOne = new User(null, "mail@mail.ru", "dolore", "Nick Name",
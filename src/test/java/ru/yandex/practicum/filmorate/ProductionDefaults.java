@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Поднимает приложение с настройками по умолчанию, как в проде: всё, что выключает профиль nocache
+ * из тестовой конфигурации, включено обратно.
+ * Наследники MockMvc-тестов, которые чистят таблицы через JdbcTemplate, добавляют
+ * {@code @DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)}: каждый тест начинает с новой базой и пустыми кэшами.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@SpringBootTest(properties = {
+        "filmorate.cache.enabled=true",
+        "filmorate.popularity-index.enabled=true",
+        "filmorate.search-index.enabled=true",
+        "filmorate.recommender.enabled=true",
+        "filmorate.recommender.precompute.enabled=true",
+        "filmorate.liked-films.enabled=true",
+        "filmorate.friend-graph.enabled=true",
+        "filmorate.event-writer.enabled=true",
+        "filmorate.review-votes.enabled=true"})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public @interface ProductionDefaults {
+}
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Сквозной сценарий по всем контроллерам с настройками по умолчанию (см. {@link ProductionDefaults}):
+ * все данные проходят только через контроллеры, мимо кэшей ничего не пишется.
+ */
+@ProductionDefaults
+@DirtiesContext
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ProductionDefaultsSmokeTest {
+    private final MockMvc mockMvc;
+    private final ObjectMapper mapper;
+
+    @Test
+    public void shouldServeControllerFlowsWithAllFeaturesEnabled() throws Exception {
+        long user1 = create("/users", new User(null, "first@mail.ru", "first", "First", LocalDate.of(1990, 1, 1)));
+        long user2 = create("/users", new User(null, "second@mail.ru", "second", "Second", LocalDate.of(1991, 1, 1)));
+        long user3 = create("/users", new User(null, "third@mail.ru", "third", "Third", LocalDate.of(1992, 1, 1)));
+        long directorId = create("/directors", new Director(null, "Quentin Tarantino"));
+        Set<Director> directors = Set.of(new Director(directorId, null));
+        long film1 = create("/films", new Film(null, "Pulp Fiction", "Crime", LocalDate.of(1994, 5, 21), 154,
+                Set.of(new Genre(1, null)), new Mpa(4, null), directors));
+        long film2 = create("/films", new Film(null, "Jackie Brown", "Crime", LocalDate.of(1997, 12, 8), 154,
+                Set.of(new Genre(1, null)), new Mpa(4, null), directors));
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", film1, user1)).andExpect(status().isOk());
+        mockMvc.perform(put("/films/{id}/like/{userId}", film2, user1)).andExpect(status().isOk());
+        mockMvc.perform(put("/films/{id}/like/{userId}", film1, user2)).andExpect(status().isOk());
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", user1, user2)).andExpect(status().isOk());
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", user2, user3)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/{id}", film1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.directors[0].name").value("Quentin Tarantino"));
+        mockMvc.perform(get("/films/popular"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(film1));
+        mockMvc.perform(get("/films/search").param("query", "tarantino").param("by", "director,title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", hasItems((int) film1, (int) film2)));
+        mockMvc.perform(get("/films/director/{directorId}", directorId).param("sortBy", "likes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(film1));
+        mockMvc.perform(get("/films/common").param("userId", String.valueOf(user1))
+                        .param("friendId", String.valueOf(user2)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(film1));
+        mockMvc.perform(get("/users/{id}/recommendations", user2))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(film2));
+        mockMvc.perform(get("/users/{id}/friends", user1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(user2));
+        mockMvc.perform(get("/users/{id}/friends/suggestions", user1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(user3));
+
+        long reviewId = create("/reviews", new Review(null, "Great", true, user3, film1, null));
+        mockMvc.perform(put("/reviews/{id}/like/{userId}", reviewId, user1)).andExpect(status().isOk());
+        mockMvc.perform(put("/reviews/{id}/dislike/{userId}", reviewId, user2)).andExpect(status().isOk());
+        mockMvc.perform(put("/reviews/{id}/like/{userId}", reviewId, user2)).andExpect(status().isOk());
+        mockMvc.perform(get("/reviews/{id}", reviewId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(2));
+        mockMvc.perform(get("/reviews").param("filmId", String.valueOf(film1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].useful").value(2));
+
+        mockMvc.perform(get("/users/{id}/feed", user1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[*].eventType", hasItems("LIKE", "FRIEND")));
+
+        mockMvc.perform(delete("/users/{id}", user2)).andExpect(status().isOk());
+        mockMvc.perform(get("/films/{id}", film1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rating").value(1));
+        mockMvc.perform(get("/films/common").param("userId", String.valueOf(user1))
+                        .param("friendId", String.valueOf(user3)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+        mockMvc.perform(get("/reviews/{id}", reviewId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.useful").value(1));
+        mockMvc.perform(get("/export/films.ndjson")).andExpect(status().isOk());
+    }
+
+    private long create(String path, Object body) throws Exception {
+        String response = mockMvc.perform(post(path)
+                        .content(mapper.writeValueAsString(body))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode created = mapper.readTree(response);
+        return created.has("id") ? created.get("id").asLong() : created.get("reviewId").asLong();
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.controller.UserController;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
@@ -19,7 +20,9 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -144,6 +147,39 @@ public class UserControllerMockMvcTest {
         ).andExpect(status().isBadRequest());
     }
 
+    @Test
+    void shouldWalkUsersByCursor() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            User user = new User(null, "mail" + i + "@mail.ru", "login" + i, "Name" + i,
+                    LocalDate.of(1946, 8, 20));
+            mockMvc.perform(
+                    post("/users")
+                            .content(objectMapper.writeValueAsString(user))
+                            .contentType(MediaType.APPLICATION_JSON)
+            ).andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/users?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$.*", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(1));
+        mockMvc.perform(get("/users?after=2&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "4"))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(4));
+        mockMvc.perform(get("/users?after=4&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$.*", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(5));
+        mockMvc.perform(get("/users?limit=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(5)));
+    }
+
     @Test
     void testFeed() throws Exception {
         User userOne = new User(null, "mail@mail.ru", "dolore", "Nick Name",
@@ -172,6 +208,132 @@ public class UserControllerMockMvcTest {
                 .andExpect(jsonPath("$[0].entityId").value("2"));
     }
 
+    @Test
+    void shouldWalkFeedByCursor() throws Exception {
+        for (int i = 1; i <= 2; i++) {
+            mockMvc.perform(
+                    post("/users")
+                            .content(objectMapper.writeValueAsString(new User(null, "mail@mail.ru",
+                                    "user" + i, "Nick Name", LocalDate.of(1946, 8, 20))))
+                            .contentType(MediaType.APPLICATION_JSON)
+            ).andExpect(status().isOk());
+        }
+        for (int i = 1; i <= 3; i++) {
+            Film film = new Film(null, "Film " + i, "Description", LocalDate.of(2000, 1, 1), 100,
+                    null, new Mpa(1, null));
+            mockMvc.perform(
+                    post("/films")
+                            .content(objectMapper.writeValueAsString(film))
+                            .contentType(MediaType.APPLICATION_JSON)
+            ).andExpect(status().isOk());
+        }
+        mockMvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/3/like/1")).andExpect(status().isOk());
+
+        String cursor = mockMvc.perform(get("/users/1/feed?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(2)))
+                .andExpect(jsonPath("$[0].entityId").value(3))
+                .andExpect(jsonPath("$[1].entityId").value(2))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+        mockMvc.perform(get("/users/1/feed?limit=2&before=" + cursor))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$.*", hasSize(2)))
+                .andExpect(jsonPath("$[0].eventType").value("FRIEND"))
+                .andExpect(jsonPath("$[1].entityId").value(1));
+        mockMvc.perform(get("/users/1/feed?types=like"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(3)))
+                .andExpect(jsonPath("$[*].eventType", everyItem(is("LIKE"))));
+        mockMvc.perform(get("/users/1/feed?types=FRIEND,REVIEW&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$.*", hasSize(1)))
+                .andExpect(jsonPath("$[0].entityId").value(2));
+        mockMvc.perform(get("/users/1/feed?types=RATING"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/1/feed?limit=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldStreamNewFeedEventsAndResumeFromLastEventId() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(
+                    post("/users")
+                            .content(objectMapper.writeValueAsString(new User(null, "mail@mail.ru",
+                                    "user" + i, "Nick Name", LocalDate.of(1946, 8, 20))))
+                            .contentType(MediaType.APPLICATION_JSON)
+            ).andExpect(status().isOk());
+        }
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        long firstEventId = controller.getFeed(1L, null, null, null).getBody().iterator().next().getEventId();
+
+        MvcResult stream = mockMvc.perform(get("/users/1/feed/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/2/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(delete("/users/1/friends/2")).andExpect(status().isOk());
+        String content = awaitEvents(stream, 2);
+        assertTrue(content.contains("id:" + (firstEventId + 1) + "\n"));
+        assertTrue(content.contains("id:" + (firstEventId + 3) + "\n"));
+        assertTrue(content.contains("\"entityId\":3"));
+        assertTrue(content.contains("\"operation\":\"REMOVE\""));
+
+        MvcResult resumed = mockMvc.perform(get("/users/1/feed/stream")
+                        .header("Last-Event-ID", firstEventId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        content = awaitEvents(resumed, 2);
+        assertTrue(content.startsWith("id:" + (firstEventId + 1) + "\n"));
+
+        mockMvc.perform(get("/users/99/feed/stream"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static String awaitEvents(MvcResult result, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = result.getResponse().getContentAsString();
+        while (content.split("event:feed", -1).length - 1 < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString();
+        }
+        assertEquals(count, content.split("event:feed", -1).length - 1, content);
+        return content;
+    }
+
+    @Test
+    void shouldSuggestFriendsOfFriendsByMutualCount() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            mockMvc.perform(
+                    post("/users")
+                            .content(objectMapper.writeValueAsString(new User(null, "mail@mail.ru",
+                                    "user" + i, "Nick Name", LocalDate.of(1946, 8, 20))))
+                            .contentType(MediaType.APPLICATION_JSON)
+            ).andExpect(status().isOk());
+        }
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/2/friends/4")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/3/friends/4")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/3/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/friends/suggestions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(4));
+        mockMvc.perform(get("/users/2/friends/suggestions?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(0)));
+        mockMvc.perform(get("/users/1/friends/suggestions?limit=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/99/friends/suggestions"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void testCommonFilms() throws Exception {
         String sqlQuery = "DELETE FROM films";
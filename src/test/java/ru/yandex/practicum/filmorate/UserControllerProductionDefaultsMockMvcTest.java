@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * UserControllerMockMvcTest с кэшами и индексами, включёнными по умолчанию.
+ */
+@ProductionDefaults
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UserControllerProductionDefaultsMockMvcTest extends UserControllerMockMvcTest {
+}
@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.CachingUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "filmorate.cache.enabled=true")
+@AutoConfigureTestDatabase
+@Import(QueryCounterConfiguration.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class CachingStorageTest {
+    @Qualifier("filmStorage")
+    private final FilmStorage filmStorage;
+    @Qualifier("userStorage")
+    private final UserStorage userStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final DirectorService directorService;
+    private final QueryCounter queryCounter;
+
+    @Test
+    public void testFilmReadThroughAndInvalidation() {
+        CachingFilmStorage cachingFilmStorage = (CachingFilmStorage) filmStorage;
+        Director director = directorService.createDirector(new Director(null, "Quentin Tarantino"));
+        Film film = filmService.addFilm(new Film(null, "name", "description",
+                LocalDate.of(1975, 5, 17), 100, Set.of(new Genre(1, null)),
+                new Mpa(1, null), Set.of(new Director(director.getId(), null))));
+        Long userId = userService.addUser(new User(null, "mail@mail.ru", "dolore", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+
+        long misses = cachingFilmStorage.stats().missCount();
+        filmService.getFilmById(film.getId());
+        queryCounter.reset();
+        Film cached = filmService.getFilmById(film.getId());
+        assertThat(queryCounter.getCount()).isZero();
+        assertThat(cachingFilmStorage.stats().missCount()).isEqualTo(misses + 1);
+        assertThat(cachingFilmStorage.stats().hitCount()).isGreaterThanOrEqualTo(1);
+
+        cached.setName("changed by caller");
+        cached.getGenres().clear();
+        assertThat(filmService.getFilmById(film.getId()).getName()).isEqualTo("name");
+        assertThat(filmService.getFilmById(film.getId()).getGenres()).hasSize(1);
+
+        film.setName("new name");
+        filmService.updateFilm(film);
+        assertThat(filmService.getFilmById(film.getId()).getName()).isEqualTo("new name");
+
+        misses = cachingFilmStorage.stats().missCount();
+        filmService.addLike(film.getId(), userId);
+        filmService.getFilmById(film.getId());
+        assertThat(cachingFilmStorage.stats().missCount()).isEqualTo(misses + 1);
+
+        directorService.updateDirector(new Director(director.getId(), "Quentin Jerome Tarantino"));
+        assertThat(filmService.getFilmById(film.getId()).getDirectors())
+                .containsExactly(new Director(director.getId(), "Quentin Jerome Tarantino"));
+
+        filmService.deleteFilmById(film.getId());
+        assertThat(filmStorage.getById(film.getId())).isEmpty();
+        directorService.removeDirectorById(director.getId());
+    }
+
+    @Test
+    public void testFilmWithoutGenresHasSameShapeWhicheverReadFilledCache() {
+        Long first = filmService.addFilm(new Film(null, "first", "description",
+                LocalDate.of(1975, 5, 17), 100, null, new Mpa(1, null))).getId();
+        Long second = filmService.addFilm(new Film(null, "second", "description",
+                LocalDate.of(1975, 5, 17), 100, null, new Mpa(1, null))).getId();
+
+        filmStorage.getByIds(List.of(first));
+        assertThat(filmStorage.getById(first).orElseThrow().getGenres()).isNull();
+        filmStorage.getById(second);
+        assertThat(filmStorage.getByIds(List.of(second)).get(0).getGenres()).isEmpty();
+
+        filmService.deleteFilmById(first);
+        filmService.deleteFilmById(second);
+    }
+
+    @Test
+    public void testUserReadThroughAndInvalidation() {
+        CachingUserStorage cachingUserStorage = (CachingUserStorage) userStorage;
+        User user = userService.addUser(new User(null, "mail@mail.ru", "dolore", "Nick Name",
+                LocalDate.of(1946, 8, 20)));
+
+        userService.getUserById(user.getId());
+        long hits = cachingUserStorage.stats().hitCount();
+        queryCounter.reset();
+        assertThat(userService.getUserById(user.getId()).getLogin()).isEqualTo("dolore");
+        assertThat(queryCounter.getCount()).isZero();
+        assertThat(cachingUserStorage.stats().hitCount()).isEqualTo(hits + 1);
+
+        user.setLogin("NewDolore");
+        userService.updateUser(user);
+        assertThat(userService.getUserById(user.getId()).getLogin()).isEqualTo("NewDolore");
+
+        userService.deleteUserById(user.getId());
+        assertThat(userStorage.getById(user.getId())).isEmpty();
+    }
+
+    @Test
+    public void testDirectorFilmographyCacheAndInvalidation() {
+        Director director = directorService.createDirector(new Director(null, "Sergio Leone"));
+        Director other = directorService.createDirector(new Director(null, "Ennio Morricone"));
+        Film early = filmService.addFilm(new Film(null, "early", "description",
+                LocalDate.of(1964, 9, 12), 100, Set.of(new Genre(1, null)),
+                new Mpa(1, null), Set.of(new Director(director.getId(), null))));
+        Film late = filmService.addFilm(new Film(null, "late", "description",
+                LocalDate.of(1968, 12, 21), 100, Set.of(new Genre(1, null)),
+                new Mpa(1, null), Set.of(new Director(director.getId(), null))));
+        Long userId = userService.addUser(new User(null, "mail@mail.ru", "leone", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+
+        assertThat(directorService.getSortedFilmsByDirectorId(director.getId(), Optional.of("year")))
+                .extracting(Film::getId).containsExactly(early.getId(), late.getId());
+        queryCounter.reset();
+        assertThat(directorService.getSortedFilmsByDirectorId(director.getId(), Optional.of("likes")))
+                .extracting(Film::getId).containsExactly(early.getId(), late.getId());
+        assertThat(directorService.getSortedFilmsByDirectorId(director.getId(), Optional.of("year")))
+                .extracting(Film::getId).containsExactly(early.getId(), late.getId());
+        assertThat(queryCounter.getCount()).isZero();
+
+        filmService.addLike(late.getId(), userId);
+        assertThat(directorService.getSortedFilmsByDirectorId(director.getId(), Optional.of("likes")))
+                .extracting(Film::getId).containsExactly(late.getId(), early.getId());
+
+        assertThat(directorService.getSortedFilmsByDirectorId(other.getId(), Optional.of("year"))).isEmpty();
+        early.setDirectors(Set.of(new Director(other.getId(), null)));
+        filmService.updateFilm(early);
+        assertThat(directorService.getSortedFilmsByDirectorId(director.getId(), Optional.of("year")))
+                .extracting(Film::getId).containsExactly(late.getId());
+        assertThat(directorService.getSortedFilmsByDirectorId(other.getId(), Optional.of("year")))
+                .extracting(Film::getId).containsExactly(early.getId());
+
+        directorService.updateDirector(new Director(director.getId(), "Sergio Leone (director)"));
+        assertThat(directorService.getSortedFilmsByDirectorId(director.getId(), Optional.of("year")).get(0)
+                .getDirectors()).containsExactly(new Director(director.getId(), "Sergio Leone (director)"));
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.like.CommonFilmsLikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikedFilmsCache;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "filmorate.liked-films.enabled=true")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class CommonFilmsTest {
+    private final LikesStorage likesStorage;
+    @Qualifier("likesDbStorage")
+    private final LikesStorage likesDbStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Test
+    public void testIntersectMatchesNaiveIntersection() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            long[] a = randomSortedSet(random, random.nextInt(50), 1 + random.nextInt(200));
+            long[] b = randomSortedSet(random, random.nextInt(2000), 1 + random.nextInt(5000));
+            Set<Long> expected = LongStream.of(a).boxed().collect(Collectors.toCollection(TreeSet::new));
+            expected.retainAll(LongStream.of(b).boxed().collect(Collectors.toSet()));
+            long[] naive = expected.stream().mapToLong(Long::longValue).toArray();
+            assertThat(LikedFilmsCache.intersect(a, b)).containsExactly(naive);
+            assertThat(LikedFilmsCache.intersect(b, a)).containsExactly(naive);
+        }
+    }
+
+    @Test
+    public void testCommonFilmsMatchSqlAfterLikeChanges() {
+        assertThat(likesStorage).isInstanceOf(CommonFilmsLikesStorage.class);
+        Random random = new Random(7);
+        List<Long> films = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            films.add(filmService.addFilm(new Film(null, "Film", "Description", LocalDate.of(2000, 1, 1), 100,
+                    null, new Mpa(1, null))).getId());
+        }
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            users.add(userService.addUser(new User(null, "mail@mail.ru", "user" + i, "Nick Name",
+                    LocalDate.of(1946, 8, 20))).getId());
+        }
+        Set<String> likes = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            Long filmId = films.get(random.nextInt(films.size()));
+            Long userId = users.get(random.nextInt(users.size()));
+            if (likes.add(filmId + ":" + userId)) {
+                filmService.addLike(filmId, userId);
+            }
+        }
+        assertCommonFilmsMatchSql(users);
+
+        for (String like : likes.stream().limit(20).collect(Collectors.toList())) {
+            String[] ids = like.split(":");
+            filmService.removeLike(Long.valueOf(ids[0]), Long.valueOf(ids[1]));
+        }
+        filmService.deleteFilmById(films.get(0));
+        assertCommonFilmsMatchSql(users);
+
+        Long absent = users.get(0);
+        userService.deleteUserById(absent);
+        assertThatThrownBy(() -> likesStorage.getCommonFilms(absent, users.get(1)))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> likesStorage.getCommonFilms(users.get(1), absent))
+                .isInstanceOf(UserNotFoundException.class);
+    }
+
+    private void assertCommonFilmsMatchSql(List<Long> users) {
+        for (Long userId : users) {
+            for (Long friendId : users) {
+                List<Film> common = likesStorage.getCommonFilms(userId, friendId);
+                List<Film> expected = likesDbStorage.getCommonFilms(userId, friendId);
+                assertThat(common).extracting(Film::getId)
+                        .as("users %d and %d", userId, friendId)
+                        .containsExactlyInAnyOrderElementsOf(expected.stream().map(Film::getId)
+                                .collect(Collectors.toList()));
+                assertThat(common).extracting(Film::getRating)
+                        .isSortedAccordingTo(Comparator.reverseOrder());
+            }
+        }
+    }
+
+    private static long[] randomSortedSet(Random random, int size, int bound) {
+        return random.longs(size, 0, bound).distinct().sorted().toArray();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Скорость пакетного добавления фильмов через FilmService.addFilms вместе с обновлением индексов.
+ * Исключён из обычного прогона тестов в настройках surefire, запускается отдельно:
+ * mvn test -Dtest=FilmBatchBenchmark [-Dbenchmark.films=100000]
+ * После прогона контекст закрывается вместе с добавленными фильмами.
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmBatchBenchmark {
+    private final FilmService filmService;
+
+    @Test
+    public void measureBatchInsertThroughput() {
+        int count = Integer.getInteger("benchmark.films", 100_000);
+        Random random = new Random(42);
+        List<Film> films = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            films.add(new Film(null, "Film " + i, "Description " + i,
+                    LocalDate.of(1950 + random.nextInt(70), 1 + random.nextInt(12), 1), 90 + random.nextInt(60),
+                    Set.of(new Genre(1 + random.nextInt(6), null)), new Mpa(1 + random.nextInt(5), null)));
+        }
+        long start = System.nanoTime();
+        List<Long> ids = filmService.addFilms(films);
+        long elapsed = System.nanoTime() - start;
+        log.info("{} films added in {} ms, {} films per second", count, elapsed / 1_000_000,
+                count * 1_000_000_000L / elapsed);
+        assertThat(ids).hasSize(count).doesNotContainNull();
+    }
+}
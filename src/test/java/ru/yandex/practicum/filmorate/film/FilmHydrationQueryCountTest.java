@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@AutoConfigureTestDatabase
+@Import(QueryCounterConfiguration.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmHydrationQueryCountTest {
+    // один запрос за фильмами + жанры и режиссёры одним запросом каждый, MPA берётся из справочника
+    private static final int QUERIES_PER_FILM_LIST = 3;
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final LikesStorage likesStorage;
+    private final DirectorStorage directorStorage;
+    private final QueryCounter queryCounter;
+    private final JdbcTemplate jdbcTemplate;
+
+    private Long directorId;
+    private Long userId;
+
+    @BeforeAll
+    public void createDirectorAndUser() {
+        // контекст общий с другими тестами QueryCounterConfiguration, фильмы считаются с пустой таблицы
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM USERS");
+        directorId = directorStorage.createDirectorAndReturnDirectorWithId(
+                new Director(null, "Quentin Tarantino")).getId();
+        userId = userDbStorage.add(new User(null, "mail@mail.ru", "dolore", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+    }
+
+    @AfterAll
+    public void removeDirector() {
+        directorStorage.removeDirectorByIdFromStorage(directorId);
+    }
+
+    @Test
+    public void testFilmListsUseFixedNumberOfQueries() {
+        addFilms(3);
+        assertQueryCountOfFilmLists(3);
+        addFilms(20);
+        assertQueryCountOfFilmLists(23);
+    }
+
+    private void assertQueryCountOfFilmLists(int expectedFilms) {
+        queryCounter.reset();
+        Collection<Film> films = filmDbStorage.getAll();
+        assertThat(queryCounter.getCount()).isEqualTo(QUERIES_PER_FILM_LIST);
+        assertThat(films).hasSize(expectedFilms);
+        assertThat(films).allSatisfy(film -> {
+            assertThat(film.getGenres()).containsExactly(new Genre(1, "Комедия"), new Genre(6, "Боевик"));
+            assertThat(film.getMpa()).isEqualTo(new Mpa(3, "PG-13"));
+            assertThat(film.getDirectors()).containsExactly(new Director(directorId, "Quentin Tarantino"));
+        });
+
+        queryCounter.reset();
+        List<Film> byTitle = filmDbStorage.search("film", true, false, Integer.MAX_VALUE);
+        assertThat(queryCounter.getCount()).isEqualTo(QUERIES_PER_FILM_LIST);
+        assertThat(byTitle).hasSize(expectedFilms);
+
+        queryCounter.reset();
+        List<Film> byDirector = filmDbStorage.search("tarantino", false, true, Integer.MAX_VALUE);
+        assertThat(queryCounter.getCount()).isEqualTo(QUERIES_PER_FILM_LIST);
+        assertThat(byDirector).hasSize(expectedFilms);
+
+        queryCounter.reset();
+        List<Film> combined = filmDbStorage.search("film", true, true, 1000);
+        assertThat(queryCounter.getCount()).isEqualTo(QUERIES_PER_FILM_LIST);
+        assertThat(combined).hasSize(expectedFilms);
+
+        queryCounter.reset();
+        List<Film> popular = likesStorage.getPopular(expectedFilms, -1, -1);
+        assertThat(queryCounter.getCount()).isEqualTo(QUERIES_PER_FILM_LIST);
+        assertThat(popular).hasSize(expectedFilms);
+        assertThat(popular.get(0).getDirectors()).containsExactly(new Director(directorId, "Quentin Tarantino"));
+
+        queryCounter.reset();
+        List<Film> byYear = directorStorage.getAllFilmsByDirectorOnYear(directorId);
+        assertThat(queryCounter.getCount()).isEqualTo(QUERIES_PER_FILM_LIST);
+        assertThat(byYear).hasSize(expectedFilms);
+
+        queryCounter.reset();
+        List<Film> byLikes = directorStorage.getAllFilmsByDirectorOnLikes(directorId);
+        assertThat(queryCounter.getCount()).isEqualTo(QUERIES_PER_FILM_LIST);
+        assertThat(byLikes).hasSize(expectedFilms);
+    }
+
+    private void addFilms(int count) {
+        for (int i = 0; i < count; i++) {
+            Film film = filmDbStorage.add(new Film(null, "Film" + i, "Description" + i,
+                    LocalDate.of(2000 + i, 1, 1), 100,
+                    Set.of(new Genre(1, null), new Genre(6, null)),
+                    new Mpa(3, null), Set.of(new Director(directorId, null))));
+            likesStorage.addLike(film.getId(), userId);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.search.FilmSearchIndex;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение поиска по индексу с LIKE '%query%' в БД.
+ * Исключён из обычного прогона тестов в настройках surefire, запускается отдельно:
+ * mvn test -Dtest=FilmSearchBenchmark [-Dbenchmark.films=100000]
+ * Контекст с наполненной БД после прогона закрывается, чтобы его не получили другие тесты.
+ */
+@Slf4j
+@SpringBootTest(properties = "filmorate.search-index.enabled=true")
+@AutoConfigureTestDatabase
+@DirtiesContext
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmSearchBenchmark {
+    private static final String[] WORDS = {"matrix", "pulp", "fiction", "brother", "lord", "rings", "night",
+            "dark", "knight", "star", "wars", "return", "empire", "godfather", "alien", "space", "odyssey"};
+    private static final List<String> QUERIES = List.of("matrix", "ark kni", "odys", "return of", "zzz", "ri");
+    private static final int ROUNDS = 20;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmSearchIndex searchIndex;
+    @Qualifier("filmStorage")
+    private final FilmStorage filmStorage;
+    private final FilmDbStorage filmDbStorage;
+
+    @Test
+    public void compareIndexWithLike() {
+        int films = Integer.getInteger("benchmark.films", 50_000);
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < films; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + i;
+            rows.add(new Object[]{name, "Description", Date.valueOf(LocalDate.of(2000, 1, 1)), 100, 1});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO FILMS (NAME, DESCRIPTION, RELEASEDATE, DURATION, RATE_ID) " +
+                "VALUES (?, ?, ?, ?, ?)", rows);
+        searchIndex.rebuild();
+
+        for (String query : QUERIES) {
+            assertThat(byTitle(filmStorage, query)).hasSameSizeAs(byTitle(filmDbStorage, query));
+            long like = measure(q -> byTitle(filmDbStorage, q), query);
+            long index = measure(q -> byTitle(filmStorage, q), query);
+            long lookup = measure(q -> {
+                searchIndex.searchByTitle(q);
+                return List.of();
+            }, query);
+            log.info("films = {}, query '{}', found = {}: LIKE {} us, index {} us (lookup without loading {} us)",
+                    films, query, byTitle(filmStorage, query).size(), like / 1000, index / 1000, lookup / 1000);
+        }
+    }
+
+    private static List<Film> byTitle(FilmStorage storage, String query) {
+        return storage.search(query, true, false, Integer.MAX_VALUE);
+    }
+
+    private static long measure(Function<String, List<Film>> search, String query) {
+        search.apply(query);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            search.apply(query);
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.IndexedSearchFilmStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "filmorate.search-index.enabled=true")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmSearchIndexTest {
+    private static final List<String> QUERIES = List.of("", " ", "a", "Ы", "er", "o f", "the", "THE MATRIX",
+            "matrix re", "reloaded", "Брат", "брат 2", "tarantino", "NOLAN", "Jerome", "q", "absent title");
+
+    @Qualifier("filmStorage")
+    private final FilmStorage filmStorage;
+    private final FilmDbStorage filmDbStorage;
+    private final FilmService filmService;
+    private final DirectorService directorService;
+    private final UserService userService;
+
+    @Test
+    public void testIndexMatchesLikeSearch() {
+        assertThat(filmStorage).isInstanceOf(IndexedSearchFilmStorage.class);
+        Director tarantino = directorService.createDirector(new Director(null, "Quentin Tarantino"));
+        Director nolan = directorService.createDirector(new Director(null, "Christopher Nolan"));
+        Director balabanov = directorService.createDirector(new Director(null, "Алексей Балабанов"));
+        Film matrix = addFilm("The Matrix Reloaded");
+        addFilm("Pulp Fiction", tarantino);
+        Film brother = addFilm("Брат 2", balabanov);
+        Film inception = addFilm("Inception", nolan, tarantino);
+        addFilm("Lord of the Flies");
+        addFilm("Ыыы");
+        filmService.addFilms(List.of(film("Kill Bill", tarantino), film("Interstellar", nolan), film("Брат")));
+        Long userId = userService.addUser(new User(null, "mail@mail.ru", "dolore", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+        filmService.addLike(inception.getId(), userId);
+        assertSearchMatchesLike();
+
+        matrix.setName("The Matrix");
+        matrix.setDirectors(Set.of(nolan));
+        filmService.updateFilm(matrix);
+        directorService.updateDirector(new Director(tarantino.getId(), "Quentin Jerome Tarantino"));
+        assertSearchMatchesLike();
+
+        directorService.removeDirectorById(nolan.getId());
+        filmService.deleteFilmById(brother.getId());
+        filmService.deleteFilmById(inception.getId());
+        assertSearchMatchesLike();
+    }
+
+    private void assertSearchMatchesLike() {
+        for (String query : QUERIES) {
+            assertThat(ids(filmStorage.search(query, true, false, Integer.MAX_VALUE)))
+                    .as("title %s", query)
+                    .isEqualTo(ids(filmDbStorage.search(query, true, false, Integer.MAX_VALUE)));
+            assertThat(ids(filmStorage.search(query, false, true, Integer.MAX_VALUE)))
+                    .as("director %s", query)
+                    .isEqualTo(ids(filmDbStorage.search(query, false, true, Integer.MAX_VALUE)));
+            for (int limit : new int[]{1, 100}) {
+                assertThat(filmStorage.search(query, true, true, limit))
+                        .as("title and director %s, limit %d", query, limit)
+                        .isEqualTo(filmDbStorage.search(query, true, true, limit));
+                assertThat(filmStorage.search(query, false, true, limit))
+                        .as("director only %s, limit %d", query, limit)
+                        .isEqualTo(filmDbStorage.search(query, false, true, limit));
+            }
+        }
+    }
+
+    private static List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).distinct().sorted().collect(Collectors.toList());
+    }
+
+    private Film addFilm(String name, Director... directors) {
+        return filmService.addFilm(film(name, directors));
+    }
+
+    private static Film film(String name, Director... directors) {
+        return new Film(null, name, "Description", LocalDate.of(2000, 1, 1), 100,
+                null, new Mpa(1, null), Set.of(directors));
+    }
+}
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class LikesCounterTest {
+    private final FilmService filmService;
+    private final UserService userService;
+    private final FilmDbStorage filmDbStorage;
+    private final LikesStorage likesStorage;
+    private final DirectorStorage directorStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private static final long ABSENT_ID = 1_000_000L;
+
+    @Test
+    public void testCounterFollowsLikesAndUserDeletion() {
+        Long filmId = addFilm(1999, 2);
+        Long firstUser = addUser();
+        Long secondUser = addUser();
+
+        filmService.addLike(filmId, firstUser);
+        filmService.addLike(filmId, secondUser);
+        assertThat(filmService.getFilmById(filmId).getRating()).isEqualTo(2);
+        assertCounterMatchesLikes(filmId);
+
+        filmService.removeLike(filmId, firstUser);
+        assertThat(filmService.getFilmById(filmId).getRating()).isEqualTo(1);
+        assertCounterMatchesLikes(filmId);
+
+        userService.deleteUserById(secondUser);
+        assertThat(filmService.getFilmById(filmId).getRating()).isZero();
+        assertCounterMatchesLikes(filmId);
+    }
+
+    @Test
+    public void testPopularAndDirectorFilmsAreOrderedByCounter() {
+        Director director = directorStorage.createDirectorAndReturnDirectorWithId(new Director(null, "Director"));
+        Long lessPopular = addFilm(1888, 5, director);
+        Long mostPopular = addFilm(1888, 5, director);
+        Long userOne = addUser();
+        Long userTwo = addUser();
+        likesStorage.addLike(lessPopular, userOne);
+        likesStorage.addLike(mostPopular, userOne);
+        likesStorage.addLike(mostPopular, userTwo);
+
+        List<Film> popular = likesStorage.getPopular(10, 5, 1888);
+        assertThat(popular).extracting(Film::getId).containsExactly(mostPopular, lessPopular);
+        assertThat(popular).extracting(Film::getRating).containsExactly(2L, 1L);
+
+        assertThat(directorStorage.getAllFilmsByDirectorOnLikes(director.getId()))
+                .extracting(Film::getId).containsExactly(mostPopular, lessPopular);
+        directorStorage.removeDirectorByIdFromStorage(director.getId());
+    }
+
+    @Test
+    public void testBatchLikesAreDeduplicatedAndReported() {
+        Long firstFilm = addFilm(1999, 2);
+        Long secondFilm = addFilm(1999, 2);
+        Long user = addUser();
+        filmService.addLike(secondFilm, user);
+        int feedSize = userService.getFeed(user).size();
+
+        List<LikeResult> results = filmService.applyLikes(List.of(
+                new LikeOperation(user, firstFilm, OperationType.REMOVE),
+                new LikeOperation(user, firstFilm, OperationType.ADD),
+                new LikeOperation(user, secondFilm, OperationType.ADD),
+                new LikeOperation(user, ABSENT_ID, OperationType.ADD),
+                new LikeOperation(ABSENT_ID, firstFilm, OperationType.REMOVE)));
+
+        assertThat(results).extracting(LikeResult::getStatus).containsExactly(
+                LikeResult.Status.DUPLICATE,
+                LikeResult.Status.APPLIED,
+                LikeResult.Status.UNCHANGED,
+                LikeResult.Status.FILM_NOT_FOUND,
+                LikeResult.Status.USER_NOT_FOUND);
+        assertThat(filmService.getFilmById(firstFilm).getRating()).isEqualTo(1);
+        assertCounterMatchesLikes(firstFilm);
+        assertCounterMatchesLikes(secondFilm);
+        assertThat(userService.getFeed(user)).hasSize(feedSize + 1);
+
+        results = filmService.applyLikes(List.of(
+                new LikeOperation(user, firstFilm, OperationType.REMOVE),
+                new LikeOperation(user, secondFilm, OperationType.REMOVE)));
+        assertThat(results).extracting(LikeResult::getStatus)
+                .containsOnly(LikeResult.Status.APPLIED);
+        assertThat(filmService.getFilmById(firstFilm).getRating()).isZero();
+        assertThat(filmService.getFilmById(secondFilm).getRating()).isZero();
+        assertThat(userService.getFeed(user)).hasSize(feedSize + 3);
+    }
+
+    private void assertCounterMatchesLikes(Long filmId) {
+        Integer counter = jdbcTemplate.queryForObject(
+                "SELECT likes_count FROM FILMS WHERE film_id = ?", Integer.class, filmId);
+        Integer likes = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM LIKES WHERE film_id = ?", Integer.class, filmId);
+        assertThat(counter).isEqualTo(likes);
+    }
+
+    private Long addFilm(int year, int genreId, Director... directors) {
+        return filmDbStorage.add(new Film(null, "Film", "Description", LocalDate.of(year, 1, 1), 100,
+                Set.of(new Genre(genreId, null)), new Mpa(1, null), Set.of(directors))).getId();
+    }
+
+    private Long addUser() {
+        return userService.addUser(new User(null, "mail@mail.ru", "dolore", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+    }
+}
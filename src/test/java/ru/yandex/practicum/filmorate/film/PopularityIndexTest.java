@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.OperationType;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.like.IndexedLikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.PopularityIndex;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "filmorate.popularity-index.enabled=true")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class PopularityIndexTest {
+    private static final int[] YEARS = {-1, 1990, 1991, 1992};
+    private static final int[] GENRES = {-1, 1, 2, 3, 4, 5, 6};
+
+    private final PopularityIndex popularityIndex;
+    private final LikesStorage likesStorage;
+    @Qualifier("likesDbStorage")
+    private final LikesStorage likesDbStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    public void rebuildIndex() {
+        popularityIndex.rebuild();
+    }
+
+    @Test
+    public void testIndexMatchesSqlAfterRandomChanges() {
+        assertThat(likesStorage).isInstanceOf(IndexedLikesStorage.class);
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            films.add(filmService.addFilm(randomFilm()));
+        }
+        List<Film> imported = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            imported.add(randomFilm());
+        }
+        filmService.addFilms(imported);
+        films.addAll(imported);
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            users.add(userService.addUser(new User(null, "mail@mail.ru", "user" + i, "Nick Name",
+                    LocalDate.of(1946, 8, 20))).getId());
+        }
+        Set<String> likes = new HashSet<>();
+        for (int i = 0; i < 150; i++) {
+            Long filmId = films.get(random.nextInt(films.size())).getId();
+            Long userId = users.get(random.nextInt(users.size()));
+            if (likes.add(filmId + ":" + userId)) {
+                filmService.addLike(filmId, userId);
+            }
+        }
+        assertIndexMatchesSql();
+
+        for (String like : likes.stream().limit(40).collect(Collectors.toList())) {
+            String[] ids = like.split(":");
+            filmService.removeLike(Long.valueOf(ids[0]), Long.valueOf(ids[1]));
+        }
+        assertIndexMatchesSql();
+
+        List<LikeOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            operations.add(new LikeOperation(users.get(random.nextInt(users.size())),
+                    films.get(random.nextInt(films.size())).getId(),
+                    random.nextBoolean() ? OperationType.ADD : OperationType.REMOVE));
+        }
+        filmService.applyLikes(operations);
+        assertIndexMatchesSql();
+
+        for (int i = 0; i < 5; i++) {
+            Film film = randomFilm();
+            film.setId(films.get(i).getId());
+            filmService.updateFilm(film);
+        }
+        filmService.deleteFilmById(films.get(10).getId());
+        userService.deleteUserById(users.get(0));
+        assertIndexMatchesSql();
+    }
+
+    private void assertIndexMatchesSql() {
+        assertThat(popularityIndex.checkConsistency()).isEmpty();
+        for (int genreId : GENRES) {
+            for (int year : YEARS) {
+                for (int count : new int[]{1, 5, 100}) {
+                    assertThat(likesStorage.getPopular(count, genreId, year))
+                            .as("count = %d, genreId = %d, year = %d", count, genreId, year)
+                            .isEqualTo(likesDbStorage.getPopular(count, genreId, year));
+                }
+            }
+        }
+    }
+
+    private Film randomFilm() {
+        Set<Genre> genres = new HashSet<>();
+        int genreCount = random.nextInt(3);
+        for (int i = 0; i < genreCount; i++) {
+            genres.add(new Genre(1 + random.nextInt(6), null));
+        }
+        return new Film(null, "Film", "Description", LocalDate.of(YEARS[1 + random.nextInt(3)], 1, 1), 100,
+                genres, new Mpa(1, null));
+    }
+}
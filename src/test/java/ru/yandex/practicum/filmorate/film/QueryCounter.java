@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.film;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Оборачивает DataSource и считает все statement'ы, созданные через его соединения.
+ */
+public class QueryCounter implements BeanPostProcessor {
+    private static final Set<String> STATEMENT_METHODS = Set.of("prepareStatement", "createStatement", "prepareCall");
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    public void reset() {
+        count.set(0);
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)) {
+            return bean;
+        }
+        return new DelegatingDataSource((DataSource) bean) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return countingConnection(super.getConnection());
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return countingConnection(super.getConnection(username, password));
+            }
+        };
+    }
+
+    private Connection countingConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (STATEMENT_METHODS.contains(method.getName())) {
+                        count.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.film;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Подключается к тестам через @Import, когда нужно считать запросы к БД.
+ */
+@TestConfiguration
+public class QueryCounterConfiguration {
+    @Bean
+    static QueryCounter queryCounter() {
+        return new QueryCounter();
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.GenreNotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.service.MPAService;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@Import(QueryCounterConfiguration.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ReferenceDataRegistryTest {
+    private final MPAService mpaService;
+    private final GenreService genreService;
+    private final ReferenceDataRegistry referenceData;
+    private final JdbcTemplate jdbcTemplate;
+    private final QueryCounter queryCounter;
+
+    @AfterEach
+    public void restoreGenres() {
+        jdbcTemplate.update("DELETE FROM GENRES WHERE GENRE_ID = 7");
+        referenceData.reload();
+    }
+
+    @Test
+    public void testReferenceDataServedFromMemory() {
+        queryCounter.reset();
+        assertThat(mpaService.getMpa()).hasSize(5);
+        assertThat(mpaService.getMpa(3)).isEqualTo(new Mpa(3, "PG-13"));
+        assertThat(genreService.getGenres()).hasSize(6);
+        assertThat(genreService.getGenre(6)).isEqualTo(new Genre(6, "Боевик"));
+        assertThat(catchThrowable(() -> genreService.getGenre(100))).isInstanceOf(GenreNotFoundException.class);
+        assertThat(queryCounter.getCount()).isZero();
+    }
+
+    @Test
+    public void testReloadPicksUpNewGenres() {
+        jdbcTemplate.update("INSERT INTO GENRES (GENRE_ID, GENRE) VALUES (7, 'Ужасы')");
+        assertThat(catchThrowable(() -> genreService.getGenre(7))).isInstanceOf(GenreNotFoundException.class);
+        referenceData.reload();
+        assertThat(genreService.getGenre(7).getName()).isEqualTo("Ужасы");
+        assertThat(genreService.getGenres()).hasSize(7);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.exception.*;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Записи лайков, дружбы и отзывов не проверяют заранее существование связанных строк:
+ * отсутствие определяется по внешним ключам и числу изменённых строк.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@Import(QueryCounterConfiguration.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class WriteQueryCountTest {
+    private static final long ABSENT_ID = 1_000_000L;
+    // вставка лайка и счётчик фильма
+    private static final int QUERIES_PER_LIKE = 2;
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    @Qualifier("likesDbStorage")
+    private final LikesStorage likesDbStorage;
+    @Qualifier("friendsDbStorage")
+    private final FriendsStorage friendsDbStorage;
+    private final ReviewStorage reviewStorage;
+    private final DirectorStorage directorStorage;
+    private final QueryCounter queryCounter;
+
+    @Test
+    public void testWritesUseSingleStatement() {
+        Long filmId = addFilm();
+        Long userId = addUser();
+        Long friendId = addUser();
+
+        assertQueries(QUERIES_PER_LIKE, () -> likesDbStorage.addLike(filmId, userId));
+        assertQueries(QUERIES_PER_LIKE, () -> likesDbStorage.removeLike(filmId, userId));
+        assertQueries(1, () -> friendsDbStorage.addFriend(userId, friendId));
+        assertQueries(1, () -> friendsDbStorage.deleteFriend(userId, friendId));
+
+        queryCounter.reset();
+        Review review = reviewStorage.add(new Review(null, "Content", true, userId, filmId, null));
+        assertThat(queryCounter.getCount()).isEqualTo(1);
+        queryCounter.reset();
+        Review updated = reviewStorage.update(new Review(review.getReviewId(), "Updated", false, null, null, null));
+        assertThat(queryCounter.getCount()).isEqualTo(1);
+        assertThat(updated).isEqualTo(new Review(review.getReviewId(), "Updated", false, userId, filmId, 0L));
+        queryCounter.reset();
+        assertThat(reviewStorage.deleteById(review.getReviewId())).isEqualTo(updated);
+        assertThat(queryCounter.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMissingRowsAreReportedAsNotFound() {
+        Long filmId = addFilm();
+        Long userId = addUser();
+
+        assertThatThrownBy(() -> likesDbStorage.addLike(ABSENT_ID, userId)).isInstanceOf(FilmNotFoundException.class);
+        assertThatThrownBy(() -> likesDbStorage.addLike(filmId, ABSENT_ID)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> likesDbStorage.removeLike(ABSENT_ID, userId)).isInstanceOf(FilmNotFoundException.class);
+        assertThatThrownBy(() -> likesDbStorage.removeLike(filmId, userId)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> friendsDbStorage.addFriend(userId, ABSENT_ID))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> friendsDbStorage.addFriend(ABSENT_ID, userId))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> friendsDbStorage.deleteFriend(userId, ABSENT_ID))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> friendsDbStorage.findFriends(ABSENT_ID)).isInstanceOf(UserNotFoundException.class);
+
+        assertThatThrownBy(() -> reviewStorage.add(new Review(null, "Content", true, ABSENT_ID, filmId, null)))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> reviewStorage.add(new Review(null, "Content", true, userId, ABSENT_ID, null)))
+                .isInstanceOf(FilmNotFoundException.class);
+        assertThatThrownBy(() -> reviewStorage.update(new Review(ABSENT_ID, "Content", true, userId, filmId, null)))
+                .isInstanceOf(ReviewNotFoundException.class);
+        assertThatThrownBy(() -> reviewStorage.deleteById(ABSENT_ID)).isInstanceOf(ReviewNotFoundException.class);
+        assertThatThrownBy(() -> reviewStorage.addLike(ABSENT_ID, userId)).isInstanceOf(ReviewNotFoundException.class);
+
+        assertThatThrownBy(() -> directorStorage.addDirectorToFilm(filmId, ABSENT_ID))
+                .isInstanceOf(DirectorNotFoundException.class);
+        assertThatThrownBy(() -> filmDbStorage.deleteById(ABSENT_ID)).isInstanceOf(FilmNotFoundException.class);
+        assertThatThrownBy(() -> userDbStorage.deleteById(ABSENT_ID)).isInstanceOf(UserNotFoundException.class);
+    }
+
+    private void assertQueries(int expected, Runnable write) {
+        queryCounter.reset();
+        write.run();
+        assertThat(queryCounter.getCount()).isEqualTo(expected);
+    }
+
+    private Long addFilm() {
+        return filmDbStorage.add(new Film(null, "Film", "Description", LocalDate.of(2000, 1, 1), 100,
+                Set.of(), new Mpa(1, null), Set.of())).getId();
+    }
+
+    private Long addUser() {
+        return userDbStorage.add(new User(null, "mail@mail.ru", "login", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.jdbc.support.rowset.SqlRowSet;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -198,5 +199,57 @@ public class ReviewStorageTest {
         sqlRowSet.next();
         Assertions.assertThat(sqlRowSet.getLong("useful")).isEqualTo(0);
     }
-}
 
+    @Test
+    public void testVoteChangesUsefulByDelta() {
+        String query = "INSERT INTO REVIEWS (CONTENT, IS_POSITIVE, USER_ID, FILM_ID, USEFUL) values ('testContent', true, 1, 1, 0)";
+        jdbcTemplate.update(query);
+
+        reviewStorage.addLike(1L, 1L);
+        reviewStorage.addLike(1L, 1L);
+        Assertions.assertThat(reviewStorage.getById(1L).get().getUseful()).isEqualTo(1);
+
+        reviewStorage.addDislike(1L, 1L);
+        Assertions.assertThat(reviewStorage.getById(1L).get().getUseful()).isEqualTo(-1);
+        query = "select count(*) from REVIEW_RATINGS where REVIEW_ID = 1 and USER_ID = 1";
+        Assertions.assertThat(jdbcTemplate.queryForObject(query, Integer.class)).isEqualTo(1);
+
+        reviewStorage.deleteLike(1L, 1L);
+        Assertions.assertThat(reviewStorage.getById(1L).get().getUseful()).isEqualTo(-1);
+        reviewStorage.deleteDislike(1L, 1L);
+        Assertions.assertThat(reviewStorage.getById(1L).get().getUseful()).isEqualTo(0);
+    }
+
+    @Test
+    public void testReconcileUseful() {
+        String query = "INSERT INTO REVIEWS (CONTENT, IS_POSITIVE, USER_ID, FILM_ID, USEFUL) values ('testContent1', true, 1, 1, 5), " +
+                "('testContent2', false, 1, 1, 0)";
+        jdbcTemplate.update(query);
+        query = "INSERT INTO REVIEW_RATINGS (REVIEW_ID, USER_ID, LIKED) values (1, 1, true)";
+        jdbcTemplate.update(query);
+
+        Assertions.assertThat(reviewStorage.reconcileUseful()).isEqualTo(1);
+        Assertions.assertThat(reviewStorage.getById(1L).get().getUseful()).isEqualTo(1);
+        Assertions.assertThat(reviewStorage.reconcileUseful()).isZero();
+    }
+
+    @Test
+    public void testGetPageWalksByUsefulAndId() {
+        String query = "INSERT INTO REVIEWS (CONTENT, IS_POSITIVE, USER_ID, FILM_ID, USEFUL) values " +
+                "('c1', true, 1, 1, 0), ('c2', true, 1, 1, 5), ('c3', true, 1, 1, 0), ('c4', true, 1, 1, -2), " +
+                "('c5', true, 1, 1, 5)";
+        jdbcTemplate.update(query);
+
+        List<Long> ids = new ArrayList<>();
+        List<Review> page = reviewStorage.getPage(1L, null, null, 2);
+        while (!page.isEmpty()) {
+            page.forEach(review -> ids.add(review.getReviewId()));
+            Review last = page.get(page.size() - 1);
+            page = reviewStorage.getPage(1L, last.getUseful(), last.getReviewId(), 2);
+        }
+        Assertions.assertThat(ids).containsExactly(2L, 5L, 1L, 3L, 4L);
+        Assertions.assertThat(reviewStorage.getPage(null, 0L, 1L, 10))
+                .extracting(Review::getReviewId).containsExactly(3L, 4L);
+        Assertions.assertThat(reviewStorage.getPage(2L, null, null, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,191 @@
+package ru.yandex.practicum.filmorate.review;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exception.ReviewNotFoundException;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.review.BufferedReviewStorage;
+import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
+import ru.yandex.practicum.filmorate.storage.review.ReviewVoteBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Интервал сброса заведомо больше времени теста: голоса попадают в БД только при явном сбросе
+ * или остановке буфера.
+ */
+@SpringBootTest(properties = {"filmorate.review-votes.enabled=true", "filmorate.review-votes.flush-interval=1m"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ReviewVoteBufferTest {
+    private final ReviewStorage reviewStorage;
+    private final ReviewVoteBuffer voteBuffer;
+    private final UserService userService;
+    private final ReviewService reviewService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private List<Long> userIds;
+    private Long filmId;
+    private Long reviewId;
+
+    @BeforeEach
+    public void insertReview() {
+        jdbcTemplate.update("DELETE FROM FILMS");
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("INSERT INTO USERS (EMAIL, LOGIN, NAME, BIRTHDAY) " +
+                "SELECT 'user' || X || '@mail.ru', 'user' || X, 'user', DATE '1994-06-15' FROM SYSTEM_RANGE(1, 400)");
+        userIds = jdbcTemplate.queryForList("SELECT USER_ID FROM USERS ORDER BY USER_ID", Long.class);
+        jdbcTemplate.update("INSERT INTO FILMS (NAME, DESCRIPTION, RELEASEDATE, DURATION, RATE_ID) " +
+                "VALUES ('testFilmName', 'testFilmDescription', '1984-05-23', 120, 1)");
+        filmId = jdbcTemplate.queryForObject("SELECT MAX(FILM_ID) FROM FILMS", Long.class);
+        reviewId = reviewStorage.add(new Review(null, "testContent", true, userIds.get(0), filmId, 0L)).getReviewId();
+    }
+
+    @Test
+    public void testPendingVotesAreMergedIntoReadsAndFlushedInOneBatch() {
+        assertThat(reviewStorage).isInstanceOf(BufferedReviewStorage.class);
+        reviewStorage.addLike(reviewId, userIds.get(0));
+        reviewStorage.addDislike(reviewId, userIds.get(1));
+        reviewStorage.addLike(reviewId, userIds.get(2));
+        reviewStorage.addDislike(reviewId, userIds.get(2));
+        reviewStorage.addLike(reviewId, userIds.get(0));
+        reviewStorage.deleteLike(reviewId, userIds.get(1));
+
+        assertThat(reviewStorage.getById(reviewId).get().getUseful()).isEqualTo(-1);
+        assertThat(reviewStorage.getPage(null, null, null, 10)).extracting(Review::getUseful).containsExactly(-1L);
+        assertThat(countRatings()).isZero();
+        assertThat(storedUseful()).isZero();
+
+        voteBuffer.flush();
+        assertThat(countRatings()).isEqualTo(3);
+        assertThat(storedUseful()).isEqualTo(-1);
+        assertThat(voteBuffer.pendingDelta(reviewId)).isZero();
+        assertThat(reviewStorage.getById(reviewId).get().getUseful()).isEqualTo(-1);
+
+        reviewStorage.deleteDislike(reviewId, userIds.get(1));
+        reviewStorage.deleteDislike(reviewId, userIds.get(2));
+        voteBuffer.flush();
+        assertThat(countRatings()).isEqualTo(1);
+        assertThat(storedUseful()).isEqualTo(1);
+        assertThat(reviewStorage.reconcileUseful()).isZero();
+    }
+
+    @Test
+    public void testCursorIsComparedWithStoredUseful() {
+        Long secondId = reviewStorage.add(new Review(null, "testContent", true, userIds.get(1), filmId, 0L))
+                .getReviewId();
+        Long thirdId = reviewStorage.add(new Review(null, "testContent", true, userIds.get(2), filmId, 0L))
+                .getReviewId();
+        reviewStorage.addLike(reviewId, userIds.get(3));
+
+        // порядок страниц - по записанной полезности, ещё не записанный голос только виден в отзыве
+        CursorPage<Review> first = reviewService.getReviewsPage(filmId, 1L, null);
+        assertThat(first.getItems()).extracting(Review::getReviewId).containsExactly(reviewId);
+        assertThat(first.getItems()).extracting(Review::getUseful).containsExactly(1L);
+        CursorPage<Review> second = reviewService.getReviewsPage(filmId, 1L, first.getNextCursor());
+        assertThat(second.getItems()).extracting(Review::getReviewId).containsExactly(secondId);
+        CursorPage<Review> third = reviewService.getReviewsPage(filmId, 1L, second.getNextCursor());
+        assertThat(third.getItems()).extracting(Review::getReviewId).containsExactly(thirdId);
+        assertThat(third.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void testConcurrentVotesOnOneReview() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> votes = new ArrayList<>();
+        for (Long userId : userIds) {
+            votes.add(executor.submit(() -> {
+                reviewStorage.addDislike(reviewId, userId);
+                reviewStorage.addLike(reviewId, userId);
+            }));
+        }
+        for (Future<?> vote : votes) {
+            vote.get();
+        }
+        executor.shutdown();
+
+        assertThat(reviewStorage.getById(reviewId).get().getUseful()).isEqualTo(userIds.size());
+        voteBuffer.flush();
+        assertThat(storedUseful()).isEqualTo(userIds.size());
+        assertThat(reviewStorage.reconcileUseful()).isZero();
+    }
+
+    @Test
+    public void testPendingVotesOfDeletedUserAreDropped() {
+        reviewStorage.addLike(reviewId, userIds.get(3));
+        voteBuffer.flush();
+        reviewStorage.addLike(reviewId, userIds.get(1));
+        reviewStorage.addLike(reviewId, userIds.get(2));
+        // снятие записанного лайка ждёт в буфере с дельтой -1
+        reviewStorage.deleteLike(reviewId, userIds.get(3));
+        assertThat(reviewStorage.getById(reviewId).get().getUseful()).isEqualTo(2);
+
+        userService.deleteUserById(userIds.get(2));
+        userService.deleteUserById(userIds.get(3));
+        assertThat(reviewStorage.getById(reviewId).get().getUseful()).isEqualTo(1);
+        voteBuffer.flush();
+        assertThat(reviewStorage.getById(reviewId).get().getUseful()).isEqualTo(1);
+        assertThat(storedUseful()).isEqualTo(1);
+        assertThat(countRatings()).isEqualTo(1);
+        assertThat(reviewStorage.reconcileUseful()).isZero();
+    }
+
+    @Test
+    public void testRemovedRatingOfUserDeletedBeforeEventIsNotSubtractedTwice() {
+        reviewStorage.addLike(reviewId, userIds.get(1));
+        voteBuffer.flush();
+        reviewStorage.deleteLike(reviewId, userIds.get(1));
+
+        // пользователь удалён в обход события, как если бы сброс успел пройти до его обработки
+        jdbcTemplate.update("UPDATE REVIEWS SET useful = useful - 1 WHERE review_id = ?", reviewId);
+        jdbcTemplate.update("DELETE FROM USERS WHERE user_id = ?", userIds.get(1));
+        voteBuffer.flush();
+        assertThat(storedUseful()).isZero();
+        assertThat(reviewStorage.reconcileUseful()).isZero();
+    }
+
+    @Test
+    public void testVoteForAbsentReviewIsRejected() {
+        assertThatThrownBy(() -> reviewStorage.addLike(reviewId + 1, userIds.get(0)))
+                .isInstanceOf(ReviewNotFoundException.class);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testPendingVotesAreWrittenOnStop() throws InterruptedException {
+        reviewStorage.addLike(reviewId, userIds.get(0));
+        reviewStorage.addLike(reviewId, userIds.get(1));
+        assertThat(storedUseful()).isZero();
+
+        voteBuffer.stop();
+        assertThat(storedUseful()).isEqualTo(2);
+        // после остановки буфера голоса пишутся сразу
+        reviewStorage.addDislike(reviewId, userIds.get(1));
+        assertThat(storedUseful()).isZero();
+    }
+
+    private Integer countRatings() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM REVIEW_RATINGS WHERE review_id = ?", Integer.class,
+                reviewId);
+    }
+
+    private Long storedUseful() {
+        return jdbcTemplate.queryForObject("SELECT useful FROM REVIEWS WHERE review_id = ?", Long.class, reviewId);
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.user;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.OperationType;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.event.EventStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventWriter;
+import ru.yandex.practicum.filmorate.storage.event.QueuedEventStorage;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Интервал сброса заведомо больше времени теста: события попадают в БД только по запросу чтения
+ * ленты или при остановке писателя.
+ */
+@SpringBootTest(properties = {"filmorate.event-writer.enabled=true", "filmorate.event-writer.flush-interval=1m"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class EventWriterTest {
+    private final EventStorage eventStorage;
+    private final EventWriter eventWriter;
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    public void testFeedSeesOwnEventsWrittenInOneBatch() {
+        assertThat(eventStorage).isInstanceOf(QueuedEventStorage.class);
+        Long userId = addUser();
+        long commits = meterRegistry.get("events.writer.commit").timer().count();
+        for (long filmId = 1; filmId <= 3; filmId++) {
+            eventStorage.addNewEvent(likeEvent(userId, filmId));
+        }
+
+        long start = System.nanoTime();
+        assertThat(userService.getFeed(userId)).extracting(Event::getEntityId).containsExactly(1L, 2L, 3L);
+        assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+        assertThat(meterRegistry.get("events.writer.commit").timer().count()).isEqualTo(commits + 1);
+        assertThat(meterRegistry.get("events.writer.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    public void testEventsOfDeletedUserAreDropped() {
+        Long deletedId = addUser();
+        Long userId = addUser();
+        double dropped = meterRegistry.get("events.writer.dropped").counter().count();
+        eventStorage.addNewEvent(likeEvent(deletedId, 1L));
+        eventStorage.addNewEvent(likeEvent(userId, 2L));
+        jdbcTemplate.update("DELETE FROM USERS WHERE user_id = ?", deletedId);
+
+        assertThat(userService.getFeed(userId)).extracting(Event::getEntityId).containsExactly(2L);
+        assertThat(countEvents(deletedId)).isZero();
+        assertThat(meterRegistry.get("events.writer.dropped").counter().count()).isEqualTo(dropped + 1);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testQueuedEventsAreWrittenOnStop() throws InterruptedException {
+        Long userId = addUser();
+        for (long filmId = 1; filmId <= 5; filmId++) {
+            eventStorage.addNewEvent(likeEvent(userId, filmId));
+        }
+        assertThat(countEvents(userId)).isZero();
+
+        eventWriter.stop();
+        assertThat(countEvents(userId)).isEqualTo(5);
+        // после остановки писателя события пишутся сразу
+        eventStorage.addNewEvent(likeEvent(userId, 6L));
+        assertThat(countEvents(userId)).isEqualTo(6);
+    }
+
+    private Integer countEvents(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM EVENTS WHERE user_id = ?", Integer.class, userId);
+    }
+
+    private static Event likeEvent(Long userId, Long filmId) {
+        return new Event.Builder()
+                .setCurrentTimestamp()
+                .setUserId(userId)
+                .setEventType(EventType.LIKE)
+                .setOperationType(OperationType.ADD)
+                .setEntityId(filmId)
+                .build();
+    }
+
+    private Long addUser() {
+        return userService.addUser(new User(null, "mail@mail.ru", "writer", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+    }
+}
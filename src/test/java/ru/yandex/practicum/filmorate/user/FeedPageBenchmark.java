@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.user;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.OperationType;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.event.EventStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Задержка чтения страницы ленты пользователя с длинной историей событий.
+ * Исключён из обычного прогона тестов в настройках surefire, запускается отдельно:
+ * mvn test -Dtest=FeedPageBenchmark [-Dbenchmark.events=1000000]
+ * Сгенерированная история событий живёт только в контексте бенчмарка, он закрывается после прогона.
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FeedPageBenchmark {
+    private static final int INSERT_BATCH = 10_000;
+    private static final int QUERIES = 1000;
+    private static final int PAGE_SIZE = 20;
+
+    private final UserService userService;
+    private final EventStorage eventStorage;
+
+    @Test
+    public void measureFeedPageLatency() {
+        int count = Integer.getInteger("benchmark.events", 1_000_000);
+        Long userId = userService.addUser(new User(null, "mail@mail.ru", "heavy", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+        EventType[] types = EventType.values();
+        long start = System.nanoTime();
+        List<Event> events = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < count; i++) {
+            events.add(new Event(System.currentTimeMillis(), userId, types[i % types.length], OperationType.ADD,
+                    (long) i));
+            if (events.size() == INSERT_BATCH || i == count - 1) {
+                eventStorage.addNewEvents(events);
+                events.clear();
+            }
+        }
+        log.info("{} events inserted in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+
+        CursorPage<Event> head = userService.getFeedPage(userId, null, PAGE_SIZE, null);
+        long newest = head.getItems().get(0).getEventId();
+        measure("first page", userId, null, null);
+        measure("first page of one type", userId, null, "REVIEW");
+        measure("page in the middle", userId, newest - count / 2, null);
+        measure("page near the end", userId, newest - count + 2L * PAGE_SIZE, "LIKE,FRIEND");
+    }
+
+    private void measure(String name, Long userId, Long before, String types) {
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long start = System.nanoTime();
+            CursorPage<Event> page = userService.getFeedPage(userId, before, PAGE_SIZE, types);
+            latencies[i] = System.nanoTime() - start;
+            assertThat(page.getItems()).isNotEmpty();
+        }
+        Arrays.sort(latencies);
+        log.info("{}: median {} us, p99 {} us", name, latencies[QUERIES / 2] / 1000,
+                latencies[QUERIES * 99 / 100] / 1000);
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.user;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FriendPath;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.friends.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.friends.FriendsStorage;
+import ru.yandex.practicum.filmorate.storage.friends.GraphFriendsStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// глубина и время поиска пути не ограничивают случайные графы теста, иначе обход из двух концов
+// может доказать отсутствие пути там, где обход из одного конца останавливается по глубине
+@SpringBootTest(properties = {"filmorate.friend-graph.enabled=true", "filmorate.friend-path.max-depth=50",
+        "filmorate.friend-path.time-budget=10s"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FriendGraphTest {
+    private final FriendGraph friendGraph;
+    private final FriendsStorage friendsStorage;
+    @Qualifier("friendsDbStorage")
+    private final FriendsStorage friendsDbStorage;
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testSuggestionsMatchSqlAfterRandomChanges() {
+        assertThat(friendsStorage).isInstanceOf(GraphFriendsStorage.class);
+        Random random = new Random(42);
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            users.add(addUser());
+        }
+        Set<String> friendships = new HashSet<>();
+        for (int i = 0; i < 150; i++) {
+            Long id = users.get(random.nextInt(users.size()));
+            Long friendId = users.get(random.nextInt(users.size()));
+            if (!id.equals(friendId) && friendships.add(id + ":" + friendId)) {
+                userService.addFriend(id, friendId);
+            }
+        }
+        assertSuggestionsMatchSql(users);
+
+        for (String friendship : friendships.stream().limit(40).collect(Collectors.toList())) {
+            String[] ids = friendship.split(":");
+            userService.deleteFriend(Long.valueOf(ids[0]), Long.valueOf(ids[1]));
+        }
+        userService.deleteUserById(users.remove(0));
+        assertSuggestionsMatchSql(users);
+
+        friendGraph.rebuild();
+        assertSuggestionsMatchSql(users);
+        Long withoutFriends = addUser();
+        assertThat(userService.findFriendSuggestions(withoutFriends, null)).isEmpty();
+        assertThatThrownBy(() -> userService.findFriendSuggestions(-1L, null))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> userService.findFriendSuggestions(withoutFriends, 0))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void testFanOutIsLimitedForHighDegreeUsers() {
+        FriendGraph graph = new FriendGraph(jdbcTemplate, 2, 6, Duration.ofSeconds(1));
+        // у 1 друзья 2, 3, 4; просматриваются только 2 и 3 и их первые два друга
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 3);
+        graph.addFriend(1, 4);
+        graph.addFriend(2, 5);
+        graph.addFriend(2, 6);
+        graph.addFriend(2, 7);
+        graph.addFriend(3, 6);
+        graph.addFriend(3, 1);
+        graph.addFriend(4, 8);
+        assertThat(graph.suggest(1, 10)).containsExactly(6, 5);
+        assertThat(graph.suggest(1, 1)).containsExactly(6);
+
+        graph.deleteFriend(3, 6);
+        assertThat(graph.suggest(1, 10)).containsExactly(5, 6);
+    }
+
+    @Test
+    public void testShortestPathsMatchSqlSearch() {
+        Random random = new Random(7);
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            users.add(addUser());
+        }
+        for (int i = 0; i < 45; i++) {
+            Long id = users.get(random.nextInt(users.size()));
+            Long friendId = users.get(random.nextInt(users.size()));
+            if (!id.equals(friendId)) {
+                userService.addFriend(id, friendId);
+            }
+        }
+        int found = 0;
+        for (Long id : users) {
+            for (Long otherId : users) {
+                FriendPath path = userService.findDistance(id, otherId);
+                FriendPath expected = friendsDbStorage.findPath(id, otherId);
+                assertThat(path.getDistance()).as("from %d to %d", id, otherId).isEqualTo(expected.getDistance());
+                assertThat(path.isTruncated()).isFalse();
+                assertThat(expected.isTruncated()).isFalse();
+                if (path.getDistance() != null) {
+                    assertPathExists(path, id, otherId);
+                    found++;
+                }
+            }
+        }
+        assertThat(found).isGreaterThan(users.size());
+        assertThatThrownBy(() -> userService.findDistance(users.get(0), -1L))
+                .isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    public void testPathSearchStopsAtMaxDepth() {
+        FriendGraph graph = new FriendGraph(jdbcTemplate, 1000, 3, Duration.ofSeconds(1));
+        graph.load(new long[]{1, 2, 3, 4, 5}, new long[]{2, 3, 4, 5, 6});
+        assertThat(graph.shortestPath(1, 4).getPath()).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(graph.shortestPath(1, 5)).isEqualTo(FriendPath.notFound(true));
+        assertThat(graph.shortestPath(4, 1)).isEqualTo(FriendPath.notFound(false));
+        assertThat(graph.shortestPath(1, 1)).isEqualTo(FriendPath.of(List.of(1L)));
+    }
+
+    private void assertPathExists(FriendPath path, Long id, Long otherId) {
+        List<Long> ids = path.getPath();
+        assertThat(ids.get(0)).isEqualTo(id);
+        assertThat(ids.get(ids.size() - 1)).isEqualTo(otherId);
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(friendGraph.friends(ids.get(i - 1))).contains(ids.get(i));
+        }
+    }
+
+    private void assertSuggestionsMatchSql(List<Long> users) {
+        for (Long id : users) {
+            for (int limit : new int[]{1, 3, 100}) {
+                assertThat(ids(friendsStorage.findSuggestions(id, limit)))
+                        .as("user id = %d, limit = %d", id, limit)
+                        .isEqualTo(ids(friendsDbStorage.findSuggestions(id, limit)));
+            }
+        }
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    private Long addUser() {
+        return userService.addUser(new User(null, "mail@mail.ru", "login", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FriendPath;
+import ru.yandex.practicum.filmorate.storage.friends.FriendGraph;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Задержка поиска кратчайшего пути по графу дружбы на синтетическом графе без БД.
+ * Исключён из обычного прогона тестов в настройках surefire, запускается отдельно:
+ * mvn test -Dtest=FriendPathBenchmark -DargLine=-Xmx3g [-Dbenchmark.users=1000000] [-Dbenchmark.degree=10]
+ * Если куча меньше нужной для графа заданного размера, бенчмарк пропускается, а не падает с OutOfMemoryError.
+ */
+@Slf4j
+public class FriendPathBenchmark {
+    private static final int QUERIES = 1000;
+    // оценка по прогону на 1 000 000 пользователей и 10 000 000 дружб с -Xmx3g
+    private static final long HEAP_BYTES_PER_FRIENDSHIP = 300;
+
+    @Test
+    public void measureShortestPathLatency() {
+        int users = Integer.getInteger("benchmark.users", 1_000_000);
+        int degree = Integer.getInteger("benchmark.degree", 10);
+        long heapNeeded = (long) users * degree * HEAP_BYTES_PER_FRIENDSHIP;
+        assumeTrue(Runtime.getRuntime().maxMemory() >= heapNeeded, () -> String.format(
+                "Graph of %d users needs about %d MB of heap, run with -DargLine=-Xmx%dm", users,
+                heapNeeded >> 20, heapNeeded >> 20));
+        Random random = new Random(42);
+        long[] userIds = new long[users * degree];
+        long[] friendIds = new long[users * degree];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = i / degree + 1;
+            friendIds[i] = random.nextInt(users) + 1;
+        }
+        FriendGraph graph = new FriendGraph(null, 1000, 6, Duration.ofMillis(100));
+        long start = System.nanoTime();
+        graph.load(userIds, friendIds);
+        log.info("Graph of {} users and {} friendships loaded in {} ms", users, userIds.length,
+                (System.nanoTime() - start) / 1_000_000);
+
+        long[] latencies = new long[QUERIES];
+        int found = 0;
+        int truncated = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            long from = random.nextInt(users) + 1;
+            long to = random.nextInt(users) + 1;
+            start = System.nanoTime();
+            FriendPath path = graph.shortestPath(from, to);
+            latencies[i] = System.nanoTime() - start;
+            if (path.getDistance() != null) {
+                found++;
+            }
+            if (path.isTruncated()) {
+                truncated++;
+            }
+        }
+        Arrays.sort(latencies);
+        log.info("{} queries: found {}, truncated {}, median {} us, p99 {} us, max {} us", QUERIES, found,
+                truncated, latencies[QUERIES / 2] / 1000, latencies[QUERIES * 99 / 100] / 1000,
+                latencies[QUERIES - 1] / 1000);
+        assertThat(found + truncated).isGreaterThan(0);
+    }
+}
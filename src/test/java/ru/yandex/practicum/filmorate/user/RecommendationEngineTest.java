@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.user;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.like.RecommendingLikesStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "filmorate.recommender.enabled=true")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class RecommendationEngineTest {
+    private final RecommendationEngine recommendationEngine;
+    private final LikesStorage likesStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Test
+    public void testRecommendationsAreRankedByNeighbourVotes() {
+        assertThat(likesStorage).isInstanceOf(RecommendingLikesStorage.class);
+        List<Long> films = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            films.add(addFilm("Film " + i));
+        }
+        Long user = addUser();
+        Long close = addUser();
+        Long far = addUser();
+        Long stranger = addUser();
+        assertThat(userService.getRecommendations(user)).isEmpty();
+
+        like(user, films.get(0), films.get(1));
+        // close совпадает с user на 2/3, far - на 1/4, stranger общих лайков не имеет
+        like(close, films.get(0), films.get(1), films.get(2));
+        like(far, films.get(0), films.get(2), films.get(3), films.get(4));
+        like(stranger, films.get(4));
+        assertThat(ids(userService.getRecommendations(user)))
+                .containsExactly(films.get(2), films.get(3), films.get(4));
+        assertThat(ids(userService.getRecommendations(stranger)))
+                .containsExactly(films.get(0), films.get(2), films.get(3));
+
+        filmService.removeLike(films.get(2), close);
+        assertThat(ids(userService.getRecommendations(user)))
+                .containsExactly(films.get(2), films.get(3), films.get(4));
+        filmService.deleteFilmById(films.get(3));
+        userService.deleteUserById(far);
+        assertThat(userService.getRecommendations(user)).isEmpty();
+        assertThatThrownBy(() -> userService.getRecommendations(far)).isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    public void testIncrementalUpdatesMatchRebuild() {
+        Random random = new Random(42);
+        List<Long> films = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            films.add(addFilm("Film " + i));
+        }
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            users.add(addUser());
+        }
+        Set<String> likes = new HashSet<>();
+        for (int i = 0; i < 120; i++) {
+            Long filmId = films.get(random.nextInt(films.size()));
+            Long userId = users.get(random.nextInt(users.size()));
+            if (likes.add(filmId + ":" + userId)) {
+                filmService.addLike(filmId, userId);
+            }
+        }
+        for (String like : likes.stream().limit(30).collect(Collectors.toList())) {
+            String[] ids = like.split(":");
+            filmService.removeLike(Long.valueOf(ids[0]), Long.valueOf(ids[1]));
+        }
+        filmService.deleteFilmById(films.get(0));
+        userService.deleteUserById(users.get(0));
+        users.remove(0);
+
+        Map<Long, Optional<List<Long>>> incremental = new HashMap<>();
+        users.forEach(userId -> incremental.put(userId, recommendationEngine.recommend(userId)));
+        recommendationEngine.rebuild();
+        for (Long userId : users) {
+            Optional<List<Long>> rebuilt = recommendationEngine.recommend(userId);
+            assertThat(incremental.get(userId).orElse(List.of()))
+                    .as("user id = %d", userId)
+                    .isEqualTo(rebuilt.orElse(List.of()));
+        }
+    }
+
+    private void like(Long userId, Long... filmIds) {
+        for (Long filmId : filmIds) {
+            filmService.addLike(filmId, userId);
+        }
+    }
+
+    private static List<Long> ids(Collection<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    private Long addFilm(String name) {
+        return filmService.addFilm(new Film(null, name, "Description", LocalDate.of(2000, 1, 1), 100,
+                null, new Mpa(1, null))).getId();
+    }
+
+    private Long addUser() {
+        return userService.addUser(new User(null, "mail@mail.ru", "login", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.user;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.like.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.PrecomputedLikesStorage;
+import ru.yandex.practicum.filmorate.storage.like.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.like.RecommendationPrecomputer;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "filmorate.recommender.enabled=true",
+        "filmorate.recommender.precompute.enabled=true",
+        "filmorate.recommender.precompute.batch-size=2",
+        "filmorate.recommender.precompute.full-initial-delay=PT1H",
+        "filmorate.recommender.precompute.dirty-interval=PT1H"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class RecommendationPrecomputerTest {
+    private final RecommendationPrecomputer precomputer;
+    private final RecommendationEngine recommendationEngine;
+    private final LikesStorage likesStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    public void testRecommendationsArePrecomputedAndRefreshedForDirtyUsers() {
+        assertThat(likesStorage).isInstanceOf(PrecomputedLikesStorage.class);
+        Long first = addFilm();
+        Long second = addFilm();
+        Long third = addFilm();
+        Long user = addUser();
+        Long other = addUser();
+        Long withoutLikes = addUser();
+        filmService.addLike(first, user);
+        filmService.addLike(first, other);
+        filmService.addLike(second, other);
+        assertThat(precomputer.find(user)).isEmpty();
+        assertThat(ids(userService.getRecommendations(user))).containsExactly(second);
+
+        precomputer.recomputeAll();
+        assertThat(precomputer.find(user)).contains(List.of(second));
+        assertThat(precomputer.find(other)).contains(List.of());
+        assertThat(precomputer.find(withoutLikes)).contains(List.of());
+        assertThat(ids(userService.getRecommendations(user))).containsExactly(second);
+        assertThat(meterRegistry.get("recommendations.precompute.users").tag("run", "full").counter().count())
+                .isGreaterThanOrEqualTo(3);
+
+        // свои лайки пользователь видит сразу, до фонового пересчёта
+        filmService.addLike(third, other);
+        filmService.addLike(second, user);
+        assertThat(precomputer.find(user)).isEmpty();
+        assertThat(ids(userService.getRecommendations(user))).containsExactly(third);
+
+        precomputer.recomputeDirty();
+        assertThat(precomputer.find(user)).contains(List.of(third));
+        assertThat(precomputer.find(other)).isEqualTo(recommendationEngine.recommend(other));
+        assertThat(meterRegistry.get("recommendations.precompute.dirty").gauge().value()).isZero();
+
+        filmService.deleteFilmById(third);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USER_RECOMMENDATIONS WHERE FILM_ID = ?",
+                Integer.class, third)).isZero();
+        userService.deleteUserById(user);
+        assertThat(precomputer.find(user)).isEmpty();
+    }
+
+    private static List<Long> ids(Collection<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    private Long addFilm() {
+        return filmService.addFilm(new Film(null, "Film", "Description", LocalDate.of(2000, 1, 1), 100,
+                null, new Mpa(1, null))).getId();
+    }
+
+    private Long addUser() {
+        return userService.addUser(new User(null, "mail@mail.ru", "login", "Nick Name",
+                LocalDate.of(1946, 8, 20))).getId();
+    }
+}